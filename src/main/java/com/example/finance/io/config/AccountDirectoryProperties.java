@@ -0,0 +1,10 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "finance.cache.directory")
+public record AccountDirectoryProperties(
+        @DefaultValue("1000000") long maximumSize
+) {
+}
@@ -0,0 +1,29 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Moving old transactions out of the transaction table into per-account cold segment files.
+ *
+ * @param enabled        runs the archival job; segments archived earlier are read either way
+ * @param dir            directory of the segment files, one subdirectory per account id
+ * @param minAge         transactions older than this are archived. Their idempotency keys are no longer
+ *                       recognized, so keep it well above any client retry window
+ * @param interval       pause between archival runs
+ * @param segmentMaxRows most transactions per segment file; the account is locked while one is written
+ * @param cachedAccounts accounts whose segment list is kept in memory
+ */
+@ConfigurationProperties(prefix = "finance.archive")
+public record ArchiveProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/archive") Path dir,
+        @DefaultValue("90d") Duration minAge,
+        @DefaultValue("1h") Duration interval,
+        @DefaultValue("100000") int segmentMaxRows,
+        @DefaultValue("100000") long cachedAccounts
+) {
+}
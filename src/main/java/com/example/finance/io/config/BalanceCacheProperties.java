@@ -0,0 +1,18 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param refreshAfterWrite entries older than this are reloaded in the background on the next read
+ * @param expireAfterWrite  entries older than this are dropped; bounds staleness from writes on other nodes
+ */
+@ConfigurationProperties(prefix = "finance.cache.balance")
+public record BalanceCacheProperties(
+        @DefaultValue("100000") long maximumSize,
+        @DefaultValue("1m") Duration refreshAfterWrite,
+        @DefaultValue("30m") Duration expireAfterWrite
+) {
+}
@@ -0,0 +1,10 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties(prefix = "finance.balance")
+public record BalanceProperties(
+        @DefaultValue("true") boolean overdraftAllowed
+) {
+}
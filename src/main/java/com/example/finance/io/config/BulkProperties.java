@@ -0,0 +1,23 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Bulk ledger import.
+ *
+ * @param importWorkers      threads writing chunks in parallel; each account is always written by the same one
+ * @param importChunkSize    transactions per chunk, and so per DB transaction
+ * @param maxReportedErrors  rejected rows listed in the result; all of them are counted
+ * @param exportTimeout      how long GET /export may stream, instead of spring.mvc.async.request-timeout; 0 for no limit
+ */
+@ConfigurationProperties(prefix = "finance.bulk")
+public record BulkProperties(
+        @DefaultValue("4") int importWorkers,
+        @DefaultValue("2000") int importChunkSize,
+        @DefaultValue("100") int maxReportedErrors,
+        @DefaultValue("0s") Duration exportTimeout
+) {
+}
@@ -0,0 +1,30 @@
+package com.example.finance.io.config;
+
+import com.example.finance.io.service.AccountDirectory;
+import com.example.finance.io.service.BalanceCache;
+import com.example.finance.io.service.ColdTransactionStore;
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class CacheConfig {
+
+    /**
+     * The balance cache, the account directory and the cold segment catalog have their own sizing and refresh policy; every other cache
+     * uses {@code spring.cache.caffeine.spec}. Registering them here also exposes their stats as metrics.
+     */
+    @Bean
+    @SuppressWarnings("unchecked")
+    public CacheManagerCustomizer<CaffeineCacheManager> balanceCacheCustomizer(BalanceCache balanceCache,
+                                                                               AccountDirectory directory,
+                                                                               ColdTransactionStore coldStore) {
+        return manager -> {
+            manager.registerCustomCache(BalanceCache.NAME, (Cache<Object, Object>) (Cache<?, ?>) balanceCache.nativeCache());
+            manager.registerCustomCache(AccountDirectory.NAME, (Cache<Object, Object>) (Cache<?, ?>) directory.nativeCache());
+            manager.registerCustomCache(ColdTransactionStore.NAME, (Cache<Object, Object>) (Cache<?, ?>) coldStore.nativeCache());
+        };
+    }
+}
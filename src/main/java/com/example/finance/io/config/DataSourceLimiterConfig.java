@@ -0,0 +1,52 @@
+package com.example.finance.io.config;
+
+import com.example.finance.io.util.LimitedDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "finance.datasource.limiter.enabled", havingValue = "true", matchIfMissing = true)
+public class DataSourceLimiterConfig {
+    // Runs before MetricsConfig's wrapper, so the limiter sits directly on the pool
+    static final int ORDER = Ordered.LOWEST_PRECEDENCE - 10;
+
+    /**
+     * Wraps the application DataSource, so JPA, Spring Data and plain JDBC all go through the same limit.
+     * Look the limiter up with {@code unwrap(LimitedDataSource.class)}: other wrappers may sit on top of it.
+     */
+    @Bean
+    public static BeanPostProcessor dataSourceLimiter(ObjectProvider<DataSourceLimiterProperties> properties,
+                                                      ObjectProvider<MeterRegistry> registry) {
+        return new LimiterPostProcessor(properties, registry);
+    }
+
+    private record LimiterPostProcessor(ObjectProvider<DataSourceLimiterProperties> properties,
+                                        ObjectProvider<MeterRegistry> registry) implements BeanPostProcessor, Ordered {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof LimitedDataSource)) {
+                DataSourceLimiterProperties limits = properties.getObject();
+                log.info("Limiting DataSource {} to {} concurrent connections", beanName, limits.maxConcurrent());
+                LimitedDataSource limited = new LimitedDataSource(dataSource, limits.maxConcurrent(), limits.acquireTimeout());
+                limited.bindTo(registry.getObject());
+                return limited;
+            }
+            return bean;
+        }
+
+        // Applied through Ordered: @Order does not sort bean post-processors
+        @Override
+        public int getOrder() {
+            return ORDER;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param enabled        wraps the DataSource in a {@code LimitedDataSource}
+ * @param maxConcurrent  connections that may be checked out at once; keep it at or below the pool size
+ * @param acquireTimeout how long a caller waits for a permit before the request fails
+ */
+@ConfigurationProperties(prefix = "finance.datasource.limiter")
+public record DataSourceLimiterProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("10") int maxConcurrent,
+        @DefaultValue("30s") Duration acquireTimeout
+) {
+}
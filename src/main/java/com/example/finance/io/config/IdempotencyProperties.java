@@ -0,0 +1,15 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "finance.idempotency")
+public record IdempotencyProperties(
+        @DefaultValue("10m") Duration recentTtl,
+        @DefaultValue("100000") long recentMaxSize,
+        @DefaultValue("1000000") long expectedKeys,
+        @DefaultValue("0.01") double falsePositiveRate
+) {
+}
@@ -0,0 +1,25 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings of the {@code journal} write mode.
+ *
+ * @param dir                 directory of the memory-mapped segment files
+ * @param segmentSize         size of one segment file; a record must fit into a single segment
+ * @param projectionBatchSize journal entries applied to the tables per DB transaction
+ * @param projectionInterval  how long the projector sleeps when it has caught up and nothing new arrives
+ */
+@ConfigurationProperties(prefix = "finance.journal")
+public record JournalProperties(
+        @DefaultValue("data/journal") Path dir,
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("1000") int projectionBatchSize,
+        @DefaultValue("50ms") Duration projectionInterval
+) {
+}
@@ -0,0 +1,42 @@
+package com.example.finance.io.config;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+@Configuration(proxyBeanMethods = false)
+public class LazyBeansConfig {
+
+    /**
+     * Marks the beans of {@code finance.startup.lazy-packages}, and the beans their configuration classes declare,
+     * as lazy: the OpenAPI and Swagger UI machinery is built on the first docs request instead of at startup.
+     * Global {@code spring.main.lazy-initialization} would defer every bean and move startup failures to requests.
+     * Under AOT this runs at build time and the flags are part of the generated context.
+     */
+    @Bean
+    public static BeanFactoryPostProcessor lazyBeans(Environment environment) {
+        List<String> packages = Binder.get(environment)
+                .bind("finance.startup.lazy-packages", Bindable.listOf(String.class))
+                .orElse(List.of());
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                String type = definition.getBeanClassName();
+                if (type == null && definition.getFactoryBeanName() != null
+                        && beanFactory.containsBeanDefinition(definition.getFactoryBeanName())) {
+                    type = beanFactory.getBeanDefinition(definition.getFactoryBeanName()).getBeanClassName();
+                }
+                String origin = type;
+                if (origin != null && packages.stream().anyMatch(p -> origin.startsWith(p + "."))) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.finance.io.config;
+
+import com.example.finance.io.util.MeteredDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Times every JDBC statement. Ordered after {@link DataSourceLimiterConfig}, so it wraps the limiter
+     * and the limiter stays directly on the pool.
+     */
+    @Bean
+    public static BeanPostProcessor dataSourceMetrics(ObjectProvider<MeterRegistry> registry) {
+        return new MetricsPostProcessor(registry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlUsageFilter> sqlUsageFilter(MeterRegistry registry) {
+        return new FilterRegistrationBean<>(new SqlUsageFilter(registry));
+    }
+
+    private record MetricsPostProcessor(ObjectProvider<MeterRegistry> registry) implements BeanPostProcessor, Ordered {
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof MeteredDataSource)) {
+                return new MeteredDataSource(dataSource, registry.getObject());
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return DataSourceLimiterConfig.ORDER + 1;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * @param source         {@code builtin}, {@code file} (JSON array of rate tables) or {@code db} (CurrencyRate rows)
+ * @param reloadInterval how often the file modification time or the latest DB version is checked
+ */
+@ConfigurationProperties(prefix = "finance.rates")
+public record RateProperties(
+        @DefaultValue("builtin") String source,
+        Path file,
+        @DefaultValue("30s") Duration reloadInterval
+) {
+}
@@ -0,0 +1,30 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Checking materialized and cached balances against the ledger.
+ *
+ * @param enabled              runs the check periodically; POST /reconciliation works either way
+ * @param interval             pause between scheduled runs
+ * @param repair               scheduled runs correct what they find
+ * @param parallelism          fork-join workers, each holding one DB connection while it reads a partition
+ * @param partitionSize        accounts per partition, read with one query per table
+ * @param maxAccountsPerSecond pace across all workers, so a run leaves the database to production traffic;
+ *                             0 for no limit
+ * @param maxReported          discrepancies listed in a report; all of them are counted
+ */
+@ConfigurationProperties(prefix = "finance.reconciliation")
+public record ReconciliationProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("24h") Duration interval,
+        @DefaultValue("false") boolean repair,
+        @DefaultValue("2") int parallelism,
+        @DefaultValue("500") int partitionSize,
+        @DefaultValue("5000") int maxAccountsPerSecond,
+        @DefaultValue("100") int maxReported
+) {
+}
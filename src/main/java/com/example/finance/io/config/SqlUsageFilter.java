@@ -0,0 +1,55 @@
+package com.example.finance.io.config;
+
+import com.example.finance.io.util.MeteredDataSource;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how many statements each request ran and how long they took, per route.
+ * Only SQL executed on the request thread is seen: group-commit lanes, the journal projector and
+ * streamed response bodies run elsewhere and show up in {@link MeteredDataSource#METRIC} alone.
+ */
+@Slf4j
+public class SqlUsageFilter extends OncePerRequestFilter {
+    private final MeterRegistry registry;
+
+    public SqlUsageFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        MeteredDataSource.Usage usage = MeteredDataSource.open();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            usage.close();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+            DistributionSummary.builder("finance.sql.request.statements")
+                    .description("JDBC statements executed per request")
+                    .tags("method", request.getMethod(), "uri", uri)
+                    .register(registry)
+                    .record(usage.statements());
+            Timer.builder("finance.sql.request.time")
+                    .description("Time spent in JDBC statements per request")
+                    .tags("method", request.getMethod(), "uri", uri)
+                    .register(registry)
+                    .record(usage.nanos(), TimeUnit.NANOSECONDS);
+            log.debug("{} {} ran {} statements in {} us", request.getMethod(), uri, usage.statements(),
+                    TimeUnit.NANOSECONDS.toMicros(usage.nanos()));
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Server-sent balance change streams.
+ *
+ * @param queueCapacity  updates buffered per subscriber; when it is full the newest two are coalesced into one
+ * @param maxSubscribers open streams across all accounts; further subscriptions are refused
+ * @param timeout        lifetime of one stream, after which the client reconnects
+ * @param heartbeat      idle streams get a comment this often, so proxies keep them open and dead ones are noticed
+ */
+@ConfigurationProperties(prefix = "finance.subscriptions")
+public record SubscriptionProperties(
+        @DefaultValue("16") int queueCapacity,
+        @DefaultValue("10000") int maxSubscribers,
+        @DefaultValue("30m") Duration timeout,
+        @DefaultValue("30s") Duration heartbeat
+) {
+}
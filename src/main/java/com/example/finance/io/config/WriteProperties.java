@@ -0,0 +1,26 @@
+package com.example.finance.io.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param mode           {@code direct} commits every request on its own, {@code group-commit} coalesces them per lane,
+ *                       {@code journal} acknowledges after an fsynced journal append and projects to the DB asynchronously
+ * @param lanes          number of sequencer lanes; an account always maps to the same lane
+ * @param maxBatchSize   a lane flushes as soon as this many requests are pending
+ * @param maxDelay       or once the oldest pending request has waited this long
+ * @param queueCapacity  per-lane backlog; callers block when it is full
+ * @param commitTimeout  how long a caller waits for a lane to take and commit its write before it gets a 503
+ */
+@ConfigurationProperties(prefix = "finance.write")
+public record WriteProperties(
+        @DefaultValue("direct") String mode,
+        @DefaultValue("8") int lanes,
+        @DefaultValue("256") int maxBatchSize,
+        @DefaultValue("200us") Duration maxDelay,
+        @DefaultValue("10000") int queueCapacity,
+        @DefaultValue("30s") Duration commitTimeout
+) {
+}
@@ -1,27 +1,71 @@
 package com.example.finance.io.controller;
 
 import com.example.finance.io.controller.api.AccountBalanceApi;
-import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.BalanceSnapshot;
 import com.example.finance.io.model.dto.BalanceResponse;
+import com.example.finance.io.model.dto.BatchItemResult;
+import com.example.finance.io.model.dto.BatchTransactionItem;
 import com.example.finance.io.model.dto.CreateBalanceRequest;
+import com.example.finance.io.model.dto.ExportFormat;
+import com.example.finance.io.model.dto.ImportResult;
+import com.example.finance.io.model.dto.StatementResponse;
+import com.example.finance.io.model.dto.TransactionPage;
 import com.example.finance.io.model.dto.TransactionRequest;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.model.dto.TransferRequest;
+import com.example.finance.io.model.dto.TransferResponse;
 import com.example.finance.io.service.AccountBalanceService;
+import com.example.finance.io.service.BalanceSubscriptions;
+import com.example.finance.io.service.LedgerExportStreamer;
+import com.example.finance.io.service.LedgerExporter;
+import com.example.finance.io.service.LedgerImporter;
+import com.example.finance.io.service.StatementService;
+import com.example.finance.io.service.TransactionBatchService;
+import com.example.finance.io.service.TransactionWriter;
+import com.example.finance.io.service.TransferService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @AllArgsConstructor
 @RequestMapping("/api/v1")
 public class AccountAccountBalanceController implements AccountBalanceApi {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final AccountBalanceService service;
+    private final TransactionBatchService batchService;
+    private final StatementService statementService;
+    private final TransferService transferService;
+    private final LedgerExporter exporter;
+    private final LedgerExportStreamer exportStreamer;
+    private final LedgerImporter importer;
+    private final BalanceSubscriptions subscriptions;
+    private final TransactionWriter writer;
+    private final ObjectMapper objectMapper;
 
     @Override
     @PostMapping("/balances")
@@ -32,24 +76,140 @@ public class AccountAccountBalanceController implements AccountBalanceApi {
 
     @Override
     @GetMapping("/balances/{name}")
-    public BalanceResponse get(@PathVariable String name) {
-        var balance = service.getBalance(name);
-        return new BalanceResponse(name, balance);
+    public BalanceResponse get(
+            @PathVariable String name,
+            @RequestParam(required = false) String currency,
+            @RequestParam(defaultValue = "false") boolean breakdown,
+            WebRequest request
+    ) {
+        if (currency != null || breakdown) {
+            if (request.checkNotModified(service.getVersion(name, currency))) {
+                return null;
+            }
+            return service.getBalance(name, currency, breakdown);
+        }
+        // One snapshot for both, so the ETag always matches the body
+        BalanceSnapshot snapshot = service.getSnapshot(name);
+        if (request.checkNotModified(Long.toString(snapshot.revision()))) {
+            return null;
+        }
+        return new BalanceResponse(name, snapshot.balance());
+    }
+
+    @Override
+    @GetMapping("/balances")
+    public List<BalanceResponse> getAll(@RequestParam List<String> names) {
+        return service.getBalances(names);
     }
 
     @Override
     @PostMapping("/balances/{name}/transactions")
-    public Transaction add(
+    public TransactionView add(
             @PathVariable String name,
             @RequestBody TransactionRequest req,
             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
     ) {
-        return service.addTransaction(name, req.getType(), req.getAmount(), req.getCurrency(), idempotencyKey);
+        return TransactionView.of(writer.write(name, req.getType(), req.getAmount(), req.getCurrency(), idempotencyKey));
+    }
+
+    @Override
+    @PostMapping("/transfers")
+    public TransferResponse transfer(
+            @RequestBody TransferRequest req,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
+    ) {
+        return transferService.transfer(req.getFrom(), req.getTo(), req.getAmount(), req.getCurrency(), req.getToCurrency(),
+                idempotencyKey);
+    }
+
+    @Override
+    @PostMapping("/balances/{name}/transactions/batch")
+    public List<BatchItemResult> addBatch(@PathVariable String name, @RequestBody List<BatchTransactionItem> items) {
+        return batchService.addTransactions(name, items);
+    }
+
+    @Override
+    @PostMapping("/transactions/batch")
+    public List<BatchItemResult> addBatch(@RequestBody List<BatchTransactionItem> items) {
+        return batchService.addTransactions(items);
     }
 
     @Override
     @GetMapping("/balances/{name}/transactions")
-    public List<Transaction> allTx(@PathVariable String name) {
+    public List<TransactionView> allTx(@PathVariable String name, WebRequest request) {
+        // Read before the history, so a posting in between only makes the ETag older than the body.
+        // An unknown account has no version and gets its empty history without one
+        Optional<String> version = service.getHistoryVersion(name);
+        if (version.isPresent() && request.checkNotModified(version.get())) {
+            return null;
+        }
         return service.getTransactions(name);
     }
+
+    @Override
+    @GetMapping("/balances/{name}/transactions/page")
+    public TransactionPage pageTx(
+            @PathVariable String name,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String after,
+            WebRequest request
+    ) {
+        Optional<String> version = service.getHistoryVersion(name);
+        if (version.isPresent() && request.checkNotModified(version.get())) {
+            return null;
+        }
+        return service.getTransactionPage(name, limit, after);
+    }
+
+    @Override
+    @GetMapping(value = "/balances/{name}/transactions", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamTx(@PathVariable String name) {
+        ObjectWriter writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = out -> service.streamTransactions(name, tx -> {
+            try {
+                writer.writeValue(out, tx);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().header("Content-Type", APPLICATION_NDJSON_VALUE).body(body);
+    }
+
+    @Override
+    @GetMapping(value = "/balances/{name}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@PathVariable String name) {
+        return subscriptions.subscribe(name);
+    }
+
+    @Override
+    @GetMapping("/balances/{name}/statement")
+    public StatementResponse statement(
+            @PathVariable String name,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        return statementService.getStatement(name, from, to);
+    }
+
+    @Override
+    @GetMapping("/export")
+    public ResponseEntity<ResponseBodyEmitter> export(
+            @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @RequestParam(required = false) String account,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    ) {
+        Long accountId = exporter.accountId(account);
+        return ResponseEntity.ok()
+                .header("Content-Type", format.mediaType())
+                .header("Content-Disposition", "attachment; filename=\"ledger." + format.extension() + "\"")
+                .body(exportStreamer.stream(format, accountId, from, to));
+    }
+
+    @Override
+    @PostMapping("/import")
+    public ImportResult importLedger(@RequestParam(defaultValue = "CSV") ExportFormat format, InputStream body) {
+        return importer.importFrom(format, body);
+    }
 }
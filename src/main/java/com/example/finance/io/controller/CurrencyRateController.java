@@ -0,0 +1,33 @@
+package com.example.finance.io.controller;
+
+import com.example.finance.io.controller.api.CurrencyRateApi;
+import com.example.finance.io.model.RateTable;
+import com.example.finance.io.service.CurrencyConverter;
+import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/v1")
+public class CurrencyRateController implements CurrencyRateApi {
+    private final CurrencyConverter converter;
+
+    @Override
+    @GetMapping("/rates")
+    public RateTable ratesAt(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return at == null ? converter.currentRates() : converter.ratesAt(at);
+    }
+
+    @Override
+    @GetMapping("/rates/{version}")
+    public RateTable ratesByVersion(@PathVariable long version) {
+        return converter.ratesByVersion(version);
+    }
+}
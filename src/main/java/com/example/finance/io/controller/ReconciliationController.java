@@ -0,0 +1,37 @@
+package com.example.finance.io.controller;
+
+import com.example.finance.io.controller.api.ReconciliationApi;
+import com.example.finance.io.model.dto.ReconciliationRun;
+import com.example.finance.io.service.ReconciliationService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/v1")
+public class ReconciliationController implements ReconciliationApi {
+    private final ReconciliationService reconciliation;
+
+    @Override
+    @PostMapping("/reconciliation")
+    public ResponseEntity<ReconciliationRun> reconcile(@RequestParam(defaultValue = "false") boolean repair) {
+        ReconciliationRun run = reconciliation.start(repair);
+        return ResponseEntity.accepted()
+                .location(ServletUriComponentsBuilder.fromCurrentRequestUri().replaceQuery(null)
+                        .path("/{id}").buildAndExpand(run.id()).toUri())
+                .body(run);
+    }
+
+    @Override
+    @GetMapping("/reconciliation/{id}")
+    public ReconciliationRun reconciliationRun(@PathVariable String id) {
+        return reconciliation.findRun(id);
+    }
+}
@@ -1,16 +1,33 @@
 package com.example.finance.io.controller.api;
 
-import com.example.finance.io.model.Transaction;
 import com.example.finance.io.model.dto.BalanceResponse;
+import com.example.finance.io.model.dto.BatchItemResult;
+import com.example.finance.io.model.dto.BatchTransactionItem;
 import com.example.finance.io.model.dto.CreateBalanceRequest;
+import com.example.finance.io.model.dto.ExportFormat;
+import com.example.finance.io.model.dto.ImportResult;
+import com.example.finance.io.model.dto.StatementResponse;
+import com.example.finance.io.model.dto.TransactionPage;
 import com.example.finance.io.model.dto.TransactionRequest;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.model.dto.TransferRequest;
+import com.example.finance.io.model.dto.TransferResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Tag(name = "Balance API", description = "Управление счетом и транзакциями")
@@ -19,20 +36,129 @@ public interface AccountBalanceApi {
     @Operation(summary = "Создать баланс", description = "Создаёт новый баланс с нулевым значением")
     BalanceResponse create(@RequestBody CreateBalanceRequest req);
 
-    @Operation(summary = "Получить баланс", description = "Возвращает текущий баланс по имени")
-    BalanceResponse get(@PathVariable String name);
+    @Operation(
+            summary = "Получить баланс",
+            description = "Возвращает текущий баланс по имени. С параметром currency баланс пересчитывается "
+                    + "из сумм по валютам по текущим курсам; breakdown=true добавляет суммы по каждой валюте. "
+                    + "Ответ несёт ETag с версией счёта; при совпадении If-None-Match возвращается 304"
+    )
+    BalanceResponse get(
+            @PathVariable String name,
+            @Parameter(description = "Валюта результата, по умолчанию USD по курсам на момент операций")
+            @RequestParam(required = false) String currency,
+            @Parameter(description = "Добавить суммы по валютам") @RequestParam(defaultValue = "false") boolean breakdown,
+            @Parameter(hidden = true) WebRequest request
+    );
+
+    @Operation(
+            summary = "Балансы нескольких счетов",
+            description = "Остатки в USD до 1000 балансов за один запрос, в порядке из запроса; несуществующие имена пропускаются"
+    )
+    List<BalanceResponse> getAll(
+            @Parameter(description = "Имена балансов через запятую") @RequestParam List<String> names
+    );
 
     @Operation(
             summary = "Добавить транзакцию",
             description = "Добавляет депозит или снятие средств по балансу с поддержкой идемпотентности"
     )
-    Transaction add(
+    TransactionView add(
             @PathVariable String name,
             @RequestBody TransactionRequest req,
             @Parameter(description = "Ключ идемпотентности")
             @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
     );
 
-    @Operation(summary = "Список транзакций", description = "Все транзакции по балансу, новые сверху")
-    List<Transaction> allTx(@PathVariable String name);
+    @Operation(
+            summary = "Перевод между счетами",
+            description = "Списывает сумму с одного счёта и зачисляет на другой в одной транзакции БД. "
+                    + "При указании toCurrency зачисление пересчитывается по текущему курсу; "
+                    + "поддерживается ключ идемпотентности"
+    )
+    TransferResponse transfer(
+            @RequestBody TransferRequest req,
+            @Parameter(description = "Ключ идемпотентности")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
+    );
+
+    @Operation(
+            summary = "Пакет транзакций по счёту",
+            description = "Добавляет до 5000 транзакций одним запросом; поле account в элементах игнорируется. "
+                    + "Результат по каждому элементу: CREATED, DUPLICATE или REJECTED"
+    )
+    List<BatchItemResult> addBatch(@PathVariable String name, @RequestBody List<BatchTransactionItem> items);
+
+    @Operation(
+            summary = "Пакет транзакций по нескольким счетам",
+            description = "Добавляет до 5000 транзакций одним запросом, счёт указывается в каждом элементе. "
+                    + "Ошибка одного элемента не отменяет остальные"
+    )
+    List<BatchItemResult> addBatch(@RequestBody List<BatchTransactionItem> items);
+
+    @Operation(summary = "Список транзакций", description = "Все транзакции по балансу, новые сверху. Поддерживает ETag и If-None-Match")
+    List<TransactionView> allTx(@PathVariable String name, @Parameter(hidden = true) WebRequest request);
+
+    @Operation(
+            summary = "Страница транзакций",
+            description = "Keyset-пагинация по (timestamp, id), новые сверху. Курсор nextCursor передаётся в after. "
+                    + "Поддерживает ETag и If-None-Match"
+    )
+    TransactionPage pageTx(
+            @PathVariable String name,
+            @Parameter(description = "Размер страницы, 1..1000") @RequestParam(defaultValue = "100") int limit,
+            @Parameter(description = "Курсор из nextCursor предыдущей страницы") @RequestParam(required = false) String after,
+            @Parameter(hidden = true) WebRequest request
+    );
+
+    @Operation(
+            summary = "Поток транзакций (NDJSON)",
+            description = "Вся история построчно в application/x-ndjson, выбирается постранично из БД"
+    )
+    ResponseEntity<StreamingResponseBody> streamTx(@PathVariable String name);
+
+    @Operation(
+            summary = "Подписка на изменения баланса (SSE)",
+            description = "text/event-stream: первое событие balance — текущий остаток, далее по событию после каждой "
+                    + "зафиксированной операции с новым остатком и суммами проведённого. Отстающему клиенту "
+                    + "события объединяются, итоговый остаток и суммы не теряются"
+    )
+    SseEmitter subscribe(@PathVariable String name);
+
+    @Operation(
+            summary = "Выписка за период",
+            description = "Входящий остаток, сумма пополнений, сумма списаний и исходящий остаток в USD за [from, to). "
+                    + "Считается по дневным агрегатам, неполные дни на границах — по транзакциям"
+    )
+    StatementResponse statement(
+            @PathVariable String name,
+            @Parameter(description = "Начало периода включительно, например 2025-06-01T00:00:00")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Конец периода, не включается")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    );
+
+    @Operation(
+            summary = "Выгрузка журнала",
+            description = "Все транзакции, включая архив, в CSV или двоичном формате потоком, без сортировки. "
+                    + "Фильтры по счёту и периоду [from, to) необязательны. Обрыв виден по отсутствию "
+                    + "завершающей строки #end в CSV или байта конца в двоичном формате"
+    )
+    ResponseEntity<ResponseBodyEmitter> export(
+            @Parameter(description = "CSV или BINARY") @RequestParam(defaultValue = "CSV") ExportFormat format,
+            @Parameter(description = "Имя баланса") @RequestParam(required = false) String account,
+            @Parameter(description = "Начало периода включительно")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Конец периода, не включается")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to
+    );
+
+    @Operation(
+            summary = "Загрузка журнала",
+            description = "Принимает выгрузку в формате export, создаёт недостающие балансы и пересчитывает остатки. "
+                    + "Транзакции с уже существующим id пропускаются, поэтому загрузку можно повторить"
+    )
+    ImportResult importLedger(
+            @Parameter(description = "CSV или BINARY") @RequestParam(defaultValue = "CSV") ExportFormat format,
+            InputStream body
+    );
 }
@@ -0,0 +1,20 @@
+package com.example.finance.io.controller.api;
+
+import com.example.finance.io.model.RateTable;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.time.LocalDateTime;
+
+@Tag(name = "Rate API", description = "Курсы валют к USD")
+public interface CurrencyRateApi {
+
+    @Operation(summary = "Курсы на момент времени", description = "Таблица курсов, действовавшая в момент at (по умолчанию — сейчас)")
+    RateTable ratesAt(@Parameter(description = "Момент времени, ISO-8601") @RequestParam(required = false) LocalDateTime at);
+
+    @Operation(summary = "Курсы по версии", description = "Таблица курсов по номеру версии из Transaction.rateVersion")
+    RateTable ratesByVersion(@PathVariable long version);
+}
@@ -0,0 +1,28 @@
+package com.example.finance.io.controller.api;
+
+import com.example.finance.io.model.dto.ReconciliationRun;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+@Tag(name = "Reconciliation API", description = "Сверка балансов с журналом транзакций")
+public interface ReconciliationApi {
+
+    @Operation(
+            summary = "Запустить сверку балансов",
+            description = "Пересчитывает остатки всех счетов в USD по транзакциям, включая архив, и сравнивает с "
+                    + "сохранёнными и закэшированными. Сверка идёт в фоне: ответ 202 с id запуска и заголовком Location, "
+                    + "по которому виден статус и отчёт. Выполняется параллельно с ограничением скорости; ход виден в "
+                    + "метриках finance.reconciliation.*. Пока идёт другая сверка, отвечает 409. Остатки по валютам "
+                    + "и дневные итоги не сверяются и не исправляются: архив хранит только итоги в USD"
+    )
+    ResponseEntity<ReconciliationRun> reconcile(
+            @Parameter(description = "Исправить найденные расхождения") @RequestParam(defaultValue = "false") boolean repair
+    );
+
+    @Operation(summary = "Статус сверки", description = "Статус и отчёт одного из последних 20 запусков")
+    ReconciliationRun reconciliationRun(@PathVariable String id);
+}
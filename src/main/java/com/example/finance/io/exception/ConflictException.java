@@ -0,0 +1,10 @@
+package com.example.finance.io.exception;
+
+/**
+ * The request contradicts the current state, e.g. reuses an idempotency key for a different request.
+ */
+public class ConflictException extends RuntimeException {
+    public ConflictException(String message) {
+        super(message);
+    }
+}
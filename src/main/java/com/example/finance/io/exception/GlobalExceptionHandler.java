@@ -41,6 +41,24 @@ public class GlobalExceptionHandler {
         return logAndRespond(httpStatus, apiError);
     }
 
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ApiErrorDto> handleConflictException(ConflictException e, HttpServletRequest request) {
+        HttpStatus httpStatus = HttpStatus.CONFLICT;
+
+        ApiErrorDto apiError = buildApiErrorDto("Conflict", e.getMessage(), request, httpStatus);
+
+        return logAndRespond(httpStatus, apiError);
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiErrorDto> handleServiceUnavailableException(ServiceUnavailableException e, HttpServletRequest request) {
+        HttpStatus httpStatus = HttpStatus.SERVICE_UNAVAILABLE;
+
+        ApiErrorDto apiError = buildApiErrorDto("Service Unavailable", e.getMessage(), request, httpStatus);
+
+        return logAndRespond(httpStatus, apiError);
+    }
+
     @ExceptionHandler({NoSuchElementException.class, })
     public ResponseEntity<ApiErrorDto> handleHttpMessageNotReadableException(NoSuchElementException e, HttpServletRequest request) {
         HttpStatus httpStatus = HttpStatus.BAD_REQUEST;
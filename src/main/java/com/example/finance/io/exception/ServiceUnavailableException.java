@@ -0,0 +1,10 @@
+package com.example.finance.io.exception;
+
+/**
+ * The request could not be served in time because of load or a stalled component; it may be retried.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -5,7 +5,6 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -26,6 +25,14 @@ public class Account {
     @Column(unique = true, nullable = false)
     private String name;
 
-    @Transient
-    private BigDecimal currentBalance;
+    /**
+     * Running USD balance. Changed only through the atomic updates in {@code AccountRepository}.
+     */
+    @Builder.Default
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    // Bumped by every balance update, so cached and client-held copies can be ordered
+    @Column(nullable = false)
+    private long revision;
 }
@@ -0,0 +1,59 @@
+package com.example.finance.io.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Catalog entry and summary of one cold segment file: which transactions of the account moved out of the
+ * transaction table, and their USD totals, so the archived part of the ledger still adds up to the balance
+ * without reading the file. Written in the same DB transaction that deletes the rows.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(indexes = @Index(name = "idx_archived_segment_account", columnList = "account_id, first_timestamp"))
+public class ArchivedSegment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // Relative to finance.archive.dir
+    @Column(nullable = false, unique = true)
+    private String fileName;
+
+    @Column(name = "first_timestamp", nullable = false)
+    private LocalDateTime firstTimestamp;
+
+    @Column(nullable = false)
+    private LocalDateTime lastTimestamp;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal deposits;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal withdrawals;
+
+    @Column(nullable = false)
+    private long transactionCount;
+
+    public boolean overlaps(LocalDateTime from, LocalDateTime to) {
+        return !lastTimestamp.isBefore(from) && firstTimestamp.isBefore(to);
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.finance.io.model;
+
+import java.math.BigDecimal;
+
+public record BalanceSnapshot(BigDecimal balance, long revision) {
+}
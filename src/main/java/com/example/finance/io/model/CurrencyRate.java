@@ -0,0 +1,43 @@
+package com.example.finance.io.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One currency of a versioned rate table; rows sharing {@code version} form the table.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"rate_version", "currency"}))
+public class CurrencyRate {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "rate_version", nullable = false)
+    private long version;
+
+    @Column(nullable = false)
+    private String currency;
+
+    @Column(precision = 19, scale = 8, nullable = false)
+    private BigDecimal rate;
+
+    @Column(nullable = false)
+    private LocalDateTime effectiveFrom;
+}
@@ -0,0 +1,48 @@
+package com.example.finance.io.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * USD deposit and withdrawal totals of one account over one calendar day of transaction timestamps.
+ * Maintained by {@code LedgerWriter} in the same DB transaction as the transactions it counts.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "rollup_day"}))
+public class DailyRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // DAY is a reserved word in H2
+    @Column(name = "rollup_day", nullable = false)
+    private LocalDate day;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal deposits;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal withdrawals;
+
+    @Column(nullable = false)
+    private long transactionCount;
+}
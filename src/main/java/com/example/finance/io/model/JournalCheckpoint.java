@@ -0,0 +1,24 @@
+package com.example.finance.io.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Journal offset up to which entries have been projected into the tables.
+ * Written in the same DB transaction as the projected rows, so replay resumes exactly after them.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalCheckpoint {
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private long projectedOffset;
+}
@@ -0,0 +1,35 @@
+package com.example.finance.io.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An acknowledged journal record that could not be decoded or projected. Written in the same DB transaction
+ * that moves the checkpoint past it, so the checkpoint never skips a record that is neither in the tables nor here.
+ */
+@Entity
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JournalDeadLetter {
+    // Journal offset the record ends at
+    @Id
+    private long journalOffset;
+
+    @Lob
+    @Column(nullable = false)
+    private byte[] payload;
+
+    @Column(nullable = false, length = 1000)
+    private String error;
+
+    @Column(nullable = false)
+    private LocalDateTime setAsideAt;
+}
@@ -0,0 +1,104 @@
+package com.example.finance.io.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+/**
+ * Binary journal form of a posted transaction. The account is recorded by name so the journal
+ * can be replayed into a database whose ids differ from the ones it was written against.
+ */
+public record JournalEntry(UUID id, String account, TransactionType type, BigDecimal amount, String currency,
+                           BigDecimal amountUSD, long rateVersion, LocalDateTime timestamp, String idempotencyKey) {
+    // Format 1 wrote the length of an unscaled amount as a single byte; it is still read
+    private static final byte FORMAT_1 = 1;
+    private static final byte FORMAT = 2;
+
+    public static JournalEntry of(Transaction tx) {
+        return new JournalEntry(tx.getId(), tx.getAccount().getName(), tx.getType(), tx.getAmount(), tx.getCurrency(),
+                tx.getAmountUSD(), tx.getRateVersion(), tx.getTimestamp(), tx.getIdempotencyKey());
+    }
+
+    public Transaction toTransaction(Account account) {
+        return Transaction.builder()
+                .id(id)
+                .account(account)
+                .type(type)
+                .amount(amount)
+                .amountUSD(amountUSD)
+                .currency(currency)
+                .rateVersion(rateVersion)
+                .timestamp(timestamp)
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT);
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+            out.writeUTF(account);
+            out.writeByte(type.ordinal());
+            writeDecimal(out, amount);
+            out.writeUTF(currency);
+            out.writeLong(Money.toMinor(amountUSD));
+            out.writeLong(rateVersion);
+            out.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(timestamp.getNano());
+            out.writeBoolean(idempotencyKey != null);
+            if (idempotencyKey != null) {
+                out.writeUTF(idempotencyKey);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static JournalEntry decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            byte format = in.readByte();
+            if (format != FORMAT && format != FORMAT_1) {
+                throw new IllegalStateException("Unknown journal entry format " + format);
+            }
+            UUID id = new UUID(in.readLong(), in.readLong());
+            String account = in.readUTF();
+            TransactionType type = TransactionType.values()[in.readByte()];
+            BigDecimal amount = readDecimal(in, format);
+            String currency = in.readUTF();
+            BigDecimal amountUSD = Money.toBigDecimal(in.readLong());
+            long rateVersion = in.readLong();
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            String idempotencyKey = in.readBoolean() ? in.readUTF() : null;
+            return new JournalEntry(id, account, type, amount, currency, amountUSD, rateVersion, timestamp, idempotencyKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeInt(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in, byte format) throws IOException {
+        int scale = in.readInt();
+        int length = format == FORMAT_1 ? in.readUnsignedByte() : in.readInt();
+        if (length < 1 || length > in.available()) {
+            throw new IllegalStateException("Invalid journal amount length " + length);
+        }
+        return new BigDecimal(new BigInteger(in.readNBytes(length)), scale);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.finance.io.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point arithmetic on {@code long} values for the conversion and aggregation hot paths.
+ * Money is held in minor units ({@value #SCALE} decimals), rates in units of 10^-{@value #RATE_SCALE}.
+ * Every operation is exact or rounds {@code HALF_DOWN} like the BigDecimal code it replaces,
+ * and throws {@link ArithmeticException} instead of overflowing silently.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+    public static final int RATE_SCALE = 8;
+    private static final long RATE_ONE = 100_000_000L;
+    // Largest amount whose minor units fit a long; also within the 17 integer digits of the amount columns
+    public static final BigDecimal MAX_AMOUNT = BigDecimal.valueOf(Long.MAX_VALUE, SCALE);
+
+    private Money() {
+    }
+
+    // Scaled to an integer rather than through unscaledValue(), which builds a BigInteger every time
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE).scaleByPowerOfTen(SCALE).longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * Whether {@code amount} has at most {@value #SCALE} decimals and does not exceed {@link #MAX_AMOUNT} in magnitude,
+     * so {@link #toMinor} is exact.
+     */
+    public static boolean fits(BigDecimal amount) {
+        return amount.abs().compareTo(MAX_AMOUNT) <= 0 && amount.stripTrailingZeros().scale() <= SCALE;
+    }
+
+    /**
+     * Exact rate units, or throws if the rate has more than {@value #RATE_SCALE} decimals or does not fit.
+     */
+    public static long toRateUnits(BigDecimal rate) {
+        return rate.setScale(RATE_SCALE).scaleByPowerOfTen(RATE_SCALE).longValueExact();
+    }
+
+    /**
+     * {@code minor * rateUnits}, rounded HALF_DOWN to minor units; equal to
+     * {@code toBigDecimal(minor).multiply(rate).setScale(SCALE, HALF_DOWN)}.
+     */
+    public static long convert(long minor, long rateUnits) {
+        return divideHalfDown(Math.multiplyExact(minor, rateUnits), RATE_ONE);
+    }
+
+    /**
+     * Whether {@link #convert} of these operands stays within a {@code long}.
+     */
+    public static boolean convertible(long minor, long rateUnits) {
+        return Math.multiplyHigh(minor, rateUnits) == (minor * rateUnits) >> 63;
+    }
+
+    static long divideHalfDown(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+        // Strictly more than half rounds away from zero; an exact half stays (HALF_DOWN)
+        if (remainder > divisor - remainder) {
+            quotient += Long.signum(dividend);
+        }
+        return quotient;
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    public static long negate(long a) {
+        return Math.negateExact(a);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.finance.io.model;
+
+import java.math.BigDecimal;
+
+/**
+ * USD deposits, withdrawals and transaction count over some period, from rollups or raw rows.
+ */
+public record PeriodTotals(BigDecimal deposits, BigDecimal withdrawals, long count) {
+    public static final PeriodTotals EMPTY = new PeriodTotals(BigDecimal.ZERO, BigDecimal.ZERO, 0);
+
+    public PeriodTotals plus(PeriodTotals other) {
+        return new PeriodTotals(deposits.add(other.deposits), withdrawals.add(other.withdrawals), count + other.count);
+    }
+
+    public BigDecimal net() {
+        return deposits.subtract(withdrawals);
+    }
+}
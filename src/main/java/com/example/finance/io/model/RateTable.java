@@ -0,0 +1,110 @@
+package com.example.finance.io.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable set of USD rates that applies from {@code effectiveFrom} until the next table takes over.
+ * Rates that fit {@link Money#RATE_SCALE} are also kept as fixed-point units, derived here rather than taken
+ * from callers, which is why this is a class and not a record.
+ */
+public final class RateTable {
+
+    public static final RateTable BUILTIN = new RateTable(1, LocalDateTime.of(1970, 1, 1, 0, 0), Map.of(
+            "USD", BigDecimal.valueOf(1.0),
+            "EUR", BigDecimal.valueOf(1.1),
+            "BYN", BigDecimal.valueOf(0.31),
+            "RUB", BigDecimal.valueOf(0.012)
+    ));
+
+    private final long version;
+    private final LocalDateTime effectiveFrom;
+    private final Map<String, BigDecimal> rates;
+    private final Map<String, Long> rateUnits;
+
+    @JsonCreator
+    public RateTable(@JsonProperty("version") long version,
+                     @JsonProperty("effectiveFrom") LocalDateTime effectiveFrom,
+                     @JsonProperty("rates") Map<String, BigDecimal> rates) {
+        if (effectiveFrom == null || rates == null || rates.isEmpty()) {
+            throw new IllegalArgumentException("Rate table " + version + " must have effectiveFrom and rates");
+        }
+        this.version = version;
+        this.effectiveFrom = effectiveFrom;
+        this.rates = Map.copyOf(rates);
+        Map<String, Long> units = new HashMap<>();
+        this.rates.forEach((currency, rate) -> {
+            try {
+                units.put(currency, Money.toRateUnits(rate));
+            } catch (ArithmeticException e) {
+                // too precise for fixed point; conversions in this currency stay on BigDecimal
+            }
+        });
+        this.rateUnits = Map.copyOf(units);
+    }
+
+    @JsonProperty
+    public long version() {
+        return version;
+    }
+
+    @JsonProperty
+    public LocalDateTime effectiveFrom() {
+        return effectiveFrom;
+    }
+
+    @JsonProperty
+    public Map<String, BigDecimal> rates() {
+        return rates;
+    }
+
+    public BigDecimal rate(String currency) {
+        BigDecimal rate = currency == null ? null : rates.get(currency);
+        if (rate == null)
+            throw new IllegalArgumentException("Unsupported currency: " + currency);
+        return rate;
+    }
+
+    public BigDecimal toUsd(BigDecimal amount, String currency) {
+        return amount.multiply(rate(currency)).setScale(Money.SCALE, RoundingMode.HALF_DOWN);
+    }
+
+    /**
+     * {@link #toUsd} on minor units: fixed point when the rate fits {@link Money#RATE_SCALE} and the product
+     * fits a {@code long}, BigDecimal otherwise. Throws {@link ArithmeticException} if the result does not fit.
+     */
+    public long toUsdMinor(long minor, String currency) {
+        Long units = currency == null ? null : rateUnits.get(currency);
+        if (units == null || !Money.convertible(minor, units)) {
+            return Money.toMinor(toUsd(Money.toBigDecimal(minor), currency));
+        }
+        return Money.convert(minor, units);
+    }
+
+    public BigDecimal fromUsd(BigDecimal usd, String currency) {
+        return usd.divide(rate(currency), Money.SCALE, RoundingMode.HALF_DOWN);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof RateTable other && version == other.version
+                && effectiveFrom.equals(other.effectiveFrom) && rates.equals(other.rates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, effectiveFrom, rates);
+    }
+
+    @Override
+    public String toString() {
+        return "RateTable[version=" + version + ", effectiveFrom=" + effectiveFrom + ", rates=" + rates + "]";
+    }
+}
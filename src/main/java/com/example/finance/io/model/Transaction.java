@@ -1,7 +1,10 @@
 package com.example.finance.io.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
+import org.springframework.data.domain.Persistable;
+
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
@@ -10,12 +13,17 @@ import java.util.UUID;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
-public class Transaction {
+@Builder(toBuilder = true)
+@Table(indexes = {
+        @Index(name = "idx_transaction_account_ts_id", columnList = "account_id, timestamp, id"),
+        @Index(name = "idx_transaction_transfer", columnList = "transfer_id")
+})
+public class Transaction implements Persistable<UUID> {
     @Id
     private UUID id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @ToString.Exclude
     @JoinColumn(name = "account_id")
     private Account account;
 
@@ -30,8 +38,36 @@ public class Transaction {
 
     private String currency;
 
+    // RateTable version used for amountUSD
+    private Long rateVersion;
+
     private LocalDateTime timestamp;
 
     @Column(unique = true)
     private String idempotencyKey;
+
+    // Shared by the debit and credit legs of a transfer; the key, if any, is on the debit
+    private UUID transferId;
+
+    // The id is assigned by the application, so save() must persist instead of merging (no pre-insert SELECT)
+    @Transient
+    @JsonIgnore
+    @Builder.Default
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean fresh = true;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        fresh = false;
+    }
 }
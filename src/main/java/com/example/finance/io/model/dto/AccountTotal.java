@@ -0,0 +1,9 @@
+package com.example.finance.io.model.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Net USD amount of one account over some set of ledger rows, grouped in the query.
+ */
+public record AccountTotal(Long accountId, BigDecimal net) {
+}
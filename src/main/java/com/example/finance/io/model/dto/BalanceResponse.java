@@ -1,14 +1,25 @@
 package com.example.finance.io.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class BalanceResponse {
     private String name;
     private BigDecimal balance;
+    // Present when the balance was requested in a currency other than the stored USD one
+    private String currency;
+    // Native per-currency sums, when requested
+    private Map<String, BigDecimal> breakdown;
+
+    public BalanceResponse(String name, BigDecimal balance) {
+        this(name, balance, null, null);
+    }
 }
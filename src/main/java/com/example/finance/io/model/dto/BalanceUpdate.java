@@ -0,0 +1,29 @@
+package com.example.finance.io.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+
+/**
+ * One server-sent balance event: the balance after a committed posting and what was posted since the
+ * subscriber's previous event. {@code latest} is absent from the first event, which carries the current state.
+ *
+ * @param transactions count of transactions since the previous event
+ * @param deposits     their USD deposits
+ * @param withdrawals  their USD withdrawals
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BalanceUpdate(String name, BigDecimal balance, long revision, long transactions, BigDecimal deposits,
+                            BigDecimal withdrawals, TransactionView latest) {
+
+    /**
+     * The state of whichever of the two is newer, with the totals of both.
+     */
+    public BalanceUpdate coalesce(BalanceUpdate other) {
+        BalanceUpdate newer = other.revision > revision ? other : this;
+        BalanceUpdate older = newer == this ? other : this;
+        return new BalanceUpdate(name, newer.balance, newer.revision, transactions + other.transactions,
+                deposits.add(other.deposits), withdrawals.add(other.withdrawals),
+                newer.latest != null ? newer.latest : older.latest);
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.finance.io.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchItemResult {
+    private int index;
+    private BatchItemStatus status;
+    private TransactionView transaction;
+    private String error;
+}
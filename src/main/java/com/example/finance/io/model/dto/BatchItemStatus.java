@@ -0,0 +1,5 @@
+package com.example.finance.io.model.dto;
+
+public enum BatchItemStatus {
+    CREATED, DUPLICATE, REJECTED
+}
@@ -0,0 +1,21 @@
+package com.example.finance.io.model.dto;
+
+import com.example.finance.io.model.TransactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class BatchTransactionItem {
+    private String account;
+    private TransactionType type;
+    private BigDecimal amount;
+    private String currency;
+    private String idempotencyKey;
+}
@@ -0,0 +1,9 @@
+package com.example.finance.io.model.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Native sum of one currency on an account, selected without loading the balance entities.
+ */
+public record CurrencyAmount(String currency, BigDecimal amount) {
+}
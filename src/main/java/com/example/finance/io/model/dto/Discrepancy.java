@@ -0,0 +1,18 @@
+package com.example.finance.io.model.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * A balance that does not match what it is derived from.
+ *
+ * @param expected for {@link Kind#LEDGER} the sum of the ledger, for {@link Kind#CACHE} the stored balance
+ * @param actual   for {@link Kind#LEDGER} the stored balance, for {@link Kind#CACHE} the cached one
+ */
+public record Discrepancy(String account, Kind kind, BigDecimal expected, BigDecimal actual, boolean repaired) {
+    public enum Kind {
+        // Stored balance differs from hot plus archived transactions
+        LEDGER,
+        // Cached balance differs from the stored one at the same revision
+        CACHE
+    }
+}
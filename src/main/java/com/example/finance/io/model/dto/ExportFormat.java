@@ -0,0 +1,25 @@
+package com.example.finance.io.model.dto;
+
+/**
+ * Encodings of the bulk ledger export and import.
+ */
+public enum ExportFormat {
+    CSV("text/csv", "csv"),
+    BINARY("application/octet-stream", "bin");
+
+    private final String mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+}
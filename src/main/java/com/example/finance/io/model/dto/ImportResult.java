@@ -0,0 +1,22 @@
+package com.example.finance.io.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportResult {
+    private long read;
+    private long imported;
+    // Already present with the same id
+    private long skipped;
+    private long rejected;
+    private List<String> errors;
+    private long elapsedMillis;
+}
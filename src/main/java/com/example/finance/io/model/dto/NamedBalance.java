@@ -0,0 +1,14 @@
+package com.example.finance.io.model.dto;
+
+import com.example.finance.io.model.BalanceSnapshot;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance snapshot of one account together with its name, for lookups of many accounts in one query.
+ */
+public record NamedBalance(String name, BigDecimal balance, long revision) {
+    public BalanceSnapshot snapshot() {
+        return new BalanceSnapshot(balance, revision);
+    }
+}
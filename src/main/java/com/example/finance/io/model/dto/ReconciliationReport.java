@@ -0,0 +1,22 @@
+package com.example.finance.io.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReconciliationReport {
+    private long accounts;
+    private long ledgerDiscrepancies;
+    private long cacheDiscrepancies;
+    private long repaired;
+    // The first ones found, up to finance.reconciliation.max-reported; all of them are counted
+    private List<Discrepancy> discrepancies;
+    private long elapsedMillis;
+}
@@ -0,0 +1,30 @@
+package com.example.finance.io.model.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A reconciliation started through the API.
+ *
+ * @param report set once the run is {@link Status#DONE}
+ * @param error  set once the run has {@link Status#FAILED}
+ */
+public record ReconciliationRun(String id, Status status, boolean repair, LocalDateTime startedAt,
+                                ReconciliationReport report, String error) {
+    public enum Status {
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    public static ReconciliationRun running(String id, boolean repair) {
+        return new ReconciliationRun(id, Status.RUNNING, repair, LocalDateTime.now(), null, null);
+    }
+
+    public ReconciliationRun done(ReconciliationReport report) {
+        return new ReconciliationRun(id, Status.DONE, repair, startedAt, report, null);
+    }
+
+    public ReconciliationRun failed(String error) {
+        return new ReconciliationRun(id, Status.FAILED, repair, startedAt, null, error);
+    }
+}
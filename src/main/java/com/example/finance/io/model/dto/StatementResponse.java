@@ -0,0 +1,27 @@
+package com.example.finance.io.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Account movement over {@code [from, to)} in USD at the rates of each transaction, like the stored balance.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StatementResponse {
+    private String name;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private BigDecimal openingBalance;
+    private BigDecimal deposits;
+    private BigDecimal withdrawals;
+    private BigDecimal closingBalance;
+    private long transactionCount;
+}
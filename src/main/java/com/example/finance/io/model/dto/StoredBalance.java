@@ -0,0 +1,9 @@
+package com.example.finance.io.model.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Materialized balance of one account as stored on its row.
+ */
+public record StoredBalance(Long accountId, String name, BigDecimal balance, long revision) {
+}
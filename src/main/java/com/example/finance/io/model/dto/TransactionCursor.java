@@ -0,0 +1,47 @@
+package com.example.finance.io.model.dto;
+
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset position in a history ordered by {@code (timestamp desc, id desc)}.
+ */
+public record TransactionCursor(LocalDateTime timestamp, UUID id) {
+
+    public static TransactionCursor of(TransactionView tx) {
+        return new TransactionCursor(tx.timestamp(), tx.id());
+    }
+
+    /**
+     * Whether {@code row} comes after this position in history order, i.e. on a later page.
+     */
+    public boolean precedes(TransactionView row) {
+        int byTime = row.timestamp().compareTo(timestamp);
+        return byTime < 0 || byTime == 0 && compareIds(row.id(), id) < 0;
+    }
+
+    // Ids compare the way the database orders UUIDs: unsigned, most significant half first
+    public static int compareIds(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new TransactionCursor(LocalDateTime.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
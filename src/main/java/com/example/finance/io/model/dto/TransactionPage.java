@@ -0,0 +1,14 @@
+package com.example.finance.io.model.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransactionPage {
+    private List<TransactionView> items;
+    private String nextCursor;
+}
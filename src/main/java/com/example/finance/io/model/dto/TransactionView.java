@@ -0,0 +1,35 @@
+package com.example.finance.io.model.dto;
+
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * A transaction as the API returns it. History queries select straight into it, so listing neither
+ * hydrates {@link Transaction} entities nor touches the account table.
+ */
+public record TransactionView(UUID id, String account, TransactionType type, BigDecimal amount, BigDecimal amountUSD,
+                              String currency, Long rateVersion, LocalDateTime timestamp, String idempotencyKey,
+                              UUID transferId) {
+
+    // Constructor expression shared by the history queries in TransactionRepository; the caller passes the name it resolved
+    public static final String SELECT = """
+            select new com.example.finance.io.model.dto.TransactionView(
+                t.id, :name, t.type, t.amount, t.amountUSD, t.currency, t.rateVersion, t.timestamp, t.idempotencyKey,
+                t.transferId)
+            from Transaction t""";
+
+    // History order of the repository queries, for merging rows that come from elsewhere
+    public static final Comparator<TransactionView> NEWEST_FIRST = Comparator.comparing(TransactionView::timestamp)
+            .thenComparing(TransactionView::id, TransactionCursor::compareIds)
+            .reversed();
+
+    public static TransactionView of(Transaction tx) {
+        return new TransactionView(tx.getId(), tx.getAccount().getName(), tx.getType(), tx.getAmount(), tx.getAmountUSD(),
+                tx.getCurrency(), tx.getRateVersion(), tx.getTimestamp(), tx.getIdempotencyKey(), tx.getTransferId());
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.finance.io.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TransferRequest {
+    private String from;
+    private String to;
+    // Debited from the source in currency
+    private BigDecimal amount;
+    private String currency;
+    // Currency credited to the destination; the same as currency when absent
+    private String toCurrency;
+}
@@ -0,0 +1,22 @@
+package com.example.finance.io.repository;
+
+import com.example.finance.io.model.AccountCurrencyBalance;
+import com.example.finance.io.model.dto.CurrencyAmount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface AccountCurrencyBalanceRepository extends JpaRepository<AccountCurrencyBalance, Long> {
+    @Query("select new com.example.finance.io.model.dto.CurrencyAmount(b.currency, b.amount) from AccountCurrencyBalance b where b.accountId = :accountId")
+    List<CurrencyAmount> findAmountsByAccountId(@Param("accountId") Long accountId);
+
+    @Modifying
+    @Query("""
+            update AccountCurrencyBalance b set b.amount = b.amount + :delta
+            where b.accountId = :accountId and b.currency = :currency""")
+    int applyDelta(@Param("accountId") Long accountId, @Param("currency") String currency, @Param("delta") BigDecimal delta);
+}
@@ -1,10 +1,62 @@
 package com.example.finance.io.repository;
 
 import com.example.finance.io.model.Account;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.dto.NamedBalance;
+import com.example.finance.io.model.dto.StoredBalance;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
     Optional<Account> findByName(String name);
+
+    boolean existsByName(String name);
+
+    @Query("select a.id from Account a where a.name = :name")
+    Optional<Long> findIdByName(@Param("name") String name);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.name in :names order by a.id")
+    List<Account> findAllByNameForUpdate(@Param("names") Collection<String> names);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Account a where a.id = :id")
+    Optional<Account> findByIdForUpdate(@Param("id") Long id);
+
+    @Query("select a.id from Account a where a.id > :after order by a.id")
+    List<Long> findIdsAfter(@Param("after") Long after, Limit limit);
+
+    @Query("select new com.example.finance.io.model.BalanceSnapshot(a.balance, a.revision) from Account a where a.name = :name")
+    Optional<BalanceSnapshot> findSnapshotByName(@Param("name") String name);
+
+    @Query("select new com.example.finance.io.model.dto.NamedBalance(a.name, a.balance, a.revision) from Account a where a.name in :names")
+    List<NamedBalance> findSnapshotsByNames(@Param("names") Collection<String> names);
+
+    @Query("""
+            select new com.example.finance.io.model.dto.StoredBalance(a.id, a.name, a.balance, a.revision)
+            from Account a where a.id between :fromId and :toId""")
+    List<StoredBalance> findBalancesBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Query("select new com.example.finance.io.model.BalanceSnapshot(a.balance, a.revision) from Account a where a.id = :id")
+    Optional<BalanceSnapshot> findSnapshotById(@Param("id") Long id);
+
+    @Modifying
+    @Query("update Account a set a.balance = a.balance + :delta, a.revision = a.revision + 1 where a.id = :id")
+    int applyDelta(@Param("id") Long id, @Param("delta") BigDecimal delta);
+
+    @Modifying
+    @Query("""
+            update Account a set a.balance = a.balance + :delta, a.revision = a.revision + 1
+            where a.id = :id and a.balance + :delta >= 0""")
+    int applyDeltaIfCovered(@Param("id") Long id, @Param("delta") BigDecimal delta);
 }
@@ -0,0 +1,23 @@
+package com.example.finance.io.repository;
+
+import com.example.finance.io.model.ArchivedSegment;
+import com.example.finance.io.model.dto.AccountTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ArchivedSegmentRepository extends JpaRepository<ArchivedSegment, Long> {
+    List<ArchivedSegment> findByAccountIdOrderByFirstTimestamp(Long accountId);
+
+    List<ArchivedSegment> findAllByOrderByAccountIdAscFirstTimestampAsc();
+
+    @Query("select s.fileName from ArchivedSegment s where s.accountId = :accountId")
+    List<String> findFileNamesByAccountId(@Param("accountId") Long accountId);
+
+    @Query("""
+            select new com.example.finance.io.model.dto.AccountTotal(s.accountId, sum(s.deposits - s.withdrawals))
+            from ArchivedSegment s where s.accountId between :fromId and :toId group by s.accountId""")
+    List<AccountTotal> sumByAccountBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
+}
@@ -0,0 +1,12 @@
+package com.example.finance.io.repository;
+
+import com.example.finance.io.model.CurrencyRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface CurrencyRateRepository extends JpaRepository<CurrencyRate, Long> {
+    @Query("select max(r.version) from CurrencyRate r")
+    Optional<Long> findLatestVersion();
+}
@@ -0,0 +1,38 @@
+package com.example.finance.io.repository;
+
+import com.example.finance.io.model.DailyRollup;
+import com.example.finance.io.model.PeriodTotals;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface DailyRollupRepository extends JpaRepository<DailyRollup, Long> {
+
+    @Modifying
+    @Query("""
+            update DailyRollup r
+            set r.deposits = r.deposits + :deposits, r.withdrawals = r.withdrawals + :withdrawals, r.transactionCount = r.transactionCount + :count
+            where r.accountId = :accountId and r.day = :day""")
+    int applyDelta(@Param("accountId") Long accountId, @Param("day") LocalDate day,
+                   @Param("deposits") BigDecimal deposits, @Param("withdrawals") BigDecimal withdrawals,
+                   @Param("count") long count);
+
+    // Days in [from, to)
+    @Query("""
+            select new com.example.finance.io.model.PeriodTotals(
+                coalesce(sum(r.deposits), 0), coalesce(sum(r.withdrawals), 0), coalesce(sum(r.transactionCount), 0))
+            from DailyRollup r
+            where r.accountId = :accountId and r.day >= :from and r.day < :to""")
+    PeriodTotals sumDays(@Param("accountId") Long accountId, @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("""
+            select new com.example.finance.io.model.PeriodTotals(
+                coalesce(sum(r.deposits), 0), coalesce(sum(r.withdrawals), 0), coalesce(sum(r.transactionCount), 0))
+            from DailyRollup r
+            where r.accountId = :accountId and r.day < :before""")
+    PeriodTotals sumDaysBefore(@Param("accountId") Long accountId, @Param("before") LocalDate before);
+}
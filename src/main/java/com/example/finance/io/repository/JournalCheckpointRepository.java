@@ -0,0 +1,7 @@
+package com.example.finance.io.repository;
+
+import com.example.finance.io.model.JournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JournalCheckpointRepository extends JpaRepository<JournalCheckpoint, String> {
+}
@@ -0,0 +1,7 @@
+package com.example.finance.io.repository;
+
+import com.example.finance.io.model.JournalDeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JournalDeadLetterRepository extends JpaRepository<JournalDeadLetter, Long> {
+}
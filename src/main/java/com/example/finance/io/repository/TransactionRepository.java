@@ -1,13 +1,112 @@
 package com.example.finance.io.repository;
 
+import com.example.finance.io.model.PeriodTotals;
 import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.dto.AccountTotal;
+import com.example.finance.io.model.dto.TransactionView;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface TransactionRepository extends JpaRepository<Transaction, UUID> {
-    List<Transaction> findByAccount_NameOrderByTimestampDesc(String name);
-    Optional<Transaction> findByIdempotencyKey(String idempotencyKey);
+    String EXPORT_FETCH_SIZE = "1000";
+
+    @Query(TransactionView.SELECT + " where t.account.id = :accountId order by t.timestamp desc, t.id desc")
+    List<TransactionView> findHistory(@Param("accountId") Long accountId, @Param("name") String name);
+
+    // Replays are serialized after the transaction ends, so the account comes along
+    @Query("select t from Transaction t join fetch t.account where t.idempotencyKey = :key")
+    Optional<Transaction> findByIdempotencyKey(@Param("key") String idempotencyKey);
+
+    @Query("select t from Transaction t join fetch t.account where t.transferId = :transferId")
+    List<Transaction> findTransferLegs(@Param("transferId") UUID transferId);
+
+    @Query("select t from Transaction t join fetch t.account where t.idempotencyKey in :keys")
+    List<Transaction> findByIdempotencyKeyIn(@Param("keys") Collection<String> idempotencyKeys);
+
+    @Query("""
+            select t.idempotencyKey from Transaction t
+            where t.idempotencyKey is not null and t.idempotencyKey > :after
+            order by t.idempotencyKey""")
+    List<String> findIdempotencyKeysAfter(@Param("after") String after, Limit limit);
+
+    @Query(TransactionView.SELECT + " where t.account.id = :accountId order by t.timestamp desc, t.id desc")
+    List<TransactionView> findFirstPage(@Param("accountId") Long accountId, @Param("name") String name, Limit limit);
+
+    @Query(TransactionView.SELECT + """
+             where t.account.id = :accountId
+              and (t.timestamp < :timestamp or (t.timestamp = :timestamp and t.id < :id))
+            order by t.timestamp desc, t.id desc""")
+    List<TransactionView> findPageAfter(@Param("accountId") Long accountId,
+                                        @Param("name") String name,
+                                        @Param("timestamp") LocalDateTime timestamp,
+                                        @Param("id") UUID id,
+                                        Limit limit);
+
+    // Forward-only cursor for the bulk export; DTO rows, so nothing accumulates in the persistence context
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE))
+    @Query("""
+            select new com.example.finance.io.model.dto.TransactionView(
+                t.id, a.name, t.type, t.amount, t.amountUSD, t.currency, t.rateVersion, t.timestamp, t.idempotencyKey,
+                t.transferId)
+            from Transaction t join t.account a
+            where (:accountId is null or a.id = :accountId)
+              and (:from is null or t.timestamp >= :from)
+              and (:to is null or t.timestamp < :to)""")
+    Stream<TransactionView> streamForExport(@Param("accountId") Long accountId,
+                                            @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to);
+
+    @Query("select t.id from Transaction t where t.id in :ids")
+    List<UUID> findExistingIds(@Param("ids") Collection<UUID> ids);
+
+    @Query("select t.idempotencyKey from Transaction t where t.idempotencyKey in :keys")
+    List<String> findExistingKeys(@Param("keys") Collection<String> keys);
+
+    boolean existsByAccountIdAndTimestampBefore(Long accountId, LocalDateTime before);
+
+    // Oldest first, the order of a cold segment
+    @Query(TransactionView.SELECT + """
+             where t.account.id = :accountId and t.timestamp < :before
+            order by t.timestamp, t.id""")
+    List<TransactionView> findArchivable(@Param("accountId") Long accountId,
+                                         @Param("name") String name,
+                                         @Param("before") LocalDateTime before,
+                                         Limit limit);
+
+    // Everything up to and including the last archived row, which findArchivable returned last
+    @Modifying
+    @Query("""
+            delete from Transaction t
+            where t.account.id = :accountId
+              and (t.timestamp < :timestamp or (t.timestamp = :timestamp and t.id <= :id))""")
+    int deleteArchived(@Param("accountId") Long accountId, @Param("timestamp") LocalDateTime timestamp, @Param("id") UUID id);
+
+    // Timestamps in [from, to); walks the (account_id, timestamp, id) index
+    @Query("""
+            select new com.example.finance.io.model.PeriodTotals(
+                coalesce(sum(case when t.type = com.example.finance.io.model.TransactionType.DEPOSIT then t.amountUSD else 0 end), 0),
+                coalesce(sum(case when t.type = com.example.finance.io.model.TransactionType.WITHDRAW then t.amountUSD else 0 end), 0),
+                count(t))
+            from Transaction t
+            where t.account.id = :accountId and t.timestamp >= :from and t.timestamp < :to""")
+    PeriodTotals sumBetween(@Param("accountId") Long accountId, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("""
+            select new com.example.finance.io.model.dto.AccountTotal(t.account.id,
+                sum(case when t.type = com.example.finance.io.model.TransactionType.DEPOSIT then t.amountUSD else -t.amountUSD end))
+            from Transaction t where t.account.id between :fromId and :toId group by t.account.id""")
+    List<AccountTotal> sumByAccountBetween(@Param("fromId") Long fromId, @Param("toId") Long toId);
 }
@@ -1,76 +1,225 @@
 package com.example.finance.io.service;
 
 
+import com.example.finance.io.exception.ConflictException;
 import com.example.finance.io.model.Account;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.RateTable;
 import com.example.finance.io.model.Transaction;
 import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.BalanceResponse;
+import com.example.finance.io.model.dto.CurrencyAmount;
+import com.example.finance.io.model.dto.TransactionCursor;
+import com.example.finance.io.model.dto.TransactionPage;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.repository.AccountCurrencyBalanceRepository;
 import com.example.finance.io.repository.AccountRepository;
 import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.time.LocalDateTime;
+import java.math.RoundingMode;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
+@Timed("finance.service")
 public class AccountBalanceService {
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_PAGE_SIZE = 500;
+
     private final AccountRepository balanceRepo;
     private final TransactionRepository txRepo;
+    private final LedgerWriter ledger;
+    private final IdempotencyKeyStore keyStore;
+    private final BalanceCache balanceCache;
+    private final AccountCurrencyBalanceRepository currencyBalanceRepo;
     private final CurrencyConverter converter;
+    private final AccountDirectory directory;
+    private final ColdTransactionStore coldStore;
 
     public Account createBalance(String name) {
-        if (balanceRepo.findByName(name).isPresent())
+        if (balanceRepo.existsByName(name))
             throw new IllegalArgumentException("Balance already exists");
         Account b = new Account();
         b.setName(name);
-        return balanceRepo.save(b);
+        Account created = balanceRepo.save(b);
+        directory.evict(name);
+        return created;
     }
 
-    @Cacheable("balance")
     public BigDecimal getBalance(String name) {
+        return getSnapshot(name).balance();
+    }
+
+    public BalanceSnapshot getSnapshot(String name) {
         if (name == null || name.isBlank()) {
             throw new IllegalArgumentException("Balance name cannot be null or blank");
         }
-        balanceRepo.findByName(name).orElseThrow(() -> new NoSuchElementException("No balance found"));
+        return balanceCache.get(name).orElseThrow(() -> new NoSuchElementException("No balance found"));
+    }
+
+    /**
+     * Version of what the balance and history reads of {@code name} return: the account revision, which every
+     * posting bumps, and for a balance in another currency also the version of the current rates. It comes from
+     * the balance cache, so an unchanged account is answered without a query.
+     */
+    public String getVersion(String name, String currency) {
+        long revision = getSnapshot(name).revision();
+        return currency == null ? Long.toString(revision) : revision + "-" + converter.currentRates().version();
+    }
 
-        List<Transaction> txs = txRepo.findByAccount_NameOrderByTimestampDesc(name);
+    /**
+     * Version of the history of {@code name} as {@link #getVersion} gives it, or empty for an unknown account,
+     * whose history reads are answered with an empty result rather than an error.
+     */
+    public Optional<String> getHistoryVersion(String name) {
+        if (name == null || name.isBlank()) {
+            return Optional.empty();
+        }
+        return balanceCache.get(name).map(snapshot -> Long.toString(snapshot.revision()));
+    }
+
+    /**
+     * Stored USD balances of up to {@link #MAX_PAGE_SIZE} accounts in request order; unknown names are left out.
+     */
+    public List<BalanceResponse> getBalances(Collection<String> names) {
+        if (names == null || names.isEmpty() || names.size() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_PAGE_SIZE + " balance names are required");
+        }
+        Set<String> distinct = new LinkedHashSet<>(names);
+        if (distinct.stream().anyMatch(name -> name == null || name.isBlank())) {
+            throw new IllegalArgumentException("Balance name cannot be null or blank");
+        }
+        Map<String, BalanceSnapshot> snapshots = balanceCache.getAll(distinct);
+        List<BalanceResponse> balances = new ArrayList<>(snapshots.size());
+        for (String name : distinct) {
+            BalanceSnapshot snapshot = snapshots.get(name);
+            if (snapshot != null) {
+                balances.add(new BalanceResponse(name, snapshot.balance()));
+            }
+        }
+        return balances;
+    }
 
-        return txs.stream().map(tx -> {
-            BigDecimal usdAmount = tx.getAmountUSD();
-            return tx.getType() == TransactionType.DEPOSIT ? usdAmount : usdAmount.negate();
-        }).reduce(BigDecimal.ZERO, BigDecimal::add);
+    /**
+     * Balance in {@code currency} at current rates, computed from the per-currency native sums.
+     * Unlike the stored USD balance, which keeps the rate of each transaction, this revalues the whole holding.
+     */
+    public BalanceResponse getBalance(String name, String currency, boolean withBreakdown) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Balance name cannot be null or blank");
+        }
+        BigDecimal stored = getBalance(name);
+        Long accountId = directory.idOf(name).orElseThrow(() -> new NoSuchElementException("No balance found"));
+        List<CurrencyAmount> sums = currencyBalanceRepo.findAmountsByAccountId(accountId);
+        Map<String, BigDecimal> breakdown = withBreakdown ? new TreeMap<>() : null;
+        BigDecimal balance;
+        if (currency == null) {
+            balance = stored;
+        } else {
+            RateTable rates = converter.currentRates();
+            BigDecimal targetRate = rates.rate(currency);
+            BigDecimal usd = BigDecimal.ZERO;
+            for (CurrencyAmount sum : sums) {
+                usd = usd.add(sum.amount().multiply(rates.rate(sum.currency())));
+            }
+            balance = usd.divide(targetRate, 2, RoundingMode.HALF_DOWN);
+        }
+        if (breakdown != null) {
+            sums.forEach(sum -> breakdown.put(sum.currency(), sum.amount()));
+        }
+        return new BalanceResponse(name, balance, currency, breakdown);
     }
 
-    @CacheEvict(value = "balance", key = "#name")
     @Transactional
     public Transaction addTransaction(String name, TransactionType type, BigDecimal amount, String currency, String idempotencyKey) {
         if (idempotencyKey != null && !idempotencyKey.isBlank()) {
-            Optional<Transaction> existing = txRepo.findByIdempotencyKey(idempotencyKey);
+            Optional<Transaction> existing = keyStore.find(idempotencyKey);
             if (existing.isPresent()) {
-                return existing.get();
+                return IdempotencyKeyStore.requireReplayOf(existing.get(), name, type, amount, currency);
             }
         }
-        var balance = balanceRepo.findByName(name)
-                .orElseThrow(() -> new NoSuchElementException("No balance found"));
-        Transaction tx = Transaction.builder()
-                .id(UUID.randomUUID())
-                .account(balance)
-                .type(type)
-                .amount(amount)
-                .currency(currency)
-                .amountUSD(converter.toUsd(amount, currency))
-                .timestamp(LocalDateTime.now())
-                .idempotencyKey(idempotencyKey)
-                .build();
-        return txRepo.save(tx);
+        Transaction tx = ledger.post(ledger.prepare(directory.reference(name), type, amount, currency, idempotencyKey));
+        keyStore.remember(tx);
+        return tx;
+    }
+
+    /**
+     * Both legs of a transfer, debit first, committed together. A replayed key returns the legs stored under it,
+     * provided they are the same transfer.
+     */
+    @Transactional
+    public List<Transaction> transfer(String from, String to, BigDecimal amount, String currency, String toCurrency,
+                                      String idempotencyKey) {
+        if (idempotencyKey != null && !idempotencyKey.isBlank()) {
+            Optional<Transaction> existing = keyStore.find(idempotencyKey);
+            if (existing.isPresent()) {
+                return IdempotencyKeyStore.requireTransferReplayOf(transferLegs(existing.get()), from, to, amount,
+                        currency, toCurrency);
+            }
+        }
+        List<Transaction> legs = ledger.postTransfer(ledger.prepareTransfer(
+                directory.reference(from), directory.reference(to), amount, currency, toCurrency, idempotencyKey));
+        keyStore.remember(legs.get(0));
+        return legs;
+    }
+
+    public List<Transaction> transferLegs(Transaction debit) {
+        if (debit.getTransferId() == null) {
+            throw new ConflictException("Idempotency key was already used for a different request");
+        }
+        return txRepo.findTransferLegs(debit.getTransferId());
+    }
+
+    public List<TransactionView> getTransactions(String name) {
+        return directory.idOf(name)
+                .map(id -> coldStore.page(id, name, null, Integer.MAX_VALUE, () -> txRepo.findHistory(id, name)))
+                .orElse(List.of());
+    }
+
+    public TransactionPage getTransactionPage(String name, int limit, String after) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        TransactionCursor cursor = after == null || after.isBlank() ? null : TransactionCursor.decode(after);
+        Optional<Long> accountId = directory.idOf(name);
+        if (accountId.isEmpty()) {
+            return new TransactionPage(List.of(), null);
+        }
+        // One extra row tells whether another page exists without a count query
+        List<TransactionView> rows = fetchPage(accountId.get(), name, cursor, limit + 1);
+        if (rows.size() <= limit) {
+            return new TransactionPage(rows, null);
+        }
+        List<TransactionView> items = rows.subList(0, limit);
+        return new TransactionPage(new ArrayList<>(items), TransactionCursor.of(items.get(limit - 1)).encode());
+    }
+
+    public void streamTransactions(String name, Consumer<TransactionView> sink) {
+        Optional<Long> accountId = directory.idOf(name);
+        if (accountId.isEmpty()) {
+            return;
+        }
+        TransactionCursor cursor = null;
+        List<TransactionView> rows;
+        do {
+            rows = fetchPage(accountId.get(), name, cursor, STREAM_PAGE_SIZE);
+            rows.forEach(sink);
+            if (!rows.isEmpty()) {
+                cursor = TransactionCursor.of(rows.get(rows.size() - 1));
+            }
+        } while (rows.size() == STREAM_PAGE_SIZE);
     }
 
-    public List<Transaction> getTransactions(String name) {
-        return txRepo.findByAccount_NameOrderByTimestampDesc(name);
+    private List<TransactionView> fetchPage(Long accountId, String name, TransactionCursor cursor, int size) {
+        return coldStore.page(accountId, name, cursor, size, () -> cursor == null
+                ? txRepo.findFirstPage(accountId, name, Limit.of(size))
+                : txRepo.findPageAfter(accountId, name, cursor.timestamp(), cursor.id(), Limit.of(size)));
     }
 }
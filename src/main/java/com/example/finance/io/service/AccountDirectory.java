@@ -0,0 +1,63 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.AccountDirectoryProperties;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.repository.AccountRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * Bounded, lazily filled map of account names to ids, so requests can address rows by id without a lookup.
+ * Names never change and accounts are not deleted, so a resolved id stays valid until the account is
+ * created again (a fresh or replayed database); unknown names are not remembered.
+ */
+@Component
+public class AccountDirectory {
+    public static final String NAME = "accountDirectory";
+
+    private final AccountRepository accountRepo;
+    private final Cache<String, Long> ids;
+
+    // The repository is lazy for the same reason as in BalanceCache
+    public AccountDirectory(@Lazy AccountRepository accountRepo, AccountDirectoryProperties properties) {
+        this.accountRepo = accountRepo;
+        this.ids = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .recordStats()
+                .build();
+    }
+
+    public Optional<Long> idOf(String name) {
+        if (name == null) {
+            return Optional.empty();
+        }
+        Long cached = ids.getIfPresent(name);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Long> loaded = accountRepo.findIdByName(name);
+        loaded.ifPresent(id -> ids.put(name, id));
+        return loaded;
+    }
+
+    /**
+     * Detached account carrying only id and name, enough to post a transaction against it.
+     */
+    public Account reference(String name) {
+        Long id = idOf(name).orElseThrow(() -> new NoSuchElementException("No balance found"));
+        return Account.builder().id(id).name(name).build();
+    }
+
+    public void evict(String name) {
+        ids.invalidate(name);
+    }
+
+    public Cache<String, Long> nativeCache() {
+        return ids;
+    }
+}
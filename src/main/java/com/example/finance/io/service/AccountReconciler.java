@@ -0,0 +1,62 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.dto.AccountTotal;
+import com.example.finance.io.model.dto.Discrepancy;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.ArchivedSegmentRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Confirms, and optionally corrects, a balance that a reconciliation run found off the ledger.
+ * <p>
+ * Only the USD balance of the account is covered. Per-currency balances and daily rollups are neither checked
+ * nor repaired: archived segments keep just USD totals over their time span, so neither can be recomputed once
+ * transactions have moved to the cold store.
+ */
+@Component
+@RequiredArgsConstructor
+public class AccountReconciler {
+    private final AccountRepository accountRepo;
+    private final TransactionRepository txRepo;
+    private final ArchivedSegmentRepository catalogRepo;
+    private final ApplicationEventPublisher events;
+
+    /**
+     * Compares the stored balance with the hot and archived transactions under the account row lock. Postings and
+     * archival take that lock too, so both sides are of the same moment and a run racing a writer is not reported.
+     * A repair goes through {@code applyDelta}, so the revision moves on and caches and subscribers are told.
+     */
+    @Transactional
+    public Optional<Discrepancy> recheck(Long accountId, boolean repair) {
+        Account account = accountRepo.findByIdForUpdate(accountId).orElse(null);
+        if (account == null) {
+            return Optional.empty();
+        }
+        BigDecimal ledger = net(txRepo.sumByAccountBetween(accountId, accountId))
+                .add(net(catalogRepo.sumByAccountBetween(accountId, accountId)));
+        BigDecimal stored = account.getBalance();
+        if (stored.compareTo(ledger) == 0) {
+            return Optional.empty();
+        }
+        if (repair) {
+            accountRepo.applyDelta(accountId, ledger.subtract(stored));
+            accountRepo.findSnapshotById(accountId).ifPresent(snapshot -> events.publishEvent(
+                    new BalanceChangedEvent(accountId, account.getName(), snapshot, PeriodTotals.EMPTY, null)));
+        }
+        return Optional.of(new Discrepancy(account.getName(), Discrepancy.Kind.LEDGER, ledger, stored, repair));
+    }
+
+    private static BigDecimal net(List<AccountTotal> totals) {
+        return totals.isEmpty() ? BigDecimal.ZERO : totals.get(0).net();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.BalanceCacheProperties;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.dto.NamedBalance;
+import com.example.finance.io.repository.AccountRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Write-through, refresh-ahead cache of account balances keyed by name.
+ * Writers hand over the post-update snapshot after commit; the revision keeps a racing load
+ * or refresh from replacing a newer value with an older one.
+ */
+@Component
+public class BalanceCache {
+    public static final String NAME = "balance";
+
+    private final AccountRepository accountRepo;
+    private final LoadingCache<String, BalanceSnapshot> cache;
+
+    // The repository is lazy: the cache manager is built before the EntityManagerFactory that repositories need
+    public BalanceCache(@Lazy AccountRepository accountRepo, BalanceCacheProperties properties) {
+        this.accountRepo = accountRepo;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.maximumSize())
+                .refreshAfterWrite(properties.refreshAfterWrite())
+                .expireAfterWrite(properties.expireAfterWrite())
+                .recordStats()
+                .build(name -> accountRepo.findSnapshotByName(name).orElse(null));
+    }
+
+    /**
+     * A miss is loaded outside the cache's map lock. The after-commit {@link #put} runs while its transaction
+     * still holds a connection; blocking it on a load that is itself waiting for a connection deadlocks the pool.
+     */
+    public Optional<BalanceSnapshot> get(String name) {
+        BalanceSnapshot cached = cache.getIfPresent(name);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<BalanceSnapshot> loaded = accountRepo.findSnapshotByName(name);
+        loaded.ifPresent(snapshot -> put(name, snapshot));
+        // put keeps whichever revision is newer, so answer with what the cache holds now
+        return loaded.map(snapshot -> Objects.requireNonNullElse(cache.getIfPresent(name), snapshot));
+    }
+
+    /**
+     * Bulk form of {@link #get}: cached names in one pass over the cache, all misses in one query. Names of
+     * accounts that do not exist are left out. Misses go through {@link #put} rather than a bulk loader,
+     * for the same lock and revision reasons as a single miss.
+     */
+    public Map<String, BalanceSnapshot> getAll(Collection<String> names) {
+        Map<String, BalanceSnapshot> found = new HashMap<>(cache.getAllPresent(names));
+        Set<String> missing = new HashSet<>(names);
+        missing.removeAll(found.keySet());
+        if (missing.isEmpty()) {
+            return found;
+        }
+        for (NamedBalance loaded : accountRepo.findSnapshotsByNames(missing)) {
+            put(loaded.name(), loaded.snapshot());
+            found.put(loaded.name(), Objects.requireNonNullElse(cache.getIfPresent(loaded.name()), loaded.snapshot()));
+        }
+        return found;
+    }
+
+    public void put(String name, BalanceSnapshot snapshot) {
+        cache.asMap().merge(name, snapshot, (current, next) -> next.revision() > current.revision() ? next : current);
+    }
+
+    public void evict(String name) {
+        cache.invalidate(name);
+    }
+
+    public LoadingCache<String, BalanceSnapshot> nativeCache() {
+        return cache;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        put(event.name(), event.snapshot());
+    }
+}
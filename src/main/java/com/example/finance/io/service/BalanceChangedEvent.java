@@ -0,0 +1,15 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.Transaction;
+
+/**
+ * Published inside the writing DB transaction; listeners that expose state to readers should react after commit.
+ *
+ * @param posted USD totals of the transactions of this account in the posting
+ * @param latest the newest of those transactions; {@code null} for a correction that posts none
+ */
+public record BalanceChangedEvent(Long accountId, String name, BalanceSnapshot snapshot, PeriodTotals posted,
+                                  Transaction latest) {
+}
@@ -0,0 +1,255 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.SubscriptionProperties;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.dto.BalanceUpdate;
+import com.example.finance.io.model.dto.TransactionView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans committed balance changes out to server-sent event streams. The committing thread only appends the
+ * update to each subscriber's bounded queue; sending happens on a virtual thread per busy subscriber, so a slow
+ * client blocks nothing but its own sender. When a queue is full the update is coalesced into the newest queued
+ * one: the client still gets the latest balance and the totals of everything posted, but fewer events.
+ * <p>
+ * After-commit callbacks of one account can run out of revision order. An older update merges into a queued
+ * newer one, and is dropped when the newer one has already been sent, so clients never see a balance go back.
+ */
+@Slf4j
+@Component
+public class BalanceSubscriptions implements DisposableBean {
+    private final BalanceCache balanceCache;
+    private final SubscriptionProperties properties;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("balance-sse-", 0).factory());
+    private final Counter coalesced;
+    private final Counter dropped;
+
+    public BalanceSubscriptions(BalanceCache balanceCache, SubscriptionProperties properties, ObjectMapper objectMapper,
+                                MeterRegistry registry) {
+        if (properties.queueCapacity() < 1) {
+            throw new IllegalArgumentException("finance.subscriptions.queue-capacity must be positive");
+        }
+        this.balanceCache = balanceCache;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        Gauge.builder("finance.subscriptions.active", count, AtomicInteger::get)
+                .description("Open balance change streams")
+                .register(registry);
+        this.coalesced = Counter.builder("finance.subscriptions.coalesced")
+                .description("Balance updates merged into a queued one because the subscriber fell behind")
+                .register(registry);
+        this.dropped = Counter.builder("finance.subscriptions.dropped")
+                .description("Balance updates older than one already sent")
+                .register(registry);
+    }
+
+    /**
+     * Opens a stream whose first event is the current balance.
+     */
+    public SseEmitter subscribe(String name) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("Balance name cannot be null or blank");
+        }
+        BalanceSnapshot snapshot = balanceCache.get(name).orElseThrow(() -> new NoSuchElementException("No balance found"));
+        if (count.incrementAndGet() > properties.maxSubscribers()) {
+            count.decrementAndGet();
+            throw new IllegalArgumentException("Too many balance subscribers");
+        }
+        Subscriber subscriber = new Subscriber(name, newEmitter());
+        subscriber.emitter.onCompletion(() -> remove(subscriber));
+        subscriber.emitter.onTimeout(() -> remove(subscriber));
+        subscriber.emitter.onError(e -> remove(subscriber));
+        subscribers.compute(name, (key, set) -> {
+            Set<Subscriber> result = set == null ? ConcurrentHashMap.newKeySet() : set;
+            result.add(subscriber);
+            return result;
+        });
+        // Registered first, so a change committed meanwhile is either in this snapshot or queued after it
+        subscriber.offer(new Pending(new BalanceUpdate(name, snapshot.balance(), snapshot.revision(), 0, BigDecimal.ZERO,
+                BigDecimal.ZERO, null), null));
+        return subscriber.emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBalanceChanged(BalanceChangedEvent event) {
+        Set<Subscriber> set = subscribers.get(event.name());
+        if (set == null) {
+            return;
+        }
+        Transaction tx = event.latest();
+        // The name comes from the event: the transaction's account may be an uninitialized reference
+        TransactionView latest = tx == null ? null : new TransactionView(tx.getId(), event.name(), tx.getType(),
+                tx.getAmount(), tx.getAmountUSD(), tx.getCurrency(), tx.getRateVersion(), tx.getTimestamp(),
+                tx.getIdempotencyKey(), tx.getTransferId());
+        BalanceUpdate update = new BalanceUpdate(event.name(), event.snapshot().balance(), event.snapshot().revision(),
+                event.posted().count(), event.posted().deposits(), event.posted().withdrawals(), latest);
+        // Serialized once here rather than once per subscriber; only coalesced updates are serialized by senders
+        Pending pending = new Pending(update, json(update));
+        set.forEach(subscriber -> subscriber.offer(pending));
+    }
+
+    @Scheduled(fixedDelayString = "${finance.subscriptions.heartbeat:30s}")
+    public void heartbeat() {
+        long idleSince = System.nanoTime() - properties.heartbeat().toNanos();
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.ping(idleSince)));
+    }
+
+    public int subscriberCount() {
+        return count.get();
+    }
+
+    @Override
+    public void destroy() {
+        subscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdownNow();
+    }
+
+    // Package-private, so tests can observe what is sent without a servlet response
+    SseEmitter newEmitter() {
+        return new SseEmitter(properties.timeout().toMillis());
+    }
+
+    private String json(BalanceUpdate update) {
+        try {
+            return objectMapper.writeValueAsString(update);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize balance update", e);
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscriber.close()) {
+            count.decrementAndGet();
+            subscribers.computeIfPresent(subscriber.name, (key, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    private final class Subscriber {
+        private final String name;
+        private final SseEmitter emitter;
+        private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        // Newest revision queued or sent
+        private long revision = -1;
+        private boolean sending;
+        private boolean heartbeatDue;
+        private boolean closed;
+        private volatile long lastSent = System.nanoTime();
+
+        private Subscriber(String name, SseEmitter emitter) {
+            this.name = name;
+            this.emitter = emitter;
+        }
+
+        synchronized void offer(Pending next) {
+            if (closed) {
+                return;
+            }
+            BalanceUpdate update = next.update();
+            if (update.revision() <= revision && pending.isEmpty()) {
+                dropped.increment();
+                return;
+            }
+            if (update.revision() <= revision || pending.size() == properties.queueCapacity()) {
+                pending.addLast(new Pending(pending.pollLast().update().coalesce(update), null));
+                coalesced.increment();
+            } else {
+                pending.addLast(next);
+            }
+            revision = Math.max(revision, update.revision());
+            startSending();
+        }
+
+        synchronized void ping(long idleSince) {
+            if (!closed && !sending && lastSent - idleSince < 0) {
+                heartbeatDue = true;
+                startSending();
+            }
+        }
+
+        // Returns whether this call closed it
+        synchronized boolean close() {
+            if (closed) {
+                return false;
+            }
+            closed = true;
+            pending.clear();
+            return true;
+        }
+
+        private void startSending() {
+            if (!sending) {
+                sending = true;
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            while (true) {
+                Pending update;
+                boolean heartbeat;
+                synchronized (this) {
+                    update = pending.pollFirst();
+                    heartbeat = heartbeatDue;
+                    heartbeatDue = false;
+                    if (closed || (update == null && !heartbeat)) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    if (update != null) {
+                        emitter.send(SseEmitter.event()
+                                .name("balance")
+                                .id(Long.toString(update.update().revision()))
+                                .data(update.json() != null ? update.json() : json(update.update()), MediaType.APPLICATION_JSON));
+                    } else {
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    }
+                    lastSent = System.nanoTime();
+                } catch (IOException | IllegalStateException e) {
+                    // Client gone or stream already completed
+                    log.debug("Closing balance stream of {}: {}", name, e.toString());
+                    remove(this);
+                    emitter.completeWithError(e);
+                    synchronized (this) {
+                        sending = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    // json is null for coalesced updates
+    private record Pending(BalanceUpdate update, String json) {
+    }
+}
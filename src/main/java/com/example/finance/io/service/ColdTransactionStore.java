@@ -0,0 +1,296 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.ArchiveProperties;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.ArchivedSegment;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.dto.TransactionCursor;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.ArchivedSegmentRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import com.example.finance.io.util.TransactionSegment;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The cold tier of the ledger: transactions moved out of the transaction table into {@link TransactionSegment}
+ * files, listed in the {@link ArchivedSegment} catalog. Reads take a hot-table query and merge the cold rows of
+ * the same range into its result. Moving a segment swaps rows from one tier to the other: its catalog entry is
+ * published after the commit, and a read that overlaps such a commit of an account in its stripe runs again, so
+ * it sees a segment's rows in exactly one of the tiers. Neither side holds a JVM lock across database work.
+ */
+@Slf4j
+@Component
+public class ColdTransactionStore {
+    public static final String NAME = "coldSegments";
+    private static final int STRIPES = 64;
+    private static final int OPEN_SEGMENTS = 256;
+    private static final long PUBLICATION_POLL_NANOS = 100_000;
+
+    private final ArchivedSegmentRepository catalogRepo;
+    private final TransactionRepository txRepo;
+    private final AccountRepository accountRepo;
+    private final Path dir;
+    private final LoadingCache<Long, List<ArchivedSegment>> catalog;
+    // Mapped files; an evicted mapping is released once the segment is unreachable
+    private final Cache<String, TransactionSegment> open = Caffeine.newBuilder().maximumSize(OPEN_SEGMENTS).build();
+    // Per stripe, archivals that reached beforeCommit and that completed after publishing: a seqlock for reads
+    private final AtomicLongArray started = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray finished = new AtomicLongArray(STRIPES);
+    private final Counter archived;
+
+    // The repositories are lazy for the same reason as in BalanceCache
+    public ColdTransactionStore(@Lazy ArchivedSegmentRepository catalogRepo, @Lazy TransactionRepository txRepo,
+                                @Lazy AccountRepository accountRepo, ArchiveProperties properties, MeterRegistry registry) {
+        this.catalogRepo = catalogRepo;
+        this.txRepo = txRepo;
+        this.accountRepo = accountRepo;
+        this.dir = properties.dir();
+        this.catalog = Caffeine.newBuilder()
+                .maximumSize(properties.cachedAccounts())
+                .recordStats()
+                .build(catalogRepo::findByAccountIdOrderByFirstTimestamp);
+        this.archived = Counter.builder("finance.archive.transactions")
+                .description("Transactions moved to cold segment files")
+                .register(registry);
+    }
+
+    /**
+     * Runs {@code hot}, a history query with the same cursor and limit, and merges the matching cold rows into it.
+     */
+    public List<TransactionView> page(Long accountId, String name, TransactionCursor after, int limit,
+                                      Supplier<List<TransactionView>> hot) {
+        int stripe = stripe(accountId);
+        List<TransactionView> rows;
+        List<ArchivedSegment> segments;
+        while (true) {
+            long published = finished.get(stripe);
+            // Hot rows first: a segment committed after this query is then in the catalog snapshot below
+            rows = hot.get();
+            segments = catalog.get(accountId);
+            if (settled(stripe, published)) {
+                break;
+            }
+        }
+        if (segments.isEmpty()) {
+            return rows;
+        }
+        List<TransactionView> merged = new ArrayList<>(rows);
+        int cold = 0;
+        // Segments cover consecutive ranges, so newest first they continue one another
+        for (int i = segments.size() - 1; i >= 0 && cold < limit; i--) {
+            ArchivedSegment segment = segments.get(i);
+            if (after != null && segment.getFirstTimestamp().isAfter(after.timestamp())) {
+                continue;
+            }
+            List<TransactionView> found = segment(segment).readDescending(name, after, limit - cold);
+            merged.addAll(found);
+            cold += found.size();
+        }
+        if (cold == 0) {
+            return rows;
+        }
+        // A row in both tiers is listed once
+        Set<UUID> ids = new HashSet<>();
+        return merged.stream()
+                .sorted(TransactionView.NEWEST_FIRST)
+                .filter(row -> ids.add(row.id()))
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Runs {@code hot}, a totals query over [from, to), and adds the totals of the cold rows in that range.
+     */
+    public PeriodTotals sum(Long accountId, LocalDateTime from, LocalDateTime to, Supplier<PeriodTotals> hot) {
+        int stripe = stripe(accountId);
+        PeriodTotals totals;
+        List<ArchivedSegment> segments;
+        while (true) {
+            long published = finished.get(stripe);
+            totals = hot.get();
+            segments = catalog.get(accountId);
+            // Totals cannot be deduplicated like rows, so they rely on the retry alone
+            if (settled(stripe, published)) {
+                break;
+            }
+        }
+        for (ArchivedSegment segment : segments) {
+            if (segment.overlaps(from, to)) {
+                totals = totals.plus(segment(segment).sum(from, to));
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Segments of {@code accountId}, or of every account when it is {@code null}, read from the catalog table.
+     */
+    public List<ArchivedSegment> listSegments(Long accountId) {
+        return accountId == null
+                ? catalogRepo.findAllByOrderByAccountIdAscFirstTimestampAsc()
+                : catalogRepo.findByAccountIdOrderByFirstTimestamp(accountId);
+    }
+
+    public void forEach(ArchivedSegment segment, String name, Consumer<TransactionView> sink) {
+        segment(segment).forEach(name, sink);
+    }
+
+    /**
+     * Moves up to {@code maxRows} of the oldest transactions before {@code before} into a new segment file and
+     * returns how many. The account row stays locked until commit, so no posting or projection can add rows
+     * to the range in between. If the transaction rolls back, the file is deleted again.
+     */
+    @Transactional
+    public int archive(Long accountId, LocalDateTime before, int maxRows) {
+        Account account = accountRepo.findByIdForUpdate(accountId).orElse(null);
+        if (account == null) {
+            return 0;
+        }
+        List<TransactionView> rows = txRepo.findArchivable(accountId, account.getName(), before, Limit.of(maxRows));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        String fileName = accountId + "/" + UUID.randomUUID() + TransactionSegment.SUFFIX;
+        Path file = dir.resolve(fileName);
+        TransactionSegment.Summary summary = TransactionSegment.write(file, rows);
+        TransactionSynchronizationManager.registerSynchronization(new Publication(accountId, file));
+
+        catalogRepo.save(ArchivedSegment.builder()
+                .accountId(accountId)
+                .fileName(fileName)
+                .firstTimestamp(summary.firstTimestamp())
+                .lastTimestamp(summary.lastTimestamp())
+                .deposits(summary.totals().deposits())
+                .withdrawals(summary.totals().withdrawals())
+                .transactionCount(summary.totals().count())
+                .build());
+        TransactionView last = rows.get(rows.size() - 1);
+        int deleted = txRepo.deleteArchived(accountId, last.timestamp(), last.id());
+        if (deleted != rows.size()) {
+            throw new IllegalStateException("Archived " + rows.size() + " transactions of account " + accountId
+                    + " but " + deleted + " matched for deletion");
+        }
+        archived.increment(rows.size());
+        return rows.size();
+    }
+
+    /**
+     * Deletes files of {@code accountId} that are not in the catalog: leftovers of a rolled back archival,
+     * or of a database that no longer knows them.
+     */
+    public void deleteOrphans(Long accountId) throws IOException {
+        Path accountDir = dir.resolve(accountId.toString());
+        if (!Files.isDirectory(accountDir)) {
+            return;
+        }
+        Set<String> known = new HashSet<>(catalogRepo.findFileNamesByAccountId(accountId));
+        try (Stream<Path> files = Files.list(accountDir)) {
+            for (Path file : files.toList()) {
+                if (!known.contains(accountId + "/" + file.getFileName())) {
+                    log.info("Deleting cold segment {} that is not in the catalog", file);
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    public Cache<Long, List<ArchivedSegment>> nativeCache() {
+        return catalog;
+    }
+
+    private TransactionSegment segment(ArchivedSegment segment) {
+        return open.get(segment.getFileName(), name -> TransactionSegment.open(dir.resolve(name)));
+    }
+
+    private static int stripe(Long accountId) {
+        return Math.floorMod(accountId.hashCode(), STRIPES);
+    }
+
+    /**
+     * Whether no archival of the stripe committed between reading {@code published} and now; otherwise waits
+     * until the ones that did have published their segments, and the caller reads again. An archival is only
+     * waited for during its commit, never while it queries or waits for a connection.
+     */
+    private boolean settled(int stripe, long published) {
+        long begun = started.get(stripe);
+        if (begun == published) {
+            return true;
+        }
+        while (finished.get(stripe) < begun) {
+            LockSupport.parkNanos(PUBLICATION_POLL_NANOS);
+        }
+        return false;
+    }
+
+    /**
+     * Publishes the new segment to readers once the commit that removes its rows from the hot table is done.
+     */
+    private final class Publication implements TransactionSynchronization {
+        private final Long accountId;
+        private final Path file;
+        private List<ArchivedSegment> segments;
+
+        private Publication(Long accountId, Path file) {
+            this.accountId = accountId;
+            this.file = file;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            // Read inside this DB transaction, so the list already has the new segment
+            segments = catalogRepo.findByAccountIdOrderByFirstTimestamp(accountId);
+            started.incrementAndGet(stripe(accountId));
+        }
+
+        @Override
+        public void afterCommit() {
+            // Archivals of an account commit in turn under its row lock and segments are never removed, so a
+            // longer list is newer; callbacks can run out of order. Nothing is cached for an account not in the
+            // cache, whose next load reads the committed catalog
+            catalog.asMap().computeIfPresent(accountId,
+                    (id, cached) -> cached.size() < segments.size() ? segments : cached);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            try {
+                if (status != STATUS_COMMITTED) {
+                    Files.deleteIfExists(file);
+                }
+            } catch (IOException e) {
+                log.warn("Cannot delete cold segment {} of a rolled back archival", file, e);
+            } finally {
+                if (segments != null) {
+                    finished.incrementAndGet(stripe(accountId));
+                }
+            }
+        }
+    }
+}
@@ -1,24 +1,105 @@
 package com.example.finance.io.service;
 
+import com.example.finance.io.model.RateTable;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.util.Map;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
+/**
+ * Lock-free rate engine. The history of rate tables is an immutable array swapped atomically on reload,
+ * so conversions never block on or observe a half-applied update.
+ */
 @Service
 public class CurrencyConverter {
-    private static final Map<String, BigDecimal> RATES = Map.of(
-            "USD", BigDecimal.valueOf(1.0),
-            "EUR", BigDecimal.valueOf(1.1),
-            "BYN", BigDecimal.valueOf(0.31),
-            "RUB", BigDecimal.valueOf(0.012)
-    );
+    private volatile RateTable[] history = {RateTable.BUILTIN};
+    // The table in force and the wall-clock window it covers, so the hot path needs no LocalDateTime.now()
+    private volatile Current current = Current.of(history, 0);
 
     public BigDecimal toUsd(BigDecimal amount, String currency) {
-        BigDecimal rate = RATES.get(currency);
-        if (rate == null)
-            throw new IllegalArgumentException("Unsupported currency: " + currency);
-        return amount.multiply(rate).setScale(2, RoundingMode.HALF_DOWN);
+        return currentRates().toUsd(amount, currency);
     }
+
+    public RateTable currentRates() {
+        Current c = current;
+        // A window computed from a replaced history is never trusted, even if it was published late
+        if (c.tables == history) {
+            // Once the newest table is in force it stays current until the next install: no clock read at all
+            if (c.untilMillis == Long.MAX_VALUE) {
+                return c.tables[c.index];
+            }
+            long now = System.currentTimeMillis();
+            if (now >= c.fromMillis && now < c.untilMillis) {
+                return c.tables[c.index];
+            }
+        }
+        RateTable[] tables = history;
+        Current next = Current.of(tables, indexAt(tables, LocalDateTime.now()));
+        current = next;
+        return tables[next.index];
+    }
+
+    /**
+     * The table in force at {@code at}: the latest one whose effectiveFrom is not after it.
+     */
+    public RateTable ratesAt(LocalDateTime at) {
+        RateTable[] tables = history;
+        return tables[indexAt(tables, at)];
+    }
+
+    private static int indexAt(RateTable[] tables, LocalDateTime at) {
+        int lo = 0;
+        int hi = tables.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (tables[mid].effectiveFrom().isAfter(at)) {
+                hi = mid - 1;
+            } else {
+                lo = mid;
+            }
+        }
+        return lo;
+    }
+
+    public RateTable ratesByVersion(long version) {
+        for (RateTable table : history) {
+            if (table.version() == version) {
+                return table;
+            }
+        }
+        throw new NoSuchElementException("No rate table with version " + version);
+    }
+
+    public void install(List<RateTable> tables) {
+        if (tables.isEmpty()) {
+            throw new IllegalArgumentException("At least one rate table is required");
+        }
+        if (tables.stream().map(RateTable::version).distinct().count() != tables.size()) {
+            throw new IllegalArgumentException("Rate table versions must be unique");
+        }
+        history = tables.stream()
+                .sorted(Comparator.comparing(RateTable::effectiveFrom).thenComparingLong(RateTable::version))
+                .toArray(RateTable[]::new);
+    }
+
+    /**
+     * {@code tables[index]} and the epoch-millisecond window in which it is in force; the bounds are
+     * the effectiveFrom of it and of its successor, read in the system zone like {@code LocalDateTime.now()}.
+     */
+    private record Current(RateTable[] tables, int index, long fromMillis, long untilMillis) {
+        static Current of(RateTable[] tables, int index) {
+            long from = index == 0 ? Long.MIN_VALUE : epochMillis(tables[index].effectiveFrom());
+            long until = index + 1 < tables.length ? epochMillis(tables[index + 1].effectiveFrom()) : Long.MAX_VALUE;
+            return new Current(tables, index, from, until);
+        }
+
+        private static long epochMillis(LocalDateTime at) {
+            return at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.RateProperties;
+import com.example.finance.io.model.CurrencyRate;
+import com.example.finance.io.model.RateTable;
+import com.example.finance.io.repository.CurrencyRateRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Feeds {@link CurrencyConverter} from the configured source and re-installs the rate history when it changes.
+ * A broken file or table keeps the previously installed rates in service.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CurrencyRateLoader {
+    private final CurrencyConverter converter;
+    private final RateProperties properties;
+    private final CurrencyRateRepository rateRepo;
+    private final ObjectMapper objectMapper;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private Object loadedStamp;
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${finance.rates.reload-interval:30s}")
+    public void reload() {
+        // Not synchronized: with virtual threads enabled the scheduler runs this on a virtual thread doing I/O
+        reloadLock.lock();
+        try {
+            switch (properties.source()) {
+                case "builtin" -> {
+                }
+                case "file" -> reloadFromFile();
+                case "db" -> reloadFromDb();
+                default -> throw new IllegalStateException("Unknown finance.rates.source: " + properties.source());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Rate reload from {} failed, keeping current rates", properties.source(), e);
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private void reloadFromFile() throws IOException {
+        if (properties.file() == null) {
+            throw new IllegalStateException("finance.rates.file is required for the file source");
+        }
+        FileTime modified = Files.getLastModifiedTime(properties.file());
+        if (modified.equals(loadedStamp)) {
+            return;
+        }
+        List<RateTable> tables = objectMapper.readValue(properties.file().toFile(), new TypeReference<>() {
+        });
+        install(tables, modified);
+    }
+
+    private void reloadFromDb() {
+        Optional<Long> latest = rateRepo.findLatestVersion();
+        if (latest.isEmpty() || latest.get().equals(loadedStamp)) {
+            return;
+        }
+        Map<Long, List<CurrencyRate>> byVersion = rateRepo.findAll().stream()
+                .collect(Collectors.groupingBy(CurrencyRate::getVersion));
+        List<RateTable> tables = new ArrayList<>();
+        byVersion.forEach((version, rows) -> {
+            Map<String, BigDecimal> rates = rows.stream()
+                    .collect(Collectors.toMap(CurrencyRate::getCurrency, CurrencyRate::getRate));
+            tables.add(new RateTable(version, rows.get(0).getEffectiveFrom(), rates));
+        });
+        install(tables, latest.get());
+    }
+
+    private void install(List<RateTable> tables, Object stamp) {
+        converter.install(tables);
+        loadedStamp = stamp;
+        log.info("Installed {} rate tables from {}, current version {}",
+                tables.size(), properties.source(), converter.currentRates().version());
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "finance.write.mode", havingValue = "direct", matchIfMissing = true)
+public class DirectTransactionWriter implements TransactionWriter {
+    private final AccountBalanceService service;
+    private final IdempotencyKeyStore keyStore;
+
+    @Override
+    @Timed("finance.service")
+    public Transaction write(String name, TransactionType type, BigDecimal amount, String currency, String idempotencyKey) {
+        Transaction tx = keyStore.execute(idempotencyKey,
+                () -> service.addTransaction(name, type, amount, currency, idempotencyKey));
+        // A replay from memory or of a concurrent request has not been compared with this request yet
+        return IdempotencyKeyStore.requireReplayOf(tx, name, type, amount, currency);
+    }
+}
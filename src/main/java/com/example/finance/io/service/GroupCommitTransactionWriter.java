@@ -0,0 +1,176 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.WriteProperties;
+import com.example.finance.io.exception.ServiceUnavailableException;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.BatchItemStatus;
+import com.example.finance.io.model.dto.BatchTransactionItem;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Routes every write to a sequencer lane chosen by account, so writes to one account are applied in arrival order.
+ * A lane drains whatever is pending (up to {@code maxBatchSize}, waiting at most {@code maxDelay} for more)
+ * and posts it through {@link TransactionBatchService} in one DB transaction; callers are released after that commit,
+ * or with a 503 once {@code commitTimeout} has passed, so a stalled lane cannot hold request threads forever.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "finance.write.mode", havingValue = "group-commit")
+public class GroupCommitTransactionWriter implements TransactionWriter, DisposableBean {
+    private final TransactionBatchService batchService;
+    private final IdempotencyKeyStore keyStore;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long commitTimeoutNanos;
+    private final Lane[] lanes;
+
+    public GroupCommitTransactionWriter(TransactionBatchService batchService, IdempotencyKeyStore keyStore,
+                                        WriteProperties properties) {
+        if (properties.lanes() < 1 || properties.maxBatchSize() < 1) {
+            throw new IllegalArgumentException("finance.write.lanes and max-batch-size must be positive");
+        }
+        this.batchService = batchService;
+        this.keyStore = keyStore;
+        this.maxBatchSize = Math.min(properties.maxBatchSize(), TransactionBatchService.MAX_BATCH_SIZE);
+        this.maxDelayNanos = properties.maxDelay().toNanos();
+        this.commitTimeoutNanos = properties.commitTimeout().toNanos();
+        this.lanes = new Lane[properties.lanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i, properties.queueCapacity());
+            lanes[i].thread.start();
+        }
+        log.info("Group commit enabled: {} lanes, batch {} items / {}", lanes.length, maxBatchSize, properties.maxDelay());
+    }
+
+    @Override
+    @Timed("finance.service")
+    public Transaction write(String name, TransactionType type, BigDecimal amount, String currency, String idempotencyKey) {
+        Transaction tx = keyStore.execute(idempotencyKey, () -> enqueue(name, type, amount, currency, idempotencyKey));
+        return IdempotencyKeyStore.requireReplayOf(tx, name, type, amount, currency);
+    }
+
+    private Transaction enqueue(String name, TransactionType type, BigDecimal amount, String currency, String idempotencyKey) {
+        if (name == null) {
+            throw new NoSuchElementException("No balance found");
+        }
+        var item = new BatchTransactionItem(name, type, amount, currency, idempotencyKey);
+        var pending = new Pending(item, new CompletableFuture<>());
+        BlockingQueue<Pending> queue = lanes[Math.floorMod(name.hashCode(), lanes.length)].queue;
+        long deadline = System.nanoTime() + commitTimeoutNanos;
+        try {
+            if (!queue.offer(pending, commitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new ServiceUnavailableException("Write queue is full, try again later");
+            }
+            return pending.result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Still queued means it will never be posted; once a lane has taken it, it may yet commit
+            if (queue.remove(pending)) {
+                throw new ServiceUnavailableException("Write was not committed in time, try again later");
+            }
+            throw new ServiceUnavailableException("Write did not complete in time and may still commit;"
+                    + " retry with the same Idempotency-Key");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for commit", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+    }
+
+    private record Pending(BatchTransactionItem item, CompletableFuture<Transaction> result) {
+    }
+
+    private final class Lane implements Runnable {
+        private final BlockingQueue<Pending> queue;
+        private final Thread thread;
+
+        Lane(int index, int capacity) {
+            this.queue = new LinkedBlockingQueue<>(capacity);
+            this.thread = new Thread(this, "group-commit-lane-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<Pending> batch = new ArrayList<>(maxBatchSize);
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    batch.add(queue.take());
+                    long deadline = System.nanoTime() + maxDelayNanos;
+                    while (batch.size() < maxBatchSize) {
+                        queue.drainTo(batch, maxBatchSize - batch.size());
+                        long remaining = deadline - System.nanoTime();
+                        if (batch.size() >= maxBatchSize || remaining <= 0) {
+                            break;
+                        }
+                        Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    flush(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                batch.addAll(queue);
+                batch.forEach(p -> p.result.completeExceptionally(new IllegalStateException("Writer is shutting down")));
+            }
+        }
+
+        private void flush(List<Pending> batch) {
+            try {
+                complete(batch, batchService.post(batch.stream().map(Pending::item).toList()));
+            } catch (RuntimeException e) {
+                // A failed shared commit (e.g. a key raced in by another node) must not fail its neighbours
+                log.warn("Group commit of {} items failed, retrying one by one: {}", batch.size(), e.getMessage());
+                for (Pending p : batch) {
+                    try {
+                        complete(List.of(p), batchService.post(List.of(p.item)));
+                    } catch (RuntimeException single) {
+                        p.result.completeExceptionally(single);
+                    }
+                }
+            }
+        }
+
+        private void complete(List<Pending> batch, List<TransactionBatchService.Outcome> outcomes) {
+            for (int i = 0; i < batch.size(); i++) {
+                var outcome = outcomes.get(i);
+                if (outcome.status() == BatchItemStatus.REJECTED) {
+                    batch.get(i).result.completeExceptionally(outcome.error());
+                } else {
+                    batch.get(i).result.complete(outcome.transaction());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.IdempotencyProperties;
+import com.example.finance.io.exception.ConflictException;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.repository.TransactionRepository;
+import com.example.finance.io.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Answers "was this Idempotency-Key used?" without a DB round trip for the common case of a new key:
+ * recently committed keys are served from memory, keys the Bloom filter has never seen skip the lookup,
+ * and concurrent requests with the same key share the result of the first one.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeyStore {
+    private static final int WARM_UP_PAGE_SIZE = 10_000;
+    private static final String REPLAYS = "finance.idempotency.replays";
+    private static final String KEY_REUSED = "Idempotency key was already used for a different request";
+
+    private final TransactionRepository txRepo;
+    private final Cache<String, Transaction> recent;
+    private final BloomFilter seen;
+    private final ConcurrentMap<String, CompletableFuture<Transaction>> inFlight = new ConcurrentHashMap<>();
+    // Until the filter holds every stored key its negative answers cannot be trusted
+    private volatile boolean warm;
+
+    // Requests answered with an already stored transaction, by where it was found
+    private final Counter replayedFromMemory;
+    private final Counter replayedFromDb;
+    private final Counter replayedConcurrent;
+    private final Counter replayedAfterConflict;
+    private final Counter lookupsSkipped;
+
+    public IdempotencyKeyStore(TransactionRepository txRepo, IdempotencyProperties properties, MeterRegistry registry) {
+        this.txRepo = txRepo;
+        this.replayedFromMemory = replays(registry, "memory");
+        this.replayedFromDb = replays(registry, "database");
+        this.replayedConcurrent = replays(registry, "concurrent");
+        this.replayedAfterConflict = replays(registry, "conflict");
+        this.lookupsSkipped = Counter.builder("finance.idempotency.lookups.skipped")
+                .description("Key lookups the Bloom filter answered without a query")
+                .register(registry);
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(properties.recentMaxSize())
+                .expireAfterWrite(properties.recentTtl())
+                .build();
+        this.seen = new BloomFilter(properties.expectedKeys(), properties.falsePositiveRate());
+    }
+
+    /**
+     * Runs {@code write} at most once per key at a time. A concurrent request with the same key waits for
+     * that write and gets its result; a unique-key race lost to another node replays the stored transaction.
+     */
+    public Transaction execute(String key, Supplier<Transaction> write) {
+        if (key == null || key.isBlank()) {
+            return write.get();
+        }
+        Transaction cached = recent.getIfPresent(key);
+        if (cached != null) {
+            replayedFromMemory.increment();
+            return cached;
+        }
+        CompletableFuture<Transaction> mine = new CompletableFuture<>();
+        CompletableFuture<Transaction> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            Transaction shared = await(running);
+            replayedConcurrent.increment();
+            return shared;
+        }
+        try {
+            Transaction tx = write.get();
+            mine.complete(tx);
+            return tx;
+        } catch (DataIntegrityViolationException e) {
+            Transaction winner = txRepo.findByIdempotencyKey(key).orElseThrow(() -> e);
+            remember(key, winner);
+            replayedAfterConflict.increment();
+            mine.complete(winner);
+            return winner;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public Optional<Transaction> find(String key) {
+        Transaction cached = recent.getIfPresent(key);
+        if (cached != null) {
+            replayedFromMemory.increment();
+            return Optional.of(cached);
+        }
+        if (warm && !seen.mightContain(key)) {
+            lookupsSkipped.increment();
+            return Optional.empty();
+        }
+        Optional<Transaction> stored = txRepo.findByIdempotencyKey(key);
+        stored.ifPresent(tx -> replayedFromDb.increment());
+        return stored;
+    }
+
+    public Map<String, Transaction> findAll(Collection<String> keys) {
+        Map<String, Transaction> found = new HashMap<>();
+        List<String> lookup = new ArrayList<>();
+        for (String key : keys) {
+            Transaction cached = recent.getIfPresent(key);
+            if (cached != null) {
+                found.put(key, cached);
+                replayedFromMemory.increment();
+            } else if (!warm || seen.mightContain(key)) {
+                lookup.add(key);
+            } else {
+                lookupsSkipped.increment();
+            }
+        }
+        if (!lookup.isEmpty()) {
+            List<Transaction> stored = txRepo.findByIdempotencyKeyIn(lookup);
+            stored.forEach(tx -> found.put(tx.getIdempotencyKey(), tx));
+            replayedFromDb.increment(stored.size());
+        }
+        return found;
+    }
+
+    /**
+     * Records a key written in the current DB transaction. The filter learns it immediately (a false positive
+     * only costs a lookup); the replay cache is filled after commit so a rollback cannot leave a phantom.
+     */
+    public void remember(Transaction tx) {
+        String key = tx.getIdempotencyKey();
+        if (key == null) {
+            return;
+        }
+        seen.put(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recent.put(key, tx);
+                }
+            });
+        } else {
+            recent.put(key, tx);
+        }
+    }
+
+    private void remember(String key, Transaction tx) {
+        seen.put(key);
+        recent.put(key, tx);
+    }
+
+    /**
+     * {@code stored} if it is what a request to post {@code type} of {@code amount} {@code currency} on
+     * {@code account} writes. A key is scoped to one request: reusing it for another account, type, amount or
+     * for a transfer is a conflict, not a replay.
+     */
+    public static Transaction requireReplayOf(Transaction stored, String account, TransactionType type,
+                                              BigDecimal amount, String currency) {
+        if (stored.getTransferId() != null || !sameRequest(stored, account, type, amount, currency)) {
+            throw new ConflictException(KEY_REUSED);
+        }
+        return stored;
+    }
+
+    /**
+     * {@code legs} if they are the transfer a request from {@code from} to {@code to} writes; see {@link #requireReplayOf}.
+     */
+    public static List<Transaction> requireTransferReplayOf(List<Transaction> legs, String from, String to,
+                                                            BigDecimal amount, String currency, String toCurrency) {
+        Transaction debit = leg(legs, TransactionType.WITHDRAW);
+        Transaction credit = leg(legs, TransactionType.DEPOSIT);
+        if (debit == null || credit == null || debit.getTransferId() == null
+                || !sameRequest(debit, from, TransactionType.WITHDRAW, amount, currency)
+                || credit.getAccount() == null || !credit.getAccount().getName().equals(to)
+                || !credit.getCurrency().equals(toCurrency == null ? currency : toCurrency)) {
+            throw new ConflictException(KEY_REUSED);
+        }
+        return legs;
+    }
+
+    private static boolean sameRequest(Transaction stored, String account, TransactionType type, BigDecimal amount,
+                                       String currency) {
+        return stored.getAccount() != null && stored.getAccount().getName().equals(account)
+                && stored.getType() == type
+                && amount != null && stored.getAmount().compareTo(amount) == 0
+                && stored.getCurrency().equals(currency);
+    }
+
+    private static Transaction leg(List<Transaction> legs, TransactionType type) {
+        return legs.stream().filter(tx -> tx.getType() == type).findFirst().orElse(null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWarmUp() {
+        Thread.ofPlatform().daemon().name("idempotency-warm-up").start(this::warmUp);
+    }
+
+    void warmUp() {
+        long count = 0;
+        String after = "";
+        List<String> page;
+        try {
+            do {
+                page = txRepo.findIdempotencyKeysAfter(after, Limit.of(WARM_UP_PAGE_SIZE));
+                page.forEach(seen::put);
+                count += page.size();
+                if (!page.isEmpty()) {
+                    after = page.get(page.size() - 1);
+                }
+            } while (page.size() == WARM_UP_PAGE_SIZE);
+            warm = true;
+            log.info("Idempotency key filter warmed with {} keys", count);
+        } catch (RuntimeException e) {
+            log.warn("Idempotency key filter warm-up failed, every keyed write will query the DB", e);
+        }
+    }
+
+    private static Counter replays(MeterRegistry registry, String source) {
+        return Counter.builder(REPLAYS)
+                .description("Idempotent requests answered with the stored transaction")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    private static Transaction await(CompletableFuture<Transaction> running) {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a concurrent request with the same key", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.JournalCheckpoint;
+import com.example.finance.io.model.JournalDeadLetter;
+import com.example.finance.io.model.JournalEntry;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.JournalCheckpointRepository;
+import com.example.finance.io.repository.JournalDeadLetterRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Applies journal entries to the account and transaction tables, together with the checkpoint, in one DB transaction.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "finance.write.mode", havingValue = "journal")
+public class JournalProjector {
+    private static final String CHECKPOINT = "ledger";
+
+    private final AccountRepository accountRepo;
+    private final JournalCheckpointRepository checkpointRepo;
+    private final JournalDeadLetterRepository deadLetterRepo;
+    private final LedgerWriter ledger;
+    private final AccountDirectory directory;
+
+    public long projectedOffset() {
+        return checkpointRepo.findById(CHECKPOINT).map(JournalCheckpoint::getProjectedOffset).orElse(0L);
+    }
+
+    @Transactional
+    public void apply(List<JournalEntry> entries, long end) {
+        post(entries);
+        checkpointRepo.save(new JournalCheckpoint(CHECKPOINT, end));
+    }
+
+    /**
+     * Stores the record ending at {@code end} as a dead letter and moves the checkpoint past it.
+     */
+    @Transactional
+    public void setAside(long end, byte[] payload, String error) {
+        String message = error == null ? "unknown error" : error;
+        deadLetterRepo.save(new JournalDeadLetter(end, payload,
+                message.length() > 1000 ? message.substring(0, 1000) : message, LocalDateTime.now()));
+        checkpointRepo.save(new JournalCheckpoint(CHECKPOINT, end));
+    }
+
+    private void post(List<JournalEntry> entries) {
+        Set<String> names = entries.stream().map(JournalEntry::account).collect(Collectors.toSet());
+        Map<String, Account> accounts = accountRepo.findAllByNameForUpdate(names).stream()
+                .collect(Collectors.toMap(Account::getName, Function.identity()));
+        for (String name : names) {
+            if (!accounts.containsKey(name)) {
+                // Only happens when replaying into a database that lost the account, e.g. an in-memory one
+                log.warn("Journal references unknown account {}, recreating it", name);
+                accounts.put(name, accountRepo.save(Account.builder().name(name).build()));
+                directory.evict(name);
+            }
+        }
+        ledger.postAll(entries.stream().map(e -> e.toTransaction(accounts.get(e.account()))).toList());
+    }
+}
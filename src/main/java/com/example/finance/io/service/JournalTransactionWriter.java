@@ -0,0 +1,417 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.JournalProperties;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.JournalEntry;
+import com.example.finance.io.model.Money;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.util.SegmentedJournal;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Acknowledges a write once its entry is fsynced to the {@link SegmentedJournal}; the tables are a projection
+ * that a background thread brings up to date in batches through {@link JournalProjector}.
+ * On start, everything journaled after the last checkpoint is projected before writes are accepted. A record
+ * that cannot be projected is kept in the {@code journal_dead_letter} table instead.
+ * Reads lag behind acknowledged writes by the projection delay. Transfers and the batch endpoints still commit
+ * directly; as {@link PendingFunds} this counts their debits and the journaled entries against one balance.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "finance.write.mode", havingValue = "journal")
+public class JournalTransactionWriter implements TransactionWriter, PendingFunds, SmartLifecycle {
+    private final SegmentedJournal journal;
+    private final JournalProjector projector;
+    private final LedgerWriter ledger;
+    private final AccountRepository accountRepo;
+    private final BalanceCache balanceCache;
+    private final IdempotencyKeyStore keyStore;
+    private final AccountDirectory directory;
+    private final JournalProperties properties;
+    private final Counter skipped;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition projected = lock.newCondition();
+    // USD delta per account that is journaled but not yet in the tables, plus debits claimed by direct
+    // transactions until they complete; guarded by lock
+    private final Map<String, Long> pending = new HashMap<>();
+    // True while a projection commits: its rows may be visible in the DB but still counted in pending
+    private boolean committing;
+    // Bumped under lock whenever something leaves pending, so a balance read without the lock can be checked
+    private volatile long settledCount;
+    private final ConcurrentMap<String, Transaction> pendingKeys = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread thread;
+    private long position;
+
+    public JournalTransactionWriter(JournalProjector projector, LedgerWriter ledger, AccountRepository accountRepo,
+                                    BalanceCache balanceCache, IdempotencyKeyStore keyStore, AccountDirectory directory,
+                                    JournalProperties properties, MeterRegistry registry) {
+        if (properties.projectionBatchSize() < 1) {
+            throw new IllegalArgumentException("finance.journal.projection-batch-size must be positive");
+        }
+        this.journal = new SegmentedJournal(properties.dir(), Math.toIntExact(properties.segmentSize().toBytes()));
+        this.projector = projector;
+        this.ledger = ledger;
+        this.accountRepo = accountRepo;
+        this.balanceCache = balanceCache;
+        this.keyStore = keyStore;
+        this.directory = directory;
+        this.properties = properties;
+        this.skipped = Counter.builder("finance.journal.skipped")
+                .description("Journal records stored as dead letters because they cannot be decoded or projected")
+                .register(registry);
+        ledger.usePendingFunds(this);
+    }
+
+    @Override
+    @Timed("finance.service")
+    public Transaction write(String name, TransactionType type, BigDecimal amount, String currency, String idempotencyKey) {
+        Transaction tx = keyStore.execute(idempotencyKey, () -> append(name, type, amount, currency, idempotencyKey));
+        return IdempotencyKeyStore.requireReplayOf(tx, name, type, amount, currency);
+    }
+
+    private Transaction append(String name, TransactionType type, BigDecimal amount, String currency, String idempotencyKey) {
+        if (!running) {
+            throw new IllegalStateException("Journal writer is not running");
+        }
+        String key = idempotencyKey == null || idempotencyKey.isBlank() ? null : idempotencyKey;
+        if (key != null) {
+            Transaction journaled = pendingKeys.get(key);
+            if (journaled != null) {
+                return IdempotencyKeyStore.requireReplayOf(journaled, name, type, amount, currency);
+            }
+            Optional<Transaction> existing = keyStore.find(key);
+            if (existing.isPresent()) {
+                return IdempotencyKeyStore.requireReplayOf(existing.get(), name, type, amount, currency);
+            }
+        }
+        Transaction tx = ledger.prepare(account(name), type, amount, currency, key);
+        long delta;
+        byte[] record;
+        try {
+            delta = LedgerWriter.signedUsdMinor(tx);
+            record = JournalEntry.of(tx).encode();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount is out of range");
+        }
+        long end;
+        lock.lock();
+        try {
+            if (type == TransactionType.WITHDRAW && !ledger.overdraftAllowed()) {
+                checkCovered(name, delta);
+            }
+            end = journal.append(record);
+            pending.merge(name, delta, Money::add);
+            if (key != null) {
+                pendingKeys.put(key, tx);
+            }
+        } finally {
+            lock.unlock();
+        }
+        journal.sync(end);
+        keyStore.remember(tx);
+        LockSupport.unpark(thread);
+        return tx;
+    }
+
+    // Caller holds lock
+    private void checkCovered(String name, long delta) {
+        long available = available(name, () -> Money.toMinor(accountRepo.findSnapshotByName(name)
+                .orElseThrow(() -> new NoSuchElementException("No balance found")).balance()), true);
+        if (Money.add(available, delta) < 0) {
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+    }
+
+    @Override
+    public void claim(String account, LongSupplier balance, long debit) {
+        Map<String, Long> own = ownClaims();
+        lock.lock();
+        try {
+            // Waiting for a projection here could deadlock: the caller may hold row locks the projection needs
+            long available = Money.subtract(available(account, balance, false), own == null ? 0 : own.getOrDefault(account, 0L));
+            if (Money.add(available, debit) < 0) {
+                throw new IllegalArgumentException("Insufficient funds");
+            }
+            if (own != null) {
+                pending.merge(account, debit, Money::add);
+                own.merge(account, debit, Money::add);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Balance plus pending delta of {@code name}. Caller holds lock, which is released while {@code balance} is
+     * read, so no query waits for a connection under it. The read counts only if nothing left pending meanwhile:
+     * whatever it saw in the table is then either out of pending already or still in it, which can only make
+     * the balance look lower. With {@code awaitProjection} it also waits out a projection commit, whose rows
+     * would otherwise be counted twice.
+     */
+    private long available(String name, LongSupplier balance, boolean awaitProjection) {
+        while (true) {
+            while (awaitProjection && committing) {
+                projected.awaitUninterruptibly();
+            }
+            long seen = settledCount;
+            long stored;
+            lock.unlock();
+            try {
+                stored = balance.getAsLong();
+            } finally {
+                lock.lock();
+            }
+            if (settledCount == seen && !(awaitProjection && committing)) {
+                return Money.add(stored, pending.getOrDefault(name, 0L));
+            }
+        }
+    }
+
+    // Debits this DB transaction claimed, released when it completes; null outside a transaction, where a
+    // claim is only checked
+    @SuppressWarnings("unchecked")
+    private Map<String, Long> ownClaims() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        Map<String, Long> own = (Map<String, Long>) TransactionSynchronizationManager.getResource(this);
+        if (own == null) {
+            Map<String, Long> claims = new HashMap<>();
+            TransactionSynchronizationManager.bindResource(this, claims);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(JournalTransactionWriter.this);
+                    release(claims);
+                }
+            });
+            own = claims;
+        }
+        return own;
+    }
+
+    private void release(Map<String, Long> claims) {
+        lock.lock();
+        try {
+            claims.forEach((account, debit) -> {
+                if (pending.merge(account, Money.negate(debit), Money::add) == 0) {
+                    pending.remove(account);
+                }
+            });
+            settledCount++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Snapshot of the last projected state; the journaled transaction itself is not in it yet
+    private Account account(String name) {
+        if (name == null) {
+            throw new NoSuchElementException("No balance found");
+        }
+        BalanceSnapshot snapshot = balanceCache.get(name)
+                .orElseThrow(() -> new NoSuchElementException("No balance found"));
+        Account account = directory.reference(name);
+        account.setBalance(snapshot.balance());
+        account.setRevision(snapshot.revision());
+        return account;
+    }
+
+    @Override
+    public void start() {
+        position = projector.projectedOffset();
+        long replayed = 0;
+        List<SegmentedJournal.Record> records;
+        while (!(records = journal.read(position, properties.projectionBatchSize())).isEmpty()) {
+            projectRecords(records, new ArrayList<>());
+            replayed += records.size();
+        }
+        log.info("Journal {} replayed {} entries, projected up to offset {}", properties.dir(), replayed, position);
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("journal-projector").start(this::project);
+    }
+
+    @Override
+    public void stop() {
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Before the web server (DEFAULT_PHASE - 2048) starts taking requests, and stopped after it
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void project() {
+        long idleNanos = properties.projectionInterval().toNanos();
+        // After stop() keep going until everything acknowledged is in the tables
+        while (running || position < journal.durableOffset()) {
+            List<SegmentedJournal.Record> records = journal.read(position, properties.projectionBatchSize());
+            if (records.isEmpty()) {
+                LockSupport.parkNanos(idleNanos);
+                continue;
+            }
+            List<JournalEntry> settled = new ArrayList<>();
+            boolean failed = false;
+            beginCommit();
+            try {
+                projectRecords(records, settled);
+            } catch (RuntimeException e) {
+                failed = true;
+                log.error("Projection of journal entries at offset {} failed, retrying", position, e);
+            } finally {
+                settle(settled);
+            }
+            settled.stream().map(JournalEntry::idempotencyKey).filter(Objects::nonNull).forEach(pendingKeys::remove);
+            if (failed) {
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+                if (!running) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Brings the tables up to the end of {@code records} and {@link #position} along with them. Adds every entry
+     * that is now in the tables, or set aside, to {@code settled}. If the batch fails for a reason other than
+     * an unavailable database, its records are applied one by one, and one that cannot be decoded or projected
+     * on its own is stored as a dead letter together with the checkpoint past it: one bad record must not stop
+     * projection for good, and an acknowledged write must not be lost either. An unavailable database is thrown
+     * for the caller to retry.
+     */
+    private void projectRecords(List<SegmentedJournal.Record> records, List<JournalEntry> settled) {
+        JournalEntry[] entries = new JournalEntry[records.size()];
+        RuntimeException[] undecodable = new RuntimeException[records.size()];
+        boolean decoded = true;
+        for (int i = 0; i < entries.length; i++) {
+            try {
+                entries[i] = JournalEntry.decode(records.get(i).payload());
+            } catch (RuntimeException e) {
+                undecodable[i] = e;
+                decoded = false;
+            }
+        }
+        long end = records.get(records.size() - 1).end();
+        if (decoded) {
+            try {
+                projector.apply(List.of(entries), end);
+                settled.addAll(List.of(entries));
+                position = end;
+                return;
+            } catch (RuntimeException e) {
+                if (unavailable(e)) {
+                    throw e;
+                }
+                log.warn("Projection of {} journal entries up to offset {} failed, applying them one by one: {}",
+                        entries.length, end, e.getMessage());
+            }
+        }
+        for (int i = 0; i < entries.length; i++) {
+            SegmentedJournal.Record record = records.get(i);
+            RuntimeException failure = undecodable[i];
+            if (failure == null) {
+                try {
+                    projector.apply(List.of(entries[i]), record.end());
+                } catch (RuntimeException e) {
+                    if (unavailable(e)) {
+                        throw e;
+                    }
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                projector.setAside(record.end(), record.payload(), failure.toString());
+                skipped.increment();
+                log.error("Set aside journal record ending at offset {} as a dead letter: {}", record.end(),
+                        entries[i] != null ? entries[i] : Base64.getEncoder().encodeToString(record.payload()), failure);
+            }
+            if (entries[i] != null) {
+                settled.add(entries[i]);
+            }
+            position = record.end();
+        }
+    }
+
+    // The database failed rather than the entries: retried until it is back instead of setting entries aside
+    private static boolean unavailable(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException || e instanceof TransactionException;
+    }
+
+    // Entries in the tables are no longer pending; ends the commit that checkCovered waits for
+    private void settle(List<JournalEntry> entries) {
+        lock.lock();
+        try {
+            for (JournalEntry entry : entries) {
+                long applied = LedgerWriter.signedUsdMinor(entry.toTransaction(null));
+                if (pending.merge(entry.account(), Money.negate(applied), Money::add) == 0) {
+                    pending.remove(entry.account());
+                }
+            }
+            committing = false;
+            settledCount++;
+            projected.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void beginCommit() {
+        lock.lock();
+        try {
+            committing = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
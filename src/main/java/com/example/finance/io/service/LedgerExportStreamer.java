@@ -0,0 +1,77 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.BulkProperties;
+import com.example.finance.io.model.dto.ExportFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs {@link LedgerExporter#export} on a virtual thread of its own and sends the output through an emitter
+ * with {@code finance.bulk.export-timeout}: the request timeout of {@code spring.mvc.async}, which a
+ * {@code StreamingResponseBody} gets, would cut a long export short.
+ */
+@Slf4j
+@Component
+public class LedgerExportStreamer implements DisposableBean {
+    private final LedgerExporter exporter;
+    private final BulkProperties properties;
+    private final ExecutorService exports = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ledger-export-", 0).factory());
+
+    public LedgerExportStreamer(LedgerExporter exporter, BulkProperties properties) {
+        this.exporter = exporter;
+        this.properties = properties;
+    }
+
+    public ResponseBodyEmitter stream(ExportFormat format, Long accountId, LocalDateTime from, LocalDateTime to) {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(properties.exportTimeout().toMillis());
+        exports.execute(() -> {
+            try {
+                exporter.export(format, accountId, from, to, new EmitterOutputStream(emitter));
+                emitter.complete();
+            } catch (Exception e) {
+                // The response has started, so the client only sees it end early: without the format's end marker
+                log.warn("Export as {} failed: {}", format, e.toString());
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    @Override
+    public void destroy() {
+        exports.shutdownNow();
+    }
+
+    /**
+     * Sends each write as one chunk; the record writers buffer, so these are large.
+     */
+    private static final class EmitterOutputStream extends OutputStream {
+        private final ResponseBodyEmitter emitter;
+
+        EmitterOutputStream(ResponseBodyEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            emitter.send(new byte[]{(byte) b}, MediaType.APPLICATION_OCTET_STREAM);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                emitter.send(Arrays.copyOfRange(b, off, off + len), MediaType.APPLICATION_OCTET_STREAM);
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.ArchivedSegment;
+import com.example.finance.io.model.dto.ExportFormat;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import com.example.finance.io.util.TransactionRecords;
+import io.micrometer.core.annotation.Timed;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Streams transactions of both tiers to CSV or the binary format with constant memory: the hot table through
+ * a forward-only cursor, then the cold segments one block at a time. Rows are in no particular order.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Timed("finance.service")
+public class LedgerExporter {
+    private final TransactionRepository txRepo;
+    private final AccountRepository accountRepo;
+    private final ColdTransactionStore coldStore;
+    private final AccountDirectory directory;
+
+    /**
+     * Checked before the response starts, so an unknown account is still an error status.
+     */
+    public Long accountId(String account) {
+        if (account == null || account.isBlank()) {
+            return null;
+        }
+        return directory.idOf(account).orElseThrow(() -> new NoSuchElementException("No balance found"));
+    }
+
+    // The cursor needs its connection and transaction until the last row is written
+    @Transactional
+    public long export(ExportFormat format, Long accountId, LocalDateTime from, LocalDateTime to, OutputStream out)
+            throws IOException {
+        long rows = 0;
+        try (Stream<TransactionView> hot = txRepo.streamForExport(accountId, from, to);
+             TransactionRecords.RecordWriter writer = TransactionRecords.writer(format, out)) {
+            // Listed once the cursor is open: rows archived after that are still in its result
+            List<ArchivedSegment> segments = coldStore.listSegments(accountId);
+            for (Iterator<TransactionView> it = hot.iterator(); it.hasNext(); rows++) {
+                writer.write(it.next());
+            }
+            Map<Long, String> names = new HashMap<>();
+            long[] cold = {0};
+            for (ArchivedSegment segment : segments) {
+                if ((from != null && segment.getLastTimestamp().isBefore(from))
+                        || (to != null && !segment.getFirstTimestamp().isBefore(to))) {
+                    continue;
+                }
+                String name = names.computeIfAbsent(segment.getAccountId(),
+                        id -> accountRepo.findById(id).map(Account::getName).orElse(null));
+                if (name == null) {
+                    continue;
+                }
+                coldStore.forEach(segment, name, row -> {
+                    if ((from == null || !row.timestamp().isBefore(from)) && (to == null || row.timestamp().isBefore(to))) {
+                        try {
+                            writer.write(row);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        cold[0]++;
+                    }
+                });
+            }
+            rows += cold[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        log.info("Exported {} transactions as {}", rows, format);
+        return rows;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes one chunk of imported transactions and the balance changes they cause in one DB transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class LedgerImportWriter {
+    private final AccountRepository accountRepo;
+    private final TransactionRepository txRepo;
+    private final LedgerWriter ledger;
+    private final IdempotencyKeyStore keyStore;
+    private final AccountDirectory directory;
+
+    /**
+     * Creates missing accounts and posts the rows with their original ids, amounts, rates and timestamps.
+     * Rows whose id is already stored are skipped, so an interrupted import can be run again; a row whose
+     * idempotency key belongs to another transaction is rejected. There is no overdraft check: the rows are history.
+     */
+    @Transactional
+    public Outcome write(List<TransactionView> rows) {
+        Set<String> names = rows.stream().map(TransactionView::account).collect(Collectors.toSet());
+        Map<String, Account> accounts = accountRepo.findAllByNameForUpdate(names).stream()
+                .collect(Collectors.toMap(Account::getName, Function.identity()));
+        for (String name : names) {
+            if (!accounts.containsKey(name)) {
+                accounts.put(name, accountRepo.save(Account.builder().name(name).build()));
+                directory.evict(name);
+            }
+        }
+        Set<UUID> ids = new HashSet<>(txRepo.findExistingIds(rows.stream().map(TransactionView::id).toList()));
+        Set<String> keys = new HashSet<>(txRepo.findExistingKeys(rows.stream()
+                .map(TransactionView::idempotencyKey)
+                .filter(Objects::nonNull)
+                .toList()));
+
+        List<Transaction> txs = new ArrayList<>(rows.size());
+        List<String> rejected = new ArrayList<>();
+        int skipped = 0;
+        for (TransactionView row : rows) {
+            if (!ids.add(row.id())) {
+                skipped++;
+            } else if (row.idempotencyKey() != null && !keys.add(row.idempotencyKey())) {
+                rejected.add("Transaction " + row.id() + ": idempotency key is already used");
+            } else {
+                txs.add(Transaction.builder()
+                        .id(row.id())
+                        .account(accounts.get(row.account()))
+                        .type(row.type())
+                        .amount(row.amount())
+                        .amountUSD(row.amountUSD())
+                        .currency(row.currency())
+                        .rateVersion(row.rateVersion())
+                        .timestamp(row.timestamp())
+                        .idempotencyKey(row.idempotencyKey())
+                        .transferId(row.transferId())
+                        .build());
+            }
+        }
+        ledger.postAll(txs);
+        txs.forEach(keyStore::remember);
+        return new Outcome(txs.size(), skipped, rejected);
+    }
+
+    public record Outcome(int imported, int skipped, List<String> rejected) {
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.BulkProperties;
+import com.example.finance.io.model.Money;
+import com.example.finance.io.model.dto.ExportFormat;
+import com.example.finance.io.model.dto.ImportResult;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.util.TransactionRecords;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a CSV or binary export on the calling thread, validates every row and hands chunks to parallel
+ * {@link LedgerImportWriter} workers. Rows are routed by account, so one worker owns each account: chunks never
+ * wait on each other's row locks and an account's rows are applied in file order. Queues are bounded, so memory
+ * stays constant and a slow database slows down reading the request body.
+ */
+@Slf4j
+@Service
+@Timed("finance.service")
+public class LedgerImporter {
+    private final LedgerImportWriter writer;
+    private final BulkProperties properties;
+
+    public LedgerImporter(LedgerImportWriter writer, BulkProperties properties) {
+        if (properties.importWorkers() < 1 || properties.importChunkSize() < 1) {
+            throw new IllegalArgumentException("finance.bulk.import-workers and import-chunk-size must be positive");
+        }
+        this.writer = writer;
+        this.properties = properties;
+    }
+
+    public ImportResult importFrom(ExportFormat format, InputStream in) {
+        long start = System.nanoTime();
+        TransactionRecords.RecordReader reader;
+        try {
+            reader = TransactionRecords.reader(format, in);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        int workers = properties.importWorkers();
+        int chunkSize = properties.importChunkSize();
+        Tally tally = new Tally(properties.maxReportedErrors());
+        List<BlockingQueue<List<TransactionView>>> queues = new ArrayList<>(workers);
+        ExecutorService pool = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("ledger-import-", 0).factory());
+        try {
+            for (int i = 0; i < workers; i++) {
+                BlockingQueue<List<TransactionView>> queue = new ArrayBlockingQueue<>(2);
+                queues.add(queue);
+                pool.execute(() -> drain(queue, tally));
+            }
+            List<List<TransactionView>> pending = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                pending.add(new ArrayList<>(chunkSize));
+            }
+            try {
+                TransactionView row;
+                while ((row = next(reader, tally)) != null) {
+                    int worker = Math.floorMod(row.account().hashCode(), workers);
+                    List<TransactionView> chunk = pending.get(worker);
+                    chunk.add(row);
+                    if (chunk.size() == chunkSize) {
+                        queues.get(worker).put(chunk);
+                        pending.set(worker, new ArrayList<>(chunkSize));
+                    }
+                }
+            } catch (IOException e) {
+                // Rows before the damage are still imported; the result says where reading stopped
+                tally.error("Record " + (reader.recordNumber() + 1) + ": " + e.getMessage() + ", rest of the input skipped");
+            }
+            tally.read.set(reader.recordNumber());
+            for (int i = 0; i < workers; i++) {
+                if (!pending.get(i).isEmpty()) {
+                    queues.get(i).put(pending.get(i));
+                }
+            }
+            for (BlockingQueue<List<TransactionView>> queue : queues) {
+                queue.put(List.of());
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.info("Import still writing: {} transactions so far", tally.imported);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing", e);
+        } finally {
+            pool.shutdownNow();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Imported {} of {} transactions in {} ms, {} skipped, {} rejected",
+                tally.imported, tally.read, elapsedMillis, tally.skipped, tally.rejected);
+        return ImportResult.builder()
+                .read(tally.read.get())
+                .imported(tally.imported.get())
+                .skipped(tally.skipped.get())
+                .rejected(tally.rejected.get())
+                .errors(tally.errors())
+                .elapsedMillis(elapsedMillis)
+                .build();
+    }
+
+    /**
+     * The next valid row; invalid ones are counted and reported by record number.
+     */
+    private static TransactionView next(TransactionRecords.RecordReader reader, Tally tally) throws IOException {
+        while (true) {
+            try {
+                TransactionView row = reader.next();
+                if (row != null) {
+                    validate(row);
+                }
+                return row;
+            } catch (IllegalArgumentException e) {
+                tally.rejected.incrementAndGet();
+                tally.error("Record " + reader.recordNumber() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    static void validate(TransactionView row) {
+        if (row.account() == null || row.account().isBlank()) {
+            throw new IllegalArgumentException("Account is required");
+        }
+        if (row.currency() == null || row.currency().isBlank()) {
+            throw new IllegalArgumentException("Currency is required");
+        }
+        if (row.amount().signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (row.amountUSD().signum() < 0) {
+            throw new IllegalArgumentException("USD amount must not be negative");
+        }
+        for (BigDecimal amount : new BigDecimal[]{row.amount(), row.amountUSD()}) {
+            if (!Money.fits(amount)) {
+                throw new IllegalArgumentException(LedgerWriter.AMOUNT_OUT_OF_RANGE);
+            }
+        }
+    }
+
+    private void drain(BlockingQueue<List<TransactionView>> queue, Tally tally) {
+        try {
+            for (List<TransactionView> chunk = queue.take(); !chunk.isEmpty(); chunk = queue.take()) {
+                try {
+                    add(writer.write(chunk), tally);
+                } catch (DataIntegrityViolationException e) {
+                    // A key or id that another worker's chunk stored in the meantime; the unique constraint
+                    // fails the whole chunk, so only the row that clashes is rejected when retried one by one
+                    log.warn("Import chunk of {} transactions failed, retrying one by one: {}", chunk.size(), e.getMessage());
+                    for (TransactionView row : chunk) {
+                        try {
+                            add(writer.write(List.of(row)), tally);
+                        } catch (RuntimeException single) {
+                            tally.rejected.incrementAndGet();
+                            tally.error("Transaction " + row.id() + " failed: " + single.getMessage());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Import chunk of {} transactions failed", chunk.size(), e);
+                    tally.rejected.addAndGet(chunk.size());
+                    tally.error("Chunk of " + chunk.size() + " transactions starting with " + chunk.get(0).id()
+                            + " failed: " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void add(LedgerImportWriter.Outcome outcome, Tally tally) {
+        tally.imported.addAndGet(outcome.imported());
+        tally.skipped.addAndGet(outcome.skipped());
+        tally.rejected.addAndGet(outcome.rejected().size());
+        outcome.rejected().forEach(tally::error);
+    }
+
+    private static final class Tally {
+        final AtomicLong read = new AtomicLong();
+        final AtomicLong imported = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        private final int maxErrors;
+        private final List<String> errors = new ArrayList<>();
+
+        Tally(int maxErrors) {
+            this.maxErrors = maxErrors;
+        }
+
+        synchronized void error(String message) {
+            if (errors.size() < maxErrors) {
+                errors.add(message);
+            }
+        }
+
+        synchronized List<String> errors() {
+            return List.copyOf(errors);
+        }
+    }
+}
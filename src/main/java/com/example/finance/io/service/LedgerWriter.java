@@ -0,0 +1,241 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.BalanceProperties;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.AccountCurrencyBalance;
+import com.example.finance.io.model.DailyRollup;
+import com.example.finance.io.model.Money;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.RateTable;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.repository.AccountCurrencyBalanceRepository;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.DailyRollupRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * Single place where transactions are built and posted together with the balance changes they cause.
+ * Callers own the surrounding DB transaction.
+ */
+@Component
+@RequiredArgsConstructor
+public class LedgerWriter {
+    public static final String AMOUNT_OUT_OF_RANGE = "Amounts must not exceed " + Money.MAX_AMOUNT.toPlainString()
+            + " and have at most " + Money.SCALE + " decimals";
+
+    private final AccountRepository accountRepo;
+    private final TransactionRepository txRepo;
+    private final AccountCurrencyBalanceRepository currencyBalanceRepo;
+    private final DailyRollupRepository rollupRepo;
+    private final CurrencyConverter converter;
+    private final BalanceProperties balanceProperties;
+    private final ApplicationEventPublisher events;
+    // Set by the journal writer, whose acknowledged entries are not in the account table yet
+    private volatile PendingFunds pendingFunds = PendingFunds.NONE;
+
+    public Transaction prepare(Account account, TransactionType type, BigDecimal amount, String currency, String idempotencyKey) {
+        if (type == null) {
+            throw new IllegalArgumentException("Transaction type is required");
+        }
+        if (amount == null || amount.signum() <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        // Bounded like imports, so the amount is stored exactly and every encoding of it stays small
+        if (!Money.fits(amount)) {
+            throw new IllegalArgumentException(AMOUNT_OUT_OF_RANGE);
+        }
+        // The timestamp columns keep microseconds: the returned transaction, its rollup day and any cursor
+        // built from it must match the stored row
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        RateTable rates = converter.ratesAt(now);
+        // Fixed point: no BigDecimal arithmetic per posting unless the rate or product does not fit a long
+        BigDecimal amountUsd;
+        try {
+            amountUsd = Money.toBigDecimal(rates.toUsdMinor(Money.toMinor(amount), currency));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(AMOUNT_OUT_OF_RANGE);
+        }
+        return Transaction.builder()
+                .id(UUID.randomUUID())
+                .account(account)
+                .type(type)
+                .amount(amount)
+                .currency(currency)
+                .amountUSD(amountUsd)
+                .rateVersion(rates.version())
+                .timestamp(now)
+                .idempotencyKey(idempotencyKey)
+                .build();
+    }
+
+    /**
+     * Both legs of a transfer at one rate table: a WITHDRAW from {@code from} and a DEPOSIT to {@code to}.
+     * The credit carries the debit's USD value, so the two USD balances move by exactly opposite amounts;
+     * its native amount is that value in {@code toCurrency}.
+     */
+    public List<Transaction> prepareTransfer(Account from, Account to, BigDecimal amount, String currency,
+                                             String toCurrency, String idempotencyKey) {
+        if (from.getId().equals(to.getId())) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        Transaction debit = prepare(from, TransactionType.WITHDRAW, amount, currency, idempotencyKey);
+        String creditCurrency = toCurrency == null ? currency : toCurrency;
+        BigDecimal credited = creditCurrency.equals(currency)
+                ? amount
+                : converter.ratesByVersion(debit.getRateVersion()).fromUsd(debit.getAmountUSD(), creditCurrency);
+        if (credited.signum() <= 0) {
+            throw new IllegalArgumentException("Amount is too small to convert");
+        }
+        UUID transferId = UUID.randomUUID();
+        debit.setTransferId(transferId);
+        Transaction credit = debit.toBuilder()
+                .id(UUID.randomUUID())
+                .account(to)
+                .type(TransactionType.DEPOSIT)
+                .amount(credited)
+                .currency(creditCurrency)
+                .idempotencyKey(null)
+                .build();
+        return List.of(debit, credit);
+    }
+
+    /**
+     * Posts the legs of one transfer in ascending account id order. Every writer takes account row locks in
+     * that order (batches lock by id too), so opposing transfers queue behind each other instead of deadlocking.
+     * An uncovered debit throws and the caller's DB transaction rolls back the other leg.
+     */
+    public List<Transaction> postTransfer(List<Transaction> legs) {
+        List<Transaction> ordered = legs.stream()
+                .sorted(Comparator.comparing(tx -> tx.getAccount().getId()))
+                .toList();
+        ordered.forEach(this::post);
+        return legs;
+    }
+
+    public Transaction post(Transaction tx) {
+        Long accountId = tx.getAccount().getId();
+        BigDecimal delta = signedUsd(tx);
+        if (tx.getType() == TransactionType.DEPOSIT || balanceProperties.overdraftAllowed()) {
+            accountRepo.applyDelta(accountId, delta);
+        } else {
+            claimFunds(tx.getAccount().getName(), () -> accountRepo.findSnapshotById(accountId)
+                    .map(snapshot -> Money.toMinor(snapshot.balance()))
+                    .orElseThrow(() -> new NoSuchElementException("No balance found")), Money.toMinor(delta));
+            if (accountRepo.applyDeltaIfCovered(accountId, delta) == 0) {
+                throw new IllegalArgumentException("Insufficient funds");
+            }
+        }
+        applyCurrencyDelta(accountId, tx.getCurrency(), signedAmount(tx));
+        long usd = Money.toMinor(tx.getAmountUSD());
+        boolean deposit = tx.getType() == TransactionType.DEPOSIT;
+        long[] totals = {deposit ? usd : 0, deposit ? 0 : usd, 1};
+        applyRollup(accountId, tx.getTimestamp().toLocalDate(), totals);
+        publishChange(tx.getAccount(), totals, tx);
+        return txRepo.save(tx);
+    }
+
+    /**
+     * Posts transactions whose overdraft check the caller has already made under account row locks.
+     * Balance updates go out once per account in ascending id order.
+     */
+    public List<Transaction> postAll(List<Transaction> txs) {
+        Map<Long, Long> net = new TreeMap<>();
+        Map<Long, Map<String, BigDecimal>> netByCurrency = new HashMap<>();
+        // Per account and day: USD deposits, USD withdrawals (minor units) and count
+        Map<Long, Map<LocalDate, long[]>> days = new HashMap<>();
+        Map<Long, Transaction> latest = new HashMap<>();
+        for (Transaction tx : txs) {
+            Long accountId = tx.getAccount().getId();
+            net.merge(accountId, signedUsdMinor(tx), Money::add);
+            netByCurrency.computeIfAbsent(accountId, id -> new TreeMap<>()).merge(tx.getCurrency(), signedAmount(tx), BigDecimal::add);
+            long[] day = days.computeIfAbsent(accountId, id -> new TreeMap<>())
+                    .computeIfAbsent(tx.getTimestamp().toLocalDate(), d -> new long[3]);
+            int column = tx.getType() == TransactionType.DEPOSIT ? 0 : 1;
+            day[column] = Money.add(day[column], Money.toMinor(tx.getAmountUSD()));
+            day[2]++;
+            latest.merge(accountId, tx, (a, b) -> b.getTimestamp().isBefore(a.getTimestamp()) ? a : b);
+        }
+        net.forEach((accountId, delta) -> {
+            accountRepo.applyDelta(accountId, Money.toBigDecimal(delta));
+            netByCurrency.get(accountId).forEach((currency, amount) -> applyCurrencyDelta(accountId, currency, amount));
+            long[] posted = new long[3];
+            days.get(accountId).forEach((day, totals) -> {
+                applyRollup(accountId, day, totals);
+                for (int i = 0; i < posted.length; i++) {
+                    posted[i] = Money.add(posted[i], totals[i]);
+                }
+            });
+            Transaction newest = latest.get(accountId);
+            publishChange(newest.getAccount(), posted, newest);
+        });
+        return txRepo.saveAll(txs);
+    }
+
+    // The account row is already locked by this transaction, so update-else-insert cannot race
+    private void applyCurrencyDelta(Long accountId, String currency, BigDecimal delta) {
+        if (currencyBalanceRepo.applyDelta(accountId, currency, delta) == 0) {
+            currencyBalanceRepo.save(new AccountCurrencyBalance(null, accountId, currency, delta));
+        }
+    }
+
+    // Same locking argument as applyCurrencyDelta; totals are {deposits, withdrawals} in USD minor units and a count
+    private void applyRollup(Long accountId, LocalDate day, long[] totals) {
+        BigDecimal deposits = Money.toBigDecimal(totals[0]);
+        BigDecimal withdrawals = Money.toBigDecimal(totals[1]);
+        if (rollupRepo.applyDelta(accountId, day, deposits, withdrawals, totals[2]) == 0) {
+            rollupRepo.save(new DailyRollup(null, accountId, day, deposits, withdrawals, totals[2]));
+        }
+    }
+
+    // Read back under the row lock just taken, so the snapshot is exactly this transaction's result
+    private void publishChange(Account account, long[] totals, Transaction latest) {
+        PeriodTotals posted = new PeriodTotals(Money.toBigDecimal(totals[0]), Money.toBigDecimal(totals[1]), totals[2]);
+        accountRepo.findSnapshotById(account.getId()).ifPresent(snapshot ->
+                events.publishEvent(new BalanceChangedEvent(account.getId(), account.getName(), snapshot, posted, latest)));
+    }
+
+    /**
+     * See {@link PendingFunds#claim}; for callers that check a debit themselves, like batches.
+     */
+    public void claimFunds(String account, LongSupplier balance, long debit) {
+        pendingFunds.claim(account, balance, debit);
+    }
+
+    void usePendingFunds(PendingFunds pendingFunds) {
+        this.pendingFunds = pendingFunds;
+    }
+
+    public boolean overdraftAllowed() {
+        return balanceProperties.overdraftAllowed();
+    }
+
+    public static BigDecimal signedUsd(Transaction tx) {
+        return tx.getType() == TransactionType.DEPOSIT ? tx.getAmountUSD() : tx.getAmountUSD().negate();
+    }
+
+    public static long signedUsdMinor(Transaction tx) {
+        long usd = Money.toMinor(tx.getAmountUSD());
+        return tx.getType() == TransactionType.DEPOSIT ? usd : Money.negate(usd);
+    }
+
+    public static BigDecimal signedAmount(Transaction tx) {
+        return tx.getType() == TransactionType.DEPOSIT ? tx.getAmount() : tx.getAmount().negate();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.finance.io.service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * USD deltas, in minor units, that other writers have acknowledged but not yet put in the account table. With
+ * overdraft off, a debit that commits directly claims its funds here first, so it cannot spend what the journal
+ * has already promised, nor the journal what it is about to commit. The other write modes check every debit
+ * under account row locks and use {@link #NONE}.
+ */
+public interface PendingFunds {
+    PendingFunds NONE = (account, balance, debit) -> {
+    };
+
+    /**
+     * Throws "Insufficient funds" unless {@code balance} plus everything pending for {@code account}, except
+     * what this DB transaction claimed before, covers {@code debit} (negative); otherwise counts the debit as
+     * pending until the transaction completes. {@code balance} is the caller's view of the account, including
+     * its own earlier debits, and is read without any lock a journal append waits for.
+     */
+    void claim(String account, LongSupplier balance, long debit);
+}
@@ -0,0 +1,29 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.ReconciliationProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodic reconciliation run, repairing what it finds when {@code finance.reconciliation.repair} is set.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "finance.reconciliation.enabled", havingValue = "true")
+public class ReconciliationJob {
+    private final ReconciliationService reconciliation;
+    private final ReconciliationProperties properties;
+
+    @Scheduled(initialDelayString = "${finance.reconciliation.interval:24h}", fixedDelayString = "${finance.reconciliation.interval:24h}")
+    public void run() {
+        try {
+            reconciliation.run(properties.repair());
+        } catch (RuntimeException e) {
+            log.warn("Scheduled reconciliation failed, retrying on the next run", e);
+        }
+    }
+}
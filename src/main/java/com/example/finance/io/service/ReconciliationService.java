@@ -0,0 +1,344 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.ReconciliationProperties;
+import com.example.finance.io.exception.ConflictException;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.dto.AccountTotal;
+import com.example.finance.io.model.dto.Discrepancy;
+import com.example.finance.io.model.dto.ReconciliationReport;
+import com.example.finance.io.model.dto.ReconciliationRun;
+import com.example.finance.io.model.dto.StoredBalance;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.ArchivedSegmentRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Proves that materialized and cached balances match the ledger. Accounts are cut into id ranges that a
+ * fork-join pool checks in parallel; each range costs one grouped query per table, so the transaction rows are
+ * summed where they are stored and only one total per account comes back. A suspect balance is checked again
+ * under its row lock before it is reported, because the range reads do not stop concurrent postings.
+ * <p>
+ * A cached balance counts as wrong only when it has the stored revision but not the stored amount; an older
+ * revision is an update still on its way to the cache.
+ * <p>
+ * Runs started with {@link #start} go on in the background; the last {@value #RECENT_RUNS} of them can be looked
+ * up by id.
+ */
+@Slf4j
+@Service
+@Timed("finance.service")
+public class ReconciliationService implements DisposableBean {
+    private static final int ACCOUNT_PAGE_SIZE = 1000;
+    private static final int RECENT_RUNS = 20;
+
+    private final AccountRepository accountRepo;
+    private final TransactionRepository txRepo;
+    private final ArchivedSegmentRepository catalogRepo;
+    private final BalanceCache balanceCache;
+    private final AccountReconciler reconciler;
+    private final ReconciliationProperties properties;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService runner = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("reconciliation-", 0).factory());
+    private final Map<String, ReconciliationRun> runs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ReconciliationRun> eldest) {
+            return size() > RECENT_RUNS;
+        }
+    });
+    // Start of the next free slot of the pace, in System.nanoTime
+    private final AtomicLong pace = new AtomicLong(System.nanoTime());
+    private final AtomicLong runTotal = new AtomicLong();
+    private final AtomicLong runChecked = new AtomicLong();
+    private volatile long runStarted = System.nanoTime();
+    private volatile long runFinished = runStarted;
+    private final Counter checked;
+    private final Counter ledgerFound;
+    private final Counter cacheFound;
+    private final Counter repairs;
+
+    public ReconciliationService(AccountRepository accountRepo, TransactionRepository txRepo,
+                                 ArchivedSegmentRepository catalogRepo, BalanceCache balanceCache,
+                                 AccountReconciler reconciler, ReconciliationProperties properties, MeterRegistry registry) {
+        if (properties.parallelism() < 1 || properties.partitionSize() < 1) {
+            throw new IllegalArgumentException("finance.reconciliation.parallelism and partition-size must be positive");
+        }
+        this.accountRepo = accountRepo;
+        this.txRepo = txRepo;
+        this.catalogRepo = catalogRepo;
+        this.balanceCache = balanceCache;
+        this.reconciler = reconciler;
+        this.properties = properties;
+        this.checked = Counter.builder("finance.reconciliation.accounts")
+                .description("Accounts checked against the ledger")
+                .register(registry);
+        this.ledgerFound = Counter.builder("finance.reconciliation.discrepancies")
+                .tag("kind", "ledger")
+                .description("Balances found off their source")
+                .register(registry);
+        this.cacheFound = Counter.builder("finance.reconciliation.discrepancies")
+                .tag("kind", "cache")
+                .description("Balances found off their source")
+                .register(registry);
+        this.repairs = Counter.builder("finance.reconciliation.repairs")
+                .description("Balances corrected by reconciliation")
+                .register(registry);
+        Gauge.builder("finance.reconciliation.progress", this, ReconciliationService::progress)
+                .description("Share of accounts checked by the current or last run")
+                .register(registry);
+        Gauge.builder("finance.reconciliation.throughput", this, ReconciliationService::throughput)
+                .description("Accounts per second of the current or last run")
+                .register(registry);
+    }
+
+    public ReconciliationReport run(boolean repair) {
+        begin();
+        try {
+            return reconcile(repair);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Starts a run in the background, or fails with {@link ConflictException} while another one is going.
+     */
+    public ReconciliationRun start(boolean repair) {
+        begin();
+        ReconciliationRun started = ReconciliationRun.running(UUID.randomUUID().toString(), repair);
+        runs.put(started.id(), started);
+        try {
+            runner.execute(() -> {
+                ReconciliationRun finished;
+                try {
+                    finished = started.done(reconcile(repair));
+                } catch (RuntimeException e) {
+                    log.warn("Reconciliation {} failed", started.id(), e);
+                    finished = started.failed(e.toString());
+                } finally {
+                    running.set(false);
+                }
+                // Released first, so a client that sees the run finished can start the next one
+                runs.put(started.id(), finished);
+            });
+        } catch (RuntimeException e) {
+            runs.remove(started.id());
+            running.set(false);
+            throw e;
+        }
+        return started;
+    }
+
+    public ReconciliationRun findRun(String id) {
+        ReconciliationRun run = runs.get(id);
+        if (run == null) {
+            throw new NoSuchElementException("No reconciliation run found");
+        }
+        return run;
+    }
+
+    @Override
+    public void destroy() {
+        runner.shutdownNow();
+    }
+
+    private void begin() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ConflictException("Reconciliation is already running");
+        }
+    }
+
+    private ReconciliationReport reconcile(boolean repair) {
+        List<long[]> partitions = partitions();
+        Run run = new Run(repair);
+        runTotal.set(partitions.stream().mapToLong(range -> range[2]).sum());
+        runChecked.set(0);
+        runStarted = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(properties.parallelism());
+        try {
+            pool.invoke(new Check(partitions, 0, partitions.size(), run));
+        } finally {
+            pool.shutdownNow();
+            runFinished = System.nanoTime();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(runFinished - runStarted);
+        log.info("Reconciled {} accounts in {} ms: {} ledger and {} cache discrepancies, {} repaired",
+                runChecked.get(), elapsedMillis, run.ledger, run.cache, run.repaired);
+        return ReconciliationReport.builder()
+                .accounts(runChecked.get())
+                .ledgerDiscrepancies(run.ledger.get())
+                .cacheDiscrepancies(run.cache.get())
+                .repaired(run.repaired.get())
+                .discrepancies(run.reported())
+                .elapsedMillis(elapsedMillis)
+                .build();
+    }
+
+    // {first id, last id, account count} per partition, from an index-only walk over the account ids
+    private List<long[]> partitions() {
+        List<long[]> partitions = new ArrayList<>();
+        long[] current = null;
+        Long after = 0L;
+        List<Long> ids;
+        do {
+            ids = accountRepo.findIdsAfter(after, Limit.of(ACCOUNT_PAGE_SIZE));
+            for (Long id : ids) {
+                if (current == null || current[2] == properties.partitionSize()) {
+                    current = new long[]{id, id, 0};
+                    partitions.add(current);
+                }
+                current[1] = id;
+                current[2]++;
+            }
+            if (!ids.isEmpty()) {
+                after = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == ACCOUNT_PAGE_SIZE);
+        return partitions;
+    }
+
+    private void check(long[] partition, Run run) {
+        throttle(partition[2]);
+        List<StoredBalance> stored = accountRepo.findBalancesBetween(partition[0], partition[1]);
+        Map<Long, BigDecimal> ledger = new HashMap<>();
+        for (List<AccountTotal> totals : List.of(txRepo.sumByAccountBetween(partition[0], partition[1]),
+                catalogRepo.sumByAccountBetween(partition[0], partition[1]))) {
+            totals.forEach(total -> ledger.merge(total.accountId(), total.net(), BigDecimal::add));
+        }
+        for (StoredBalance account : stored) {
+            if (account.balance().compareTo(ledger.getOrDefault(account.accountId(), BigDecimal.ZERO)) != 0) {
+                try {
+                    reconciler.recheck(account.accountId(), run.repair).ifPresent(run::found);
+                } catch (RuntimeException e) {
+                    log.warn("Rechecking the balance of account {} failed", account.accountId(), e);
+                }
+            }
+            BalanceSnapshot cached = balanceCache.nativeCache().getIfPresent(account.name());
+            if (cached != null && cached.revision() == account.revision()
+                    && cached.balance().compareTo(account.balance()) != 0) {
+                if (run.repair) {
+                    // The next read loads the stored balance
+                    balanceCache.evict(account.name());
+                }
+                run.found(new Discrepancy(account.name(), Discrepancy.Kind.CACHE, account.balance(), cached.balance(),
+                        run.repair));
+            }
+        }
+        checked.increment(stored.size());
+        runChecked.addAndGet(stored.size());
+    }
+
+    /**
+     * Books {@code accounts} worth of time on the shared pace and sleeps until that slot starts.
+     */
+    private void throttle(long accounts) {
+        if (properties.maxAccountsPerSecond() <= 0) {
+            return;
+        }
+        long cost = accounts * TimeUnit.SECONDS.toNanos(1) / properties.maxAccountsPerSecond();
+        long now = System.nanoTime();
+        long slot = pace.getAndAccumulate(cost, (next, c) -> Math.max(next, now) + c);
+        long wait = Math.max(slot, now) - now;
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reconciling", e);
+            }
+        }
+    }
+
+    private double progress() {
+        long total = runTotal.get();
+        return total == 0 ? 0 : (double) runChecked.get() / total;
+    }
+
+    private double throughput() {
+        double seconds = ((running.get() ? System.nanoTime() : runFinished) - runStarted) / 1e9;
+        return seconds > 0 ? runChecked.get() / seconds : 0;
+    }
+
+    private final class Check extends RecursiveAction {
+        private final List<long[]> partitions;
+        private final int from;
+        private final int to;
+        private final Run run;
+
+        private Check(List<long[]> partitions, int from, int to, Run run) {
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+            this.run = run;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (from < to) {
+                    check(partitions.get(from), run);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Check(partitions, from, middle, run), new Check(partitions, middle, to, run));
+        }
+    }
+
+    private final class Run {
+        private final boolean repair;
+        private final AtomicLong ledger = new AtomicLong();
+        private final AtomicLong cache = new AtomicLong();
+        private final AtomicLong repaired = new AtomicLong();
+        private final List<Discrepancy> reported = new ArrayList<>();
+
+        private Run(boolean repair) {
+            this.repair = repair;
+        }
+
+        void found(Discrepancy discrepancy) {
+            log.warn("Balance discrepancy: {}", discrepancy);
+            (discrepancy.kind() == Discrepancy.Kind.LEDGER ? ledgerFound : cacheFound).increment();
+            (discrepancy.kind() == Discrepancy.Kind.LEDGER ? ledger : cache).incrementAndGet();
+            if (discrepancy.repaired()) {
+                repaired.incrementAndGet();
+                repairs.increment();
+            }
+            synchronized (reported) {
+                if (reported.size() < properties.maxReported()) {
+                    reported.add(discrepancy);
+                }
+            }
+        }
+
+        List<Discrepancy> reported() {
+            synchronized (reported) {
+                return List.copyOf(reported);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.dto.StatementResponse;
+import com.example.finance.io.repository.DailyRollupRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.NoSuchElementException;
+
+/**
+ * Period statements from the daily rollups. Raw transactions are read only for the partial days at either
+ * end of the range, so the cost depends on the number of days and not on the number of transactions.
+ */
+@Service
+@RequiredArgsConstructor
+@Timed("finance.service")
+public class StatementService {
+    private final AccountDirectory directory;
+    private final DailyRollupRepository rollupRepo;
+    private final TransactionRepository txRepo;
+    private final ColdTransactionStore coldStore;
+
+    // One transaction, so the rollup and raw-row reads see the same committed state where the DB allows it
+    @Transactional
+    public StatementResponse getStatement(String name, LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("Statement period must have from before to");
+        }
+        Long accountId = directory.idOf(name).orElseThrow(() -> new NoSuchElementException("No balance found"));
+
+        LocalDate firstDay = from.toLocalDate();
+        LocalDate lastDay = to.toLocalDate();
+        boolean partialFirstDay = !from.equals(firstDay.atStartOfDay());
+        PeriodTotals period;
+        if (firstDay.equals(lastDay)) {
+            period = rawTotals(accountId, from, to);
+        } else {
+            LocalDate firstFullDay = partialFirstDay ? firstDay.plusDays(1) : firstDay;
+            period = firstFullDay.isBefore(lastDay) ? rollupRepo.sumDays(accountId, firstFullDay, lastDay) : PeriodTotals.EMPTY;
+            if (partialFirstDay) {
+                period = period.plus(rawTotals(accountId, from, firstFullDay.atStartOfDay()));
+            }
+            if (!to.toLocalTime().equals(LocalTime.MIDNIGHT)) {
+                period = period.plus(rawTotals(accountId, lastDay.atStartOfDay(), to));
+            }
+        }
+        PeriodTotals before = rollupRepo.sumDaysBefore(accountId, firstDay);
+        if (partialFirstDay) {
+            before = before.plus(rawTotals(accountId, firstDay.atStartOfDay(), from));
+        }
+
+        return StatementResponse.builder()
+                .name(name)
+                .from(from)
+                .to(to)
+                .openingBalance(before.net())
+                .deposits(period.deposits())
+                .withdrawals(period.withdrawals())
+                .closingBalance(before.net().add(period.net()))
+                .transactionCount(period.count())
+                .build();
+    }
+
+    // Archived days keep their rollups, but their raw rows are in the cold tier
+    private PeriodTotals rawTotals(Long accountId, LocalDateTime from, LocalDateTime to) {
+        return coldStore.sum(accountId, from, to, () -> txRepo.sumBetween(accountId, from, to));
+    }
+}
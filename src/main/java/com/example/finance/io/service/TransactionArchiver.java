@@ -0,0 +1,80 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.ArchiveProperties;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Periodically moves transactions older than {@code finance.archive.min-age} into the cold tier, account by
+ * account and segment by segment, each in its own DB transaction. Balances, per-currency sums and daily
+ * rollups are materialized and stay as they are.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "finance.archive.enabled", havingValue = "true")
+public class TransactionArchiver {
+    private static final int ACCOUNT_PAGE_SIZE = 1000;
+
+    private final ColdTransactionStore cold;
+    private final AccountRepository accountRepo;
+    private final TransactionRepository txRepo;
+    private final ArchiveProperties properties;
+
+    public TransactionArchiver(ColdTransactionStore cold, AccountRepository accountRepo, TransactionRepository txRepo,
+                               ArchiveProperties properties) {
+        if (properties.minAge().isNegative() || properties.minAge().isZero()) {
+            throw new IllegalArgumentException("finance.archive.min-age must be positive");
+        }
+        if (properties.segmentMaxRows() < 1) {
+            throw new IllegalArgumentException("finance.archive.segment-max-rows must be positive");
+        }
+        this.cold = cold;
+        this.accountRepo = accountRepo;
+        this.txRepo = txRepo;
+        this.properties = properties;
+    }
+
+    @Scheduled(initialDelayString = "${finance.archive.interval:1h}", fixedDelayString = "${finance.archive.interval:1h}")
+    public void run() {
+        LocalDateTime before = LocalDateTime.now().minus(properties.minAge());
+        long moved = 0;
+        int accounts = 0;
+        Long after = 0L;
+        List<Long> ids;
+        do {
+            ids = accountRepo.findIdsAfter(after, Limit.of(ACCOUNT_PAGE_SIZE));
+            for (Long id : ids) {
+                try {
+                    cold.deleteOrphans(id);
+                    // An index probe, so accounts with nothing to archive are not locked
+                    if (!txRepo.existsByAccountIdAndTimestampBefore(id, before)) {
+                        continue;
+                    }
+                    int count;
+                    do {
+                        count = cold.archive(id, before, properties.segmentMaxRows());
+                        moved += count;
+                    } while (count == properties.segmentMaxRows());
+                    accounts++;
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Archiving transactions of account {} failed, retrying on the next run", id, e);
+                }
+            }
+            if (!ids.isEmpty()) {
+                after = ids.get(ids.size() - 1);
+            }
+        } while (ids.size() == ACCOUNT_PAGE_SIZE);
+        if (moved > 0) {
+            log.info("Archived {} transactions before {} of {} accounts", moved, before, accounts);
+        }
+    }
+}
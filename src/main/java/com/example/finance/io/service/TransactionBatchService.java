@@ -0,0 +1,127 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.exception.ConflictException;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.Money;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.BatchItemResult;
+import com.example.finance.io.model.dto.BatchItemStatus;
+import com.example.finance.io.model.dto.BatchTransactionItem;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.repository.AccountRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Timed("finance.service")
+public class TransactionBatchService {
+    public static final int MAX_BATCH_SIZE = 5000;
+
+    private final AccountRepository accountRepo;
+    private final LedgerWriter ledger;
+    private final IdempotencyKeyStore keyStore;
+
+    @Transactional
+    public List<BatchItemResult> addTransactions(String name, List<BatchTransactionItem> items) {
+        if (items == null) {
+            throw new IllegalArgumentException("Batch must not be empty");
+        }
+        return addTransactions(items.stream().map(item -> item.toBuilder().account(name).build()).toList());
+    }
+
+    @Transactional
+    public List<BatchItemResult> addTransactions(List<BatchTransactionItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("Batch must not be empty");
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must not exceed " + MAX_BATCH_SIZE);
+        }
+        List<Outcome> outcomes = post(items);
+        List<BatchItemResult> results = new ArrayList<>(outcomes.size());
+        for (int i = 0; i < outcomes.size(); i++) {
+            Outcome outcome = outcomes.get(i);
+            results.add(new BatchItemResult(i, outcome.status(),
+                    outcome.transaction() == null ? null : TransactionView.of(outcome.transaction()),
+                    outcome.error() == null ? null : outcome.error().getMessage()));
+        }
+        return results;
+    }
+
+    /**
+     * Validates every item on its own and inserts the accepted ones in one JDBC batch.
+     * Invalid, unknown-account, duplicate, conflicting-key or overdrawing items are reported per position and do not
+     * fail the batch.
+     */
+    @Transactional
+    public List<Outcome> post(List<BatchTransactionItem> items) {
+        Set<String> names = items.stream()
+                .map(BatchTransactionItem::getAccount)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        // Row locks in id order: concurrent batches cannot deadlock and running balances below stay exact
+        Map<String, Account> accounts = accountRepo.findAllByNameForUpdate(names).stream()
+                .collect(Collectors.toMap(Account::getName, Function.identity()));
+        Set<String> keys = items.stream()
+                .map(item -> normalizeKey(item.getIdempotencyKey()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, Transaction> byKey = keyStore.findAll(keys);
+        Map<Long, Long> running = new HashMap<>();
+        accounts.values().forEach(a -> running.put(a.getId(), Money.toMinor(a.getBalance())));
+
+        List<Outcome> outcomes = new ArrayList<>(items.size());
+        List<Transaction> accepted = new ArrayList<>();
+        for (BatchTransactionItem item : items) {
+            String key = normalizeKey(item.getIdempotencyKey());
+            Transaction existing = key == null ? null : byKey.get(key);
+            try {
+                if (existing != null) {
+                    IdempotencyKeyStore.requireReplayOf(existing, item.getAccount(), item.getType(), item.getAmount(),
+                            item.getCurrency());
+                    outcomes.add(new Outcome(BatchItemStatus.DUPLICATE, existing, null));
+                    continue;
+                }
+                Account account = accounts.get(item.getAccount());
+                if (account == null) {
+                    throw new NoSuchElementException("No balance found");
+                }
+                Transaction tx = ledger.prepare(account, item.getType(), item.getAmount(), item.getCurrency(), key);
+                long next = Money.add(running.get(account.getId()), LedgerWriter.signedUsdMinor(tx));
+                if (tx.getType() == TransactionType.WITHDRAW && !ledger.overdraftAllowed()) {
+                    if (next < 0) {
+                        throw new IllegalArgumentException("Insufficient funds");
+                    }
+                    long balance = running.get(account.getId());
+                    ledger.claimFunds(account.getName(), () -> balance, LedgerWriter.signedUsdMinor(tx));
+                }
+                running.put(account.getId(), next);
+                accepted.add(tx);
+                if (key != null) {
+                    byKey.put(key, tx);
+                }
+                outcomes.add(new Outcome(BatchItemStatus.CREATED, tx, null));
+            } catch (IllegalArgumentException | NoSuchElementException | ConflictException e) {
+                outcomes.add(new Outcome(BatchItemStatus.REJECTED, null, e));
+            }
+        }
+        ledger.postAll(accepted);
+        accepted.forEach(keyStore::remember);
+        return outcomes;
+    }
+
+    public record Outcome(BatchItemStatus status, Transaction transaction, RuntimeException error) {
+    }
+
+    private static String normalizeKey(String key) {
+        return key == null || key.isBlank() ? null : key;
+    }
+}
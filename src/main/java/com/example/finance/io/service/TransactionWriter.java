@@ -0,0 +1,13 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+
+import java.math.BigDecimal;
+
+/**
+ * Entry point for single-transaction writes; the implementation is chosen by {@code finance.write.mode}.
+ */
+public interface TransactionWriter {
+    Transaction write(String name, TransactionType type, BigDecimal amount, String currency, String idempotencyKey);
+}
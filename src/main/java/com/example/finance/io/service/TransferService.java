@@ -0,0 +1,41 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.model.dto.TransferResponse;
+import io.micrometer.core.annotation.Timed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Transfers commit directly in every write mode, like the batch endpoints. The idempotency key is stored
+ * on the debit leg, so concurrent and repeated requests with the same key share one transfer.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransferService {
+    private final AccountBalanceService service;
+    private final IdempotencyKeyStore keyStore;
+
+    @Timed("finance.service")
+    public TransferResponse transfer(String from, String to, BigDecimal amount, String currency, String toCurrency,
+                                     String idempotencyKey) {
+        AtomicReference<List<Transaction>> posted = new AtomicReference<>();
+        Transaction debit = keyStore.execute(idempotencyKey, () -> {
+            List<Transaction> legs = service.transfer(from, to, amount, currency, toCurrency, idempotencyKey);
+            posted.set(legs);
+            return legs.get(0);
+        });
+        // A replay only hands back the keyed debit; the credit is found through the transfer id
+        List<Transaction> legs = posted.get() != null ? posted.get() : IdempotencyKeyStore.requireTransferReplayOf(
+                service.transferLegs(debit), from, to, amount, currency, toCurrency);
+        Transaction debitLeg = legs.stream().filter(tx -> tx.getType() == TransactionType.WITHDRAW).findFirst().orElseThrow();
+        Transaction creditLeg = legs.stream().filter(tx -> tx.getType() == TransactionType.DEPOSIT).findFirst().orElseThrow();
+        return new TransferResponse(debitLeg.getTransferId(), TransactionView.of(debitLeg), TransactionView.of(creditLeg));
+    }
+}
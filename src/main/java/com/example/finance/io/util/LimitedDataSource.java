@@ -0,0 +1,146 @@
+package com.example.finance.io.util;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caps the number of connections checked out at once with a fair semaphore, so that thousands of
+ * (virtual) request threads queue here in FIFO order instead of piling onto the pool. A permit is
+ * held from {@code getConnection()} until the connection is closed. Waits and timeouts are counted, and
+ * published as {@code finance.datasource.*} meters once bound to a registry.
+ */
+public class LimitedDataSource extends DelegatingDataSource implements MeterBinder {
+    private final int limit;
+    private final long timeoutNanos;
+    private final Semaphore permits;
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public LimitedDataSource(DataSource target, int limit, Duration acquireTimeout) {
+        super(target);
+        if (limit < 1) {
+            throw new IllegalArgumentException("Connection limit must be positive");
+        }
+        this.limit = limit;
+        this.timeoutNanos = acquireTimeout.toNanos();
+        this.permits = new Semaphore(limit, true);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquire();
+        return limited(() -> super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquire();
+        return limited(() -> super.getConnection(username, password));
+    }
+
+    public Stats stats() {
+        return new Stats(limit, limit - permits.availablePermits(), permits.getQueueLength(),
+                acquired.sum(), timeouts.sum(), waitNanos.sum(), maxWaitNanos.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("finance.datasource.limit", this, ds -> ds.limit)
+                .description("Connections that may be checked out at once")
+                .register(registry);
+        Gauge.builder("finance.datasource.in-use", this, ds -> ds.limit - ds.permits.availablePermits())
+                .description("Connections currently checked out")
+                .register(registry);
+        Gauge.builder("finance.datasource.waiting", this, ds -> ds.permits.getQueueLength())
+                .description("Callers queued for a connection")
+                .register(registry);
+        FunctionCounter.builder("finance.datasource.wait", this, ds -> ds.waitNanos.sum() / 1e9)
+                .description("Time spent waiting for a connection")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("finance.datasource.timeouts", this, ds -> ds.timeouts.sum())
+                .description("Callers that gave up waiting for a connection")
+                .register(registry);
+    }
+
+    private void acquire() throws SQLException {
+        long start = System.nanoTime();
+        boolean granted;
+        try {
+            granted = permits.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database permit", e);
+        }
+        long waited = System.nanoTime() - start;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        if (!granted) {
+            timeouts.increment();
+            throw new SQLTransientConnectionException("Database concurrency limit of " + limit
+                    + " reached, gave up after " + TimeUnit.NANOSECONDS.toMillis(waited) + " ms");
+        }
+        acquired.increment();
+    }
+
+    private Connection limited(ConnectionSupplier supplier) throws SQLException {
+        Connection target;
+        try {
+            target = supplier.get();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                        try {
+                            return method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSupplier {
+        Connection get() throws SQLException;
+    }
+
+    /**
+     * @param inUse    permits currently held
+     * @param waiting  callers queued for a permit
+     * @param acquired permits granted since start
+     * @param timeouts callers that gave up
+     */
+    public record Stats(int limit, int inUse, int waiting, long acquired, long timeouts,
+                        long totalWaitNanos, long maxWaitNanos) {
+    }
+}
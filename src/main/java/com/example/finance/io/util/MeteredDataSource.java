@@ -0,0 +1,163 @@
+package com.example.finance.io.util;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every statement executed through the wrapped DataSource, tagged by its leading keyword, and adds it
+ * to the {@link Usage} of the current thread when one is open (see {@link #open()}). Row fetching after
+ * {@code executeQuery} returns is not included.
+ */
+public class MeteredDataSource extends DelegatingDataSource {
+    public static final String METRIC = "finance.sql.statements";
+
+    private static final ThreadLocal<Usage> USAGE = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public MeteredDataSource(DataSource target, MeterRegistry registry) {
+        super(target);
+        this.registry = registry;
+    }
+
+    /**
+     * Starts counting the statements this thread executes until the returned usage is closed.
+     */
+    public static Usage open() {
+        Usage usage = new Usage(USAGE.get());
+        USAGE.set(usage);
+        return usage;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return metered(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return metered(super.getConnection(username, password));
+    }
+
+    private Connection metered(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (result instanceof Statement statement && isStatementFactory(method)) {
+                        // prepareStatement/prepareCall carry the SQL; createStatement gets it at execute time
+                        String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                        return metered(statement, method.getReturnType(), sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Object metered(Statement target, Class<?> type, String preparedSql) {
+        return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                return invoke(target, method, args);
+            }
+            String sql = preparedSql != null ? preparedSql
+                    : args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            long start = System.nanoTime();
+            try {
+                return invoke(target, method, args);
+            } finally {
+                record(method.getName().equals("executeBatch") || method.getName().equals("executeLargeBatch")
+                        ? "batch" : kind(sql), System.nanoTime() - start);
+            }
+        });
+    }
+
+    private void record(String kind, long nanos) {
+        timers.computeIfAbsent(kind, k -> Timer.builder(METRIC)
+                .description("Time spent executing JDBC statements")
+                .tag("kind", k)
+                .register(registry)).record(nanos, TimeUnit.NANOSECONDS);
+        Usage usage = USAGE.get();
+        if (usage != null) {
+            usage.statements++;
+            usage.nanos += nanos;
+        }
+    }
+
+    private static boolean isStatementFactory(Method method) {
+        Class<?> type = method.getReturnType();
+        return type == Statement.class || type == PreparedStatement.class || type == CallableStatement.class;
+    }
+
+    static String kind(String sql) {
+        if (sql == null) {
+            return "other";
+        }
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return switch (trimmed.substring(0, end).toLowerCase(Locale.ROOT)) {
+            case "select", "with" -> "select";
+            case "insert" -> "insert";
+            case "update" -> "update";
+            case "delete" -> "delete";
+            case "merge" -> "merge";
+            default -> "other";
+        };
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Statements executed by one thread between {@link #open()} and {@link #close()}; usages nest.
+     */
+    public static final class Usage implements AutoCloseable {
+        private final Usage outer;
+        private int statements;
+        private long nanos;
+
+        private Usage(Usage outer) {
+            this.outer = outer;
+        }
+
+        public int statements() {
+            return statements;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public void close() {
+            if (outer == null) {
+                USAGE.remove();
+            } else {
+                outer.statements += statements;
+                outer.nanos += nanos;
+                USAGE.set(outer);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.finance.io.util;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of opaque records in fixed-size memory-mapped segment files named by their base offset.
+ * A record is {@code [int length][int crc32c][payload]}; a zero length marks the end of a segment.
+ * Offsets are global ({@code segment base + position}) and only grow. Appends are serialized,
+ * {@link #sync} coalesces concurrent fsync requests, and readers only ever see synced records.
+ * On open, a torn or corrupt tail of the last segment is zeroed.
+ */
+public final class SegmentedJournal {
+    private static final String SUFFIX = ".seg";
+    private static final int HEADER = 8;
+
+    private final Path dir;
+    private final int segmentSize;
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // Locks rather than monitors: appends and msync run on request threads, which may be virtual
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private Segment current;
+    private long written;
+    private volatile long durable;
+
+    public SegmentedJournal(Path dir, int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("Journal segment size must be at least 1KB");
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                    String name = file.getFileName().toString();
+                    long base = Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+                    segments.put(base, Segment.open(file, base, (int) Files.size(file)));
+                }
+            }
+            if (segments.isEmpty()) {
+                segments.put(0L, Segment.open(segmentPath(0), 0, segmentSize));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal in " + dir, e);
+        }
+        current = segments.lastEntry().getValue();
+        written = current.base + recover(current);
+        durable = written;
+    }
+
+    /**
+     * Writes {@code payload} after the last record and returns the offset just past it. Not durable until synced.
+     */
+    public long append(byte[] payload) {
+        int length = HEADER + payload.length;
+        if (payload.length == 0) {
+            throw new IllegalArgumentException("Journal record must not be empty");
+        }
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + payload.length + " bytes exceeds the segment size");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        appendLock.lock();
+        try {
+            int position = (int) (written - current.base);
+            if (position + length > current.size) {
+                roll();
+                position = 0;
+            }
+            MappedByteBuffer buffer = current.buffer;
+            buffer.put(position + HEADER, payload);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            // Length last: a crash mid-record leaves either zero or a checksum mismatch, never a half-valid record
+            buffer.putInt(position, payload.length);
+            written = current.base + position + length;
+            return written;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Returns once every record ending at or before {@code offset} is on disk. Concurrent callers share one msync.
+     */
+    public void sync(long offset) {
+        if (durable >= offset) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable >= offset) {
+                return;
+            }
+            Segment segment;
+            long end;
+            appendLock.lock();
+            try {
+                segment = current;
+                end = written;
+            } finally {
+                appendLock.unlock();
+            }
+            // Segments before the current one were forced completely when they were rolled over
+            int from = (int) (Math.max(durable, segment.base) - segment.base);
+            segment.buffer.force(from, (int) (end - segment.base) - from);
+            durable = end;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public long durableOffset() {
+        return durable;
+    }
+
+    /**
+     * Reads up to {@code maxRecords} synced records starting at {@code offset}, which must be a record boundary.
+     */
+    public List<Record> read(long offset, int maxRecords) {
+        List<Record> records = new ArrayList<>();
+        long limit = durable;
+        while (offset < limit && records.size() < maxRecords) {
+            Segment segment = segments.floorEntry(offset).getValue();
+            int position = (int) (offset - segment.base);
+            int length = position + HEADER <= segment.size ? segment.buffer.getInt(position) : 0;
+            if (length == 0) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(segment.base);
+                if (next == null) {
+                    break;
+                }
+                offset = next.getKey();
+                continue;
+            }
+            byte[] payload = new byte[length];
+            segment.buffer.get(position + HEADER, payload);
+            offset += HEADER + length;
+            records.add(new Record(offset, payload));
+        }
+        return records;
+    }
+
+    private void roll() {
+        current.buffer.force();
+        long base = current.base + current.size;
+        try {
+            current = Segment.open(segmentPath(base), base, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create journal segment " + base, e);
+        }
+        segments.put(base, current);
+        written = base;
+    }
+
+    private Path segmentPath(long base) {
+        return dir.resolve(String.format("%019d%s", base, SUFFIX));
+    }
+
+    /**
+     * Finds the end of the valid records in {@code segment} and zeroes whatever follows.
+     */
+    private static int recover(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER <= segment.size) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || position + HEADER + length > segment.size) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(position + HEADER, payload);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            position += HEADER + length;
+        }
+        if (position + HEADER <= segment.size && buffer.getInt(position) != 0) {
+            buffer.put(position, new byte[segment.size - position]);
+            buffer.force();
+        }
+        return position;
+    }
+
+    public record Record(long end, byte[] payload) {
+    }
+
+    private record Segment(long base, int size, MappedByteBuffer buffer) {
+        static Segment open(Path file, long base, int size) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                if (raf.length() < size) {
+                    raf.setLength(size);
+                }
+                // The mapping stays valid after the file is closed
+                return new Segment(base, size, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+    }
+}
@@ -0,0 +1,381 @@
+package com.example.finance.io.util;
+
+import com.example.finance.io.model.Money;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.ExportFormat;
+import com.example.finance.io.model.dto.TransactionView;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Streaming encoders and decoders of transactions for bulk export and import, one record at a time.
+ * <p>
+ * CSV has a header line, one line per transaction and an {@value #TRAILER} line; fields are quoted when they
+ * contain a comma, quote or line break, and an empty field is null. The binary form is {@code [int magic][byte version]}, then per
+ * transaction a {@code 1} byte and its fields, then a {@code 0} byte. Either way a cut-off stream is detected.
+ * <p>
+ * {@link RecordReader#next} throws {@link IllegalArgumentException} for a record it could read but not convert,
+ * after which reading continues with the next record, and {@link IOException} when the stream itself is broken.
+ */
+public final class TransactionRecords {
+    static final String HEADER = "id,account,type,amount,amount_usd,currency,rate_version,timestamp,idempotency_key,transfer_id";
+    static final String TRAILER = "#end";
+    private static final int FIELDS = 10;
+    // id, type, amount, amount_usd, timestamp
+    private static final int[] REQUIRED = {0, 2, 3, 4, 7};
+    private static final int BUFFER = 1 << 16;
+    private static final int MAGIC = 0x464C4447; // FLDG
+    private static final byte VERSION = 1;
+    private static final byte RECORD = 1;
+    private static final byte END = 0;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private TransactionRecords() {
+    }
+
+    public interface RecordWriter extends AutoCloseable {
+        void write(TransactionView row) throws IOException;
+
+        /**
+         * Writes what the format needs at the end and flushes; the underlying stream stays open.
+         */
+        @Override
+        void close() throws IOException;
+    }
+
+    public interface RecordReader {
+        /**
+         * The next transaction, or {@code null} at the end of the stream.
+         */
+        TransactionView next() throws IOException;
+
+        // 1-based number of the record last returned or rejected
+        long recordNumber();
+    }
+
+    public static RecordWriter writer(ExportFormat format, OutputStream out) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvWriter(out);
+            case BINARY -> new BinaryWriter(out);
+        };
+    }
+
+    public static RecordReader reader(ExportFormat format, InputStream in) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvReader(in);
+            case BINARY -> new BinaryReader(in);
+        };
+    }
+
+    private static final class CsvWriter implements RecordWriter {
+        private final Writer out;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER);
+            this.out.write(HEADER);
+            this.out.write('\n');
+        }
+
+        @Override
+        public void write(TransactionView row) throws IOException {
+            out.write(row.id().toString());
+            out.write(',');
+            text(row.account());
+            out.write(',');
+            out.write(row.type().name());
+            out.write(',');
+            out.write(row.amount().toPlainString());
+            out.write(',');
+            out.write(row.amountUSD().toPlainString());
+            out.write(',');
+            text(row.currency());
+            out.write(',');
+            if (row.rateVersion() != null) {
+                out.write(row.rateVersion().toString());
+            }
+            out.write(',');
+            out.write(row.timestamp().toString());
+            out.write(',');
+            text(row.idempotencyKey());
+            out.write(',');
+            if (row.transferId() != null) {
+                out.write(row.transferId().toString());
+            }
+            out.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.write(TRAILER);
+            out.write('\n');
+            out.flush();
+        }
+
+        private void text(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            boolean quote = value.isEmpty();
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            // Quoted, so an empty string stays distinguishable from null
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    private static final class CsvReader implements RecordReader {
+        private final BufferedReader in;
+        private final List<String> fields = new ArrayList<>(FIELDS);
+        private final StringBuilder field = new StringBuilder();
+        private long record;
+        private boolean ended;
+
+        CsvReader(InputStream in) throws IOException {
+            this.in = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER);
+            if (!readLine()) {
+                throw new IOException("CSV input is empty");
+            }
+            if (!String.join(",", fields).equals(HEADER)) {
+                throw new IOException("CSV header must be: " + HEADER);
+            }
+        }
+
+        @Override
+        public TransactionView next() throws IOException {
+            if (ended) {
+                return null;
+            }
+            do {
+                if (!readLine()) {
+                    throw new IOException("CSV input is truncated after record " + record + ": no " + TRAILER + " line");
+                }
+            } while (fields.size() == 1 && fields.get(0) == null);
+            if (fields.size() == 1 && TRAILER.equals(fields.get(0))) {
+                ended = true;
+                while (readLine()) {
+                    if (fields.size() != 1 || fields.get(0) != null) {
+                        throw new IOException("CSV input continues after the " + TRAILER + " line");
+                    }
+                }
+                return null;
+            }
+            record++;
+            if (fields.size() != FIELDS) {
+                throw new IllegalArgumentException("Expected " + FIELDS + " fields but found " + fields.size());
+            }
+            for (int index : REQUIRED) {
+                if (fields.get(index) == null) {
+                    throw new IllegalArgumentException("Field " + HEADER.split(",")[index] + " is required");
+                }
+            }
+            try {
+                String rateVersion = fields.get(6);
+                String transferId = fields.get(9);
+                return new TransactionView(
+                        UUID.fromString(fields.get(0)),
+                        fields.get(1),
+                        TransactionType.valueOf(fields.get(2)),
+                        new BigDecimal(fields.get(3)),
+                        new BigDecimal(fields.get(4)),
+                        fields.get(5),
+                        rateVersion == null ? null : Long.valueOf(rateVersion),
+                        LocalDateTime.parse(fields.get(7)),
+                        fields.get(8),
+                        transferId == null ? null : UUID.fromString(transferId));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid timestamp: " + e.getParsedString());
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Invalid timestamp");
+            } catch (IllegalArgumentException e) {
+                // Also NumberFormatException and unknown enum constants
+                throw new IllegalArgumentException("Invalid field value: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public long recordNumber() {
+            return record;
+        }
+
+        /**
+         * Splits the next line, which may span physical lines inside quotes, into {@link #fields}.
+         */
+        private boolean readLine() throws IOException {
+            fields.clear();
+            field.setLength(0);
+            int c = in.read();
+            if (c == -1) {
+                return false;
+            }
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("CSV input ends inside a quoted field");
+                    }
+                    if (c == '"') {
+                        in.mark(1);
+                        if (in.read() == '"') {
+                            field.append('"');
+                        } else {
+                            in.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == ',' || c == '\n' || c == -1) {
+                    fields.add(field.isEmpty() && !wasQuoted ? null : field.toString());
+                    field.setLength(0);
+                    wasQuoted = false;
+                    if (c != ',') {
+                        return true;
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = in.read();
+            }
+        }
+    }
+
+    private static final class BinaryWriter implements RecordWriter {
+        private final DataOutputStream out;
+
+        BinaryWriter(OutputStream out) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER));
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+        }
+
+        @Override
+        public void write(TransactionView row) throws IOException {
+            out.writeByte(RECORD);
+            out.writeLong(row.id().getMostSignificantBits());
+            out.writeLong(row.id().getLeastSignificantBits());
+            out.writeUTF(row.account());
+            out.writeByte(row.type().ordinal());
+            out.writeByte(row.amount().scale());
+            out.writeLong(row.amount().unscaledValue().longValueExact());
+            out.writeLong(Money.toMinor(row.amountUSD()));
+            out.writeUTF(row.currency());
+            out.writeLong(row.rateVersion() == null ? -1 : row.rateVersion());
+            out.writeLong(row.timestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(row.timestamp().getNano());
+            out.writeBoolean(row.idempotencyKey() != null);
+            if (row.idempotencyKey() != null) {
+                out.writeUTF(row.idempotencyKey());
+            }
+            out.writeBoolean(row.transferId() != null);
+            if (row.transferId() != null) {
+                out.writeLong(row.transferId().getMostSignificantBits());
+                out.writeLong(row.transferId().getLeastSignificantBits());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeByte(END);
+            out.flush();
+        }
+    }
+
+    private static final class BinaryReader implements RecordReader {
+        private final DataInputStream in;
+        private long record;
+        private boolean ended;
+
+        BinaryReader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, BUFFER));
+            if (this.in.readInt() != MAGIC) {
+                throw new IOException("Input is not a binary ledger export");
+            }
+            byte version = this.in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unknown binary ledger export version " + version);
+            }
+        }
+
+        @Override
+        public TransactionView next() throws IOException {
+            if (ended) {
+                return null;
+            }
+            try {
+                byte marker = in.readByte();
+                if (marker == END) {
+                    ended = true;
+                    return null;
+                }
+                if (marker != RECORD) {
+                    throw new IOException("Corrupt binary ledger export after record " + record);
+                }
+                record++;
+                UUID id = new UUID(in.readLong(), in.readLong());
+                String account = in.readUTF();
+                int type = in.readUnsignedByte();
+                int scale = in.readByte();
+                long unscaled = in.readLong();
+                long usd = in.readLong();
+                String currency = in.readUTF();
+                long rateVersion = in.readLong();
+                long seconds = in.readLong();
+                int nanos = in.readInt();
+                String key = in.readBoolean() ? in.readUTF() : null;
+                UUID transferId = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+                // The whole record is consumed, so a bad value only rejects this one
+                if (type >= TYPES.length) {
+                    throw new IllegalArgumentException("Invalid transaction type " + type);
+                }
+                LocalDateTime timestamp;
+                try {
+                    timestamp = LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+                } catch (DateTimeException e) {
+                    throw new IllegalArgumentException("Invalid timestamp");
+                }
+                return new TransactionView(id, account, TYPES[type], BigDecimal.valueOf(unscaled, scale),
+                        Money.toBigDecimal(usd), currency, rateVersion < 0 ? null : rateVersion, timestamp, key, transferId);
+            } catch (EOFException e) {
+                throw new IOException("Binary ledger export is truncated after record " + record, e);
+            }
+        }
+
+        @Override
+        public long recordNumber() {
+            return record;
+        }
+    }
+}
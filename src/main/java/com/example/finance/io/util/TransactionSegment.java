@@ -0,0 +1,527 @@
+package com.example.finance.io.util;
+
+import com.example.finance.io.model.Money;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.TransactionCursor;
+import com.example.finance.io.model.dto.TransactionView;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable columnar file of one account's archived transactions in {@code (timestamp, id)} order.
+ * Rows are grouped into blocks; every column of a block is encoded on its own (zig-zag varint deltas for
+ * timestamps, varints for numbers, length-prefixed UTF-8 for strings) and deflated, so readers inflate only
+ * the blocks and columns they need. The block index, with each block's time range and USD totals, is at the end:
+ * {@code [int magic][byte version][column data...][index][long indexOffset][int indexLength][int crc32c][int magic]}.
+ * Files are read through a read-only memory mapping and inflated straight from the mapped pages.
+ */
+public final class TransactionSegment {
+    public static final String SUFFIX = ".tseg";
+    static final int BLOCK_ROWS = 4096;
+
+    private static final int MAGIC = 0x46545347; // FTSG
+    private static final byte VERSION = 1;
+    private static final int TRAILER = 20;
+    private static final int TIMESTAMP = 0, ID = 1, TYPE = 2, AMOUNT = 3, AMOUNT_USD = 4, CURRENCY = 5,
+            RATE_VERSION = 6, IDEMPOTENCY_KEY = 7, TRANSFER_ID = 8, COLUMNS = 9;
+    private static final TransactionType[] TYPES = TransactionType.values();
+
+    private final MappedByteBuffer buffer;
+    private final Block[] blocks;
+
+    private TransactionSegment(MappedByteBuffer buffer, Block[] blocks) {
+        this.buffer = buffer;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Writes {@code rows}, which must be in ascending {@code (timestamp, id)} order, and fsyncs the file.
+     * The file is written under a temporary name and moved into place, so it appears complete or not at all.
+     */
+    public static Summary write(Path file, List<TransactionView> rows) {
+        return write(file, rows, BLOCK_ROWS);
+    }
+
+    static Summary write(Path file, List<TransactionView> rows, int blockRows) {
+        if (rows.isEmpty()) {
+            throw new IllegalArgumentException("Segment must not be empty");
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        List<Block> index = new ArrayList<>();
+        try {
+            Files.createDirectories(file.getParent());
+            long position = 5;
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                Deflater deflater = new Deflater();
+                try {
+                    for (int from = 0; from < rows.size(); from += blockRows) {
+                        List<TransactionView> block = rows.subList(from, Math.min(rows.size(), from + blockRows));
+                        byte[][] columns = encode(block);
+                        long[] offsets = new long[COLUMNS];
+                        int[] lengths = new int[COLUMNS];
+                        int[] rawLengths = new int[COLUMNS];
+                        for (int c = 0; c < COLUMNS; c++) {
+                            byte[] packed = deflate(deflater, columns[c]);
+                            out.write(packed);
+                            offsets[c] = position;
+                            lengths[c] = packed.length;
+                            rawLengths[c] = columns[c].length;
+                            position += packed.length;
+                        }
+                        long deposits = 0;
+                        long withdrawals = 0;
+                        for (TransactionView row : block) {
+                            if (row.type() == TransactionType.DEPOSIT) {
+                                deposits = Money.add(deposits, Money.toMinor(row.amountUSD()));
+                            } else {
+                                withdrawals = Money.add(withdrawals, Money.toMinor(row.amountUSD()));
+                            }
+                        }
+                        index.add(new Block(block.size(), nanos(block.get(0).timestamp()),
+                                nanos(block.get(block.size() - 1).timestamp()), deposits, withdrawals,
+                                offsets, lengths, rawLengths));
+                    }
+                } finally {
+                    deflater.end();
+                }
+                byte[] indexBytes = encodeIndex(index);
+                CRC32C crc = new CRC32C();
+                crc.update(indexBytes);
+                out.write(indexBytes);
+                out.writeLong(position);
+                out.writeInt(indexBytes.length);
+                out.writeInt((int) crc.getValue());
+                out.writeInt(MAGIC);
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(file.getParent());
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw new UncheckedIOException("Cannot write segment " + file, e);
+        }
+        long deposits = 0;
+        long withdrawals = 0;
+        for (Block block : index) {
+            deposits = Money.add(deposits, block.deposits);
+            withdrawals = Money.add(withdrawals, block.withdrawals);
+        }
+        return new Summary(rows.get(0).timestamp(), rows.get(rows.size() - 1).timestamp(),
+                new PeriodTotals(Money.toBigDecimal(deposits), Money.toBigDecimal(withdrawals), rows.size()));
+    }
+
+    public static TransactionSegment open(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 5 + TRAILER) {
+                throw new IllegalStateException("Segment " + file + " is truncated");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = (int) size;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(end - 4) != MAGIC) {
+                throw new IllegalStateException("Segment " + file + " is not a transaction segment");
+            }
+            if (buffer.get(4) != VERSION) {
+                throw new IllegalStateException("Unknown segment version " + buffer.get(4) + " in " + file);
+            }
+            int indexOffset = Math.toIntExact(buffer.getLong(end - TRAILER));
+            int indexLength = buffer.getInt(end - 12);
+            if (indexOffset < 5 || indexOffset + indexLength != end - TRAILER) {
+                throw new IllegalStateException("Segment " + file + " has a corrupt trailer");
+            }
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(indexOffset, indexLength));
+            if ((int) crc.getValue() != buffer.getInt(end - 8)) {
+                throw new IllegalStateException("Segment " + file + " has a corrupt index");
+            }
+            return new TransactionSegment(buffer, decodeIndex(buffer.slice(indexOffset, indexLength)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open segment " + file, e);
+        }
+    }
+
+    public int rowCount() {
+        int rows = 0;
+        for (Block block : blocks) {
+            rows += block.rows;
+        }
+        return rows;
+    }
+
+    /**
+     * Up to {@code limit} rows newest first, starting after {@code after} in history order ({@code null} for the newest).
+     */
+    public List<TransactionView> readDescending(String account, TransactionCursor after, int limit) {
+        List<TransactionView> result = new ArrayList<>(Math.min(limit, 1024));
+        long cursorNanos = after == null ? Long.MAX_VALUE : nanos(after.timestamp());
+        for (int b = blocks.length - 1; b >= 0 && result.size() < limit; b--) {
+            Block block = blocks[b];
+            if (block.first > cursorNanos) {
+                continue;
+            }
+            List<TransactionView> rows = decode(block, account);
+            for (int i = rows.size() - 1; i >= 0 && result.size() < limit; i--) {
+                TransactionView row = rows.get(i);
+                if (after == null || after.precedes(row)) {
+                    result.add(row);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Every row in file order, oldest first, one block in memory at a time.
+     */
+    public void forEach(String account, Consumer<TransactionView> sink) {
+        for (Block block : blocks) {
+            decode(block, account).forEach(sink);
+        }
+    }
+
+    /**
+     * USD totals of the rows with timestamps in [from, to). Blocks entirely inside the range are answered
+     * from the index; the others inflate only their timestamp, type and USD amount columns.
+     */
+    public PeriodTotals sum(LocalDateTime from, LocalDateTime to) {
+        long fromNanos = nanos(from);
+        long toNanos = nanos(to);
+        long deposits = 0;
+        long withdrawals = 0;
+        long count = 0;
+        for (Block block : blocks) {
+            if (block.last < fromNanos || block.first >= toNanos) {
+                continue;
+            }
+            if (block.first >= fromNanos && block.last < toNanos) {
+                deposits = Money.add(deposits, block.deposits);
+                withdrawals = Money.add(withdrawals, block.withdrawals);
+                count += block.rows;
+                continue;
+            }
+            Reader timestamps = column(block, TIMESTAMP);
+            Reader types = column(block, TYPE);
+            Reader usd = column(block, AMOUNT_USD);
+            long timestamp = 0;
+            for (int i = 0; i < block.rows; i++) {
+                timestamp += timestamps.signed();
+                TransactionType type = TYPES[types.unsigned8()];
+                long amount = usd.signed();
+                if (timestamp >= fromNanos && timestamp < toNanos) {
+                    if (type == TransactionType.DEPOSIT) {
+                        deposits = Money.add(deposits, amount);
+                    } else {
+                        withdrawals = Money.add(withdrawals, amount);
+                    }
+                    count++;
+                }
+            }
+        }
+        return new PeriodTotals(Money.toBigDecimal(deposits), Money.toBigDecimal(withdrawals), count);
+    }
+
+    private List<TransactionView> decode(Block block, String account) {
+        Reader timestamps = column(block, TIMESTAMP);
+        Reader ids = column(block, ID);
+        Reader types = column(block, TYPE);
+        Reader amounts = column(block, AMOUNT);
+        Reader usd = column(block, AMOUNT_USD);
+        Reader currencies = column(block, CURRENCY);
+        Reader rateVersions = column(block, RATE_VERSION);
+        Reader keys = column(block, IDEMPOTENCY_KEY);
+        Reader transferIds = column(block, TRANSFER_ID);
+        List<TransactionView> rows = new ArrayList<>(block.rows);
+        long timestamp = 0;
+        for (int i = 0; i < block.rows; i++) {
+            timestamp += timestamps.signed();
+            int scale = (int) amounts.unsigned();
+            BigDecimal amount = BigDecimal.valueOf(amounts.signed(), scale);
+            long rateVersion = rateVersions.unsigned();
+            rows.add(new TransactionView(ids.uuid(), account, TYPES[types.unsigned8()], amount,
+                    Money.toBigDecimal(usd.signed()), currencies.string(), rateVersion == 0 ? null : rateVersion - 1,
+                    timestamp(timestamp), keys.string(), transferIds.unsigned8() == 0 ? null : transferIds.uuid()));
+        }
+        return rows;
+    }
+
+    private Reader column(Block block, int column) {
+        byte[] raw = new byte[block.rawLengths[column]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buffer.slice(Math.toIntExact(block.offsets[column]), block.lengths[column]));
+            int read = 0;
+            while (read < raw.length && !inflater.finished()) {
+                int n = inflater.inflate(raw, read, raw.length - read);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != raw.length) {
+                throw new IllegalStateException("Segment column is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Segment column is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+        return new Reader(raw);
+    }
+
+    private static byte[][] encode(List<TransactionView> rows) {
+        Writer[] columns = new Writer[COLUMNS];
+        for (int c = 0; c < COLUMNS; c++) {
+            columns[c] = new Writer();
+        }
+        long previous = 0;
+        for (TransactionView row : rows) {
+            long timestamp = nanos(row.timestamp());
+            columns[TIMESTAMP].signed(timestamp - previous);
+            previous = timestamp;
+            columns[ID].uuid(row.id());
+            columns[TYPE].unsigned8(row.type().ordinal());
+            BigDecimal amount = row.amount().scale() < 0 ? row.amount().setScale(0) : row.amount();
+            columns[AMOUNT].unsigned(amount.scale());
+            columns[AMOUNT].signed(amount.unscaledValue().longValueExact());
+            columns[AMOUNT_USD].signed(Money.toMinor(row.amountUSD()));
+            columns[CURRENCY].string(row.currency());
+            columns[RATE_VERSION].unsigned(row.rateVersion() == null ? 0 : row.rateVersion() + 1);
+            columns[IDEMPOTENCY_KEY].string(row.idempotencyKey());
+            if (row.transferId() == null) {
+                columns[TRANSFER_ID].unsigned8(0);
+            } else {
+                columns[TRANSFER_ID].unsigned8(1);
+                columns[TRANSFER_ID].uuid(row.transferId());
+            }
+        }
+        byte[][] bytes = new byte[COLUMNS][];
+        for (int c = 0; c < COLUMNS; c++) {
+            bytes[c] = columns[c].toByteArray();
+        }
+        return bytes;
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        Writer out = new Writer();
+        byte[] chunk = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            out.write(chunk, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeIndex(List<Block> index) {
+        ByteBuffer out = ByteBuffer.allocate(4 + index.size() * (4 + 4 * 8 + COLUMNS * (8 + 4 + 4)));
+        out.putInt(index.size());
+        for (Block block : index) {
+            out.putInt(block.rows);
+            out.putLong(block.first);
+            out.putLong(block.last);
+            out.putLong(block.deposits);
+            out.putLong(block.withdrawals);
+            for (int c = 0; c < COLUMNS; c++) {
+                out.putLong(block.offsets[c]);
+                out.putInt(block.lengths[c]);
+                out.putInt(block.rawLengths[c]);
+            }
+        }
+        return out.array();
+    }
+
+    private static Block[] decodeIndex(ByteBuffer in) {
+        Block[] blocks = new Block[in.getInt()];
+        for (int b = 0; b < blocks.length; b++) {
+            int rows = in.getInt();
+            long first = in.getLong();
+            long last = in.getLong();
+            long deposits = in.getLong();
+            long withdrawals = in.getLong();
+            long[] offsets = new long[COLUMNS];
+            int[] lengths = new int[COLUMNS];
+            int[] rawLengths = new int[COLUMNS];
+            for (int c = 0; c < COLUMNS; c++) {
+                offsets[c] = in.getLong();
+                lengths[c] = in.getInt();
+                rawLengths[c] = in.getInt();
+            }
+            blocks[b] = new Block(rows, first, last, deposits, withdrawals, offsets, lengths, rawLengths);
+        }
+        return blocks;
+    }
+
+    private static long nanos(LocalDateTime timestamp) {
+        return Math.addExact(Math.multiplyExact(timestamp.toEpochSecond(ZoneOffset.UTC), 1_000_000_000L), timestamp.getNano());
+    }
+
+    private static LocalDateTime timestamp(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not every platform can open a directory; the rename is then as durable as the OS makes it
+        }
+    }
+
+    /**
+     * What a written segment holds, for its catalog row.
+     */
+    public record Summary(LocalDateTime firstTimestamp, LocalDateTime lastTimestamp, PeriodTotals totals) {
+    }
+
+    private record Block(int rows, long first, long last, long deposits, long withdrawals,
+                         long[] offsets, int[] lengths, int[] rawLengths) {
+    }
+
+    private static final class Writer {
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        void unsigned(long value) {
+            while ((value & ~0x7FL) != 0) {
+                put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        void signed(long value) {
+            unsigned((value << 1) ^ (value >> 63));
+        }
+
+        void unsigned8(int value) {
+            put((byte) value);
+        }
+
+        void uuid(UUID id) {
+            for (long half : new long[]{id.getMostSignificantBits(), id.getLeastSignificantBits()}) {
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    put((byte) (half >>> shift));
+                }
+            }
+        }
+
+        // Length + 1, so that 0 stands for null
+        void string(String value) {
+            if (value == null) {
+                unsigned(0);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            unsigned(utf8.length + 1L);
+            write(utf8, utf8.length);
+        }
+
+        void write(byte[] source, int length) {
+            ensure(length);
+            System.arraycopy(source, 0, bytes, size, length);
+            size += length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long unsigned() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        long signed() {
+            long raw = unsigned();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        int unsigned8() {
+            return bytes[position++] & 0xFF;
+        }
+
+        UUID uuid() {
+            return new UUID(half(), half());
+        }
+
+        String string() {
+            int length = (int) unsigned() - 1;
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private long half() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[position++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.finance.io.perf;
+
+import com.example.finance.io.model.Money;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.service.LedgerWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-request stream reduction {@code getBalance} used to run over an account's whole history,
+ * next to the fixed-point sum that batch posting uses now. The materialized balance skips both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BalanceReductionBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private List<Transaction> transactions;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        transactions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            transactions.add(Transaction.builder()
+                    .type(random.nextInt(4) == 0 ? TransactionType.WITHDRAW : TransactionType.DEPOSIT)
+                    .amountUSD(BigDecimal.valueOf(random.nextInt(1_000_000), 2))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    public BigDecimal streamReduce() {
+        return transactions.stream().map(tx -> {
+            BigDecimal usdAmount = tx.getAmountUSD();
+            return tx.getType() == TransactionType.DEPOSIT ? usdAmount : usdAmount.negate();
+        }).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    @Benchmark
+    public long fixedPointSum() {
+        long sum = 0;
+        for (Transaction tx : transactions) {
+            sum = Money.add(sum, LedgerWriter.signedUsdMinor(tx));
+        }
+        return sum;
+    }
+}
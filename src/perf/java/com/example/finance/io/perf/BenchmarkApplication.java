@@ -0,0 +1,67 @@
+package com.example.finance.io.perf;
+
+import com.example.finance.io.Application;
+import com.example.finance.io.util.LimitedDataSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.net.http.HttpClient;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+/**
+ * The application booted in this JVM on a random port, with its own in-memory database and quiet logging.
+ */
+final class BenchmarkApplication implements AutoCloseable {
+    private final ConfigurableApplicationContext context;
+    private final String baseUrl;
+
+    private BenchmarkApplication(ConfigurableApplicationContext context) {
+        this.context = context;
+        this.baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1";
+    }
+
+    /**
+     * @param database  name of the in-memory H2 database, so consecutive runs do not share data
+     * @param overrides {@code --key=value} arguments; they win over application.yml, later ones over earlier ones
+     */
+    static BenchmarkApplication start(String database, String... overrides) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1",
+                "--spring.jpa.show-sql=false",
+                "--spring.h2.console.enabled=false",
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(overrides));
+        return new BenchmarkApplication(new SpringApplicationBuilder(Application.class).run(args.toArray(String[]::new)));
+    }
+
+    static HttpClient httpClient() {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    // The limiter may be wrapped by other DataSource decorators, so it is unwrapped rather than cast
+    LimitedDataSource.Stats dbStats() {
+        DataSource dataSource = context.getBean(DataSource.class);
+        try {
+            return dataSource.isWrapperFor(LimitedDataSource.class) ? dataSource.unwrap(LimitedDataSource.class).stats() : null;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.finance.io.perf;
+
+import com.example.finance.io.model.Money;
+import com.example.finance.io.model.RateTable;
+import com.example.finance.io.service.CurrencyConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CurrencyConverter#toUsd} and the fixed-point {@link RateTable#toUsdMinor} that postings use, against the
+ * plain BigDecimal conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CurrencyConversionBenchmark {
+
+    @Param({"EUR", "RUB"})
+    public String currency;
+
+    @Param({"1234.56"})
+    public String amount;
+
+    private CurrencyConverter converter;
+    private RateTable rates;
+    private BigDecimal value;
+    private BigDecimal rate;
+    private long minor;
+
+    @Setup
+    public void setUp() {
+        converter = new CurrencyConverter();
+        rates = converter.currentRates();
+        value = new BigDecimal(amount);
+        rate = rates.rate(currency);
+        minor = Money.toMinor(value);
+    }
+
+    @Benchmark
+    public BigDecimal toUsd() {
+        return converter.toUsd(value, currency);
+    }
+
+    @Benchmark
+    public long toUsdMinor() {
+        return rates.toUsdMinor(minor, currency);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalMultiply() {
+        return value.multiply(rate).setScale(2, RoundingMode.HALF_DOWN);
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.finance.io.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load against the full REST stack of the application booted in this JVM.
+ * <p>
+ * Requests arrive at a fixed mean rate regardless of how fast responses come back, and latency is measured from
+ * the intended send time, so a stalled server shows up in the percentiles instead of slowing the load down
+ * (no coordinated omission). Accounts are picked with a Zipf distribution, so a few hot accounts take most writes.
+ * <p>
+ * Arguments ({@code key=value}):
+ * {@code rate} (500 req/s), {@code duration} (30s), {@code warmup} (5s), {@code accounts} (1000),
+ * {@code zipf} (exponent, 1.1), {@code mix} (create=2,get=50,add=25,addIdem=15,allTx=8),
+ * {@code replayRatio} (share of keyed adds that resend a recent key, 0.2), {@code arrivals} (poisson | uniform),
+ * {@code maxInFlight} (10000; arrivals beyond it are counted as dropped), {@code seed} (42),
+ * {@code out} (JSON report file). Options starting with {@code spring.}, {@code finance.} or {@code server.}
+ * are passed to the application, e.g. {@code finance.write.mode=group-commit}.
+ */
+public final class LoadGenerator {
+    private static final String ACCOUNT_PREFIX = "load-";
+    private static final String[] CURRENCIES = {"USD", "EUR", "BYN", "RUB"};
+
+    enum Endpoint {
+        CREATE("create"), GET("get"), ADD("add"), ADD_IDEMPOTENT("addIdem"), ALL_TX("allTx");
+
+        final String key;
+
+        Endpoint(String key) {
+            this.key = key;
+        }
+    }
+
+    private final HttpClient client = BenchmarkApplication.httpClient();
+    private final String base;
+    private final ZipfDistribution zipf;
+    private final Endpoint[] endpoints;
+    private final double[] mixCdf;
+    private final double replayRatio;
+    private final SplittableRandom random;
+    private final Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+    private final AtomicLong created = new AtomicLong();
+    // Recently used idempotency keys with the account they were sent for
+    private final AtomicReferenceArray<String[]> recentKeys = new AtomicReferenceArray<>(1024);
+    private final AtomicLong keyCount = new AtomicLong();
+    private volatile boolean measuring;
+
+    private LoadGenerator(String base, ZipfDistribution zipf, Map<Endpoint, Double> mix, double replayRatio, long seed) {
+        this.base = base;
+        this.zipf = zipf;
+        this.replayRatio = replayRatio;
+        this.random = new SplittableRandom(seed);
+        this.endpoints = mix.keySet().toArray(Endpoint[]::new);
+        this.mixCdf = new double[endpoints.length];
+        double total = mix.values().stream().mapToDouble(Double::doubleValue).sum();
+        double sum = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            sum += mix.get(endpoints[i]) / total;
+            mixCdf[i] = sum;
+        }
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        double rate = options.decimal("rate", 500);
+        Duration duration = options.duration("duration", "30s");
+        Duration warmup = options.duration("warmup", "5s");
+        int accounts = options.integer("accounts", 1000);
+        double skew = options.decimal("zipf", 1.1);
+        Map<Endpoint, Double> mix = parseMix(options.string("mix", "create=2,get=50,add=25,addIdem=15,allTx=8"));
+        boolean poisson = switch (options.string("arrivals", "poisson")) {
+            case "poisson" -> true;
+            case "uniform" -> false;
+            default -> throw new IllegalArgumentException("arrivals must be poisson or uniform");
+        };
+        int maxInFlight = options.integer("maxInFlight", 10_000);
+        String out = options.string("out", null);
+
+        List<String> appArgs = options.applicationArguments("spring.", "finance.", "server.");
+        try (BenchmarkApplication app = BenchmarkApplication.start("load", appArgs.toArray(String[]::new))) {
+            LoadGenerator generator = new LoadGenerator(app.baseUrl(), new ZipfDistribution(accounts, skew), mix,
+                    options.decimal("replayRatio", 0.2), options.integer("seed", 42));
+            System.out.printf("Creating %d accounts%n", accounts);
+            generator.createAccounts(accounts);
+            System.out.printf("Warming up at %.0f req/s for %s%n", rate, warmup);
+            generator.run(rate, warmup, poisson, maxInFlight, false);
+            System.out.printf("Measuring at %.0f req/s for %s%n", rate, duration);
+            long dropped = generator.run(rate, duration, poisson, maxInFlight, true);
+
+            Map<String, Object> report = generator.report(duration, dropped);
+            report.put("config", Map.of("rate", rate, "duration", duration.toString(), "accounts", accounts,
+                    "zipf", skew, "mix", options.string("mix", "default"), "arrivals", poisson ? "poisson" : "uniform",
+                    "app", appArgs, "cpus", Runtime.getRuntime().availableProcessors()));
+            if (out != null) {
+                File file = new File(out);
+                if (file.getParentFile() != null) {
+                    file.getParentFile().mkdirs();
+                }
+                new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+                System.out.printf("Report written to %s%n", file.getAbsolutePath());
+            }
+        }
+    }
+
+    private void createAccounts(int accounts) {
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            pending.add(client.sendAsync(post("/balances", "{\"name\":\"" + ACCOUNT_PREFIX + i + "\"}"),
+                    HttpResponse.BodyHandlers.discarding()));
+            if (pending.size() == 200) {
+                CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+                pending.clear();
+            }
+        }
+        CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * Issues arrivals for {@code duration} and waits for the stragglers. Returns the arrivals dropped at the in-flight cap.
+     */
+    private long run(double rate, Duration duration, boolean poisson, int maxInFlight, boolean record)
+            throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long dropped = 0;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        double next = start;
+        measuring = record;
+        while (next < end) {
+            long intended = (long) next;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.tryAcquire()) {
+                send(intended, record).whenComplete((r, e) -> inFlight.release());
+            } else {
+                dropped++;
+            }
+            next += poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+        }
+        measuring = false;
+        if (!inFlight.tryAcquire(maxInFlight, 60, TimeUnit.SECONDS)) {
+            System.out.printf("%d requests still in flight after 60s%n", maxInFlight - inFlight.availablePermits());
+        }
+        return dropped;
+    }
+
+    private CompletableFuture<?> send(long intended, boolean record) {
+        Endpoint endpoint = pick();
+        String account = ACCOUNT_PREFIX + zipf.sample(random);
+        HttpRequest request = switch (endpoint) {
+            case CREATE -> post("/balances", "{\"name\":\"" + ACCOUNT_PREFIX + "new-" + created.incrementAndGet() + "\"}");
+            case GET -> get("/balances/" + account);
+            case ADD -> post("/balances/" + account + "/transactions", deposit());
+            case ADD_IDEMPOTENT -> keyed();
+            case ALL_TX -> get("/balances/" + account + "/transactions");
+        };
+        Stats target = stats.get(endpoint);
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (!record) {
+                        return;
+                    }
+                    long latencyMicros = (System.nanoTime() - intended) / 1000;
+                    target.latency.recordValue(Math.max(1, latencyMicros));
+                    if (error != null || response.statusCode() >= 400) {
+                        target.errors.increment();
+                    }
+                });
+    }
+
+    private HttpRequest keyed() {
+        long count = keyCount.get();
+        if (count > 0 && random.nextDouble() < replayRatio) {
+            String[] previous = recentKeys.get((int) (random.nextLong(Math.min(count, recentKeys.length()))));
+            if (previous != null) {
+                return keyedPost(previous[0], previous[1]);
+            }
+        }
+        String key = UUID.randomUUID().toString();
+        String account = ACCOUNT_PREFIX + zipf.sample(random);
+        recentKeys.set((int) (keyCount.getAndIncrement() % recentKeys.length()), new String[]{key, account});
+        return keyedPost(key, account);
+    }
+
+    private HttpRequest keyedPost(String key, String account) {
+        return HttpRequest.newBuilder(URI.create(base + "/balances/" + account + "/transactions"))
+                .header("Content-Type", "application/json")
+                .header("Idempotency-Key", key)
+                .POST(HttpRequest.BodyPublishers.ofString(deposit()))
+                .build();
+    }
+
+    private Endpoint pick() {
+        double u = random.nextDouble();
+        for (int i = 0; i < mixCdf.length; i++) {
+            if (u < mixCdf[i]) {
+                return endpoints[i];
+            }
+        }
+        return endpoints[endpoints.length - 1];
+    }
+
+    private String deposit() {
+        return "{\"type\":\"DEPOSIT\",\"amount\":" + (1 + random.nextInt(10_000)) / 100.0
+                + ",\"currency\":\"" + CURRENCIES[random.nextInt(CURRENCIES.length)] + "\"}";
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    private HttpRequest post(String path, String json) {
+        return HttpRequest.newBuilder(URI.create(base + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private Map<String, Object> report(Duration duration, long dropped) {
+        double seconds = duration.toNanos() / 1e9;
+        Histogram total = new Histogram(3);
+        long totalErrors = 0;
+        Map<String, Object> byEndpoint = new LinkedHashMap<>();
+        System.out.printf("%n%-9s %9s %9s %8s %10s %10s %10s %10s%n",
+                "endpoint", "count", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Endpoint endpoint : endpoints) {
+            Stats s = stats.get(endpoint);
+            Histogram h = s.latency.getIntervalHistogram();
+            total.add(h);
+            totalErrors += s.errors.sum();
+            byEndpoint.put(endpoint.key, print(endpoint.key, h, s.errors.sum(), seconds));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("endpoints", byEndpoint);
+        report.put("total", print("total", total, totalErrors, seconds));
+        report.put("dropped", dropped);
+        if (dropped > 0) {
+            System.out.printf("%d arrivals dropped at the in-flight cap%n", dropped);
+        }
+        return report;
+    }
+
+    private static Map<String, Object> print(String name, Histogram h, long errors, double seconds) {
+        double throughput = h.getTotalCount() / seconds;
+        System.out.printf("%-9s %9d %9.1f %8d %10.2f %10.2f %10.2f %10.2f%n", name, h.getTotalCount(), throughput, errors,
+                ms(h.getValueAtPercentile(50)), ms(h.getValueAtPercentile(99)), ms(h.getValueAtPercentile(99.9)),
+                ms(h.getMaxValue()));
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("count", h.getTotalCount());
+        row.put("throughput", throughput);
+        row.put("errors", errors);
+        row.put("p50Ms", ms(h.getValueAtPercentile(50)));
+        row.put("p99Ms", ms(h.getValueAtPercentile(99)));
+        row.put("p999Ms", ms(h.getValueAtPercentile(99.9)));
+        row.put("maxMs", ms(h.getMaxValue()));
+        return row;
+    }
+
+    private static double ms(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static Map<Endpoint, Double> parseMix(String mix) {
+        Map<Endpoint, Double> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.split("=");
+            Endpoint endpoint = null;
+            for (Endpoint candidate : Endpoint.values()) {
+                if (candidate.key.equals(kv[0].trim())) {
+                    endpoint = candidate;
+                }
+            }
+            if (endpoint == null || kv.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry " + part + ", expected one of create, get, add, addIdem, allTx");
+            }
+            double weight = Double.parseDouble(kv[1]);
+            if (weight > 0) {
+                weights.put(endpoint, weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix must give at least one endpoint a positive weight");
+        }
+        return weights;
+    }
+
+    private static final class Stats {
+        // Microseconds, auto-resizing; the recorder is safe to write from many completion threads
+        final Recorder latency = new Recorder(3);
+        final LongAdder errors = new LongAdder();
+    }
+}
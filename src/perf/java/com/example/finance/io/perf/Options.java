@@ -0,0 +1,51 @@
+package com.example.finance.io.perf;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code key=value} command-line arguments of the perf tools; durations are written like {@code 20s} or {@code 1m}.
+ */
+final class Options {
+    private final Map<String, String> values = new HashMap<>();
+
+    Options(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 1) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            values.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+    }
+
+    String string(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    int integer(String key, int defaultValue) {
+        return values.containsKey(key) ? Integer.parseInt(values.get(key)) : defaultValue;
+    }
+
+    double decimal(String key, double defaultValue) {
+        return values.containsKey(key) ? Double.parseDouble(values.get(key)) : defaultValue;
+    }
+
+    Duration duration(String key, String defaultValue) {
+        return Duration.parse("PT" + values.getOrDefault(key, defaultValue));
+    }
+
+    /**
+     * Options under the given prefixes as {@code --key=value} arguments for the application, e.g. {@code finance.write.mode}.
+     */
+    List<String> applicationArguments(String... prefixes) {
+        return values.entrySet().stream()
+                .filter(e -> Arrays.stream(prefixes).anyMatch(e.getKey()::startsWith))
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .sorted()
+                .toList();
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.finance.io.perf;
+
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.BalanceResponse;
+import com.example.finance.io.model.dto.TransactionView;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response bodies as the MVC message converter writes them, with an ObjectMapper configured like Spring Boot's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private TransactionView transaction;
+    private BalanceResponse balance;
+    private BalanceResponse balanceWithBreakdown;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        Account account = Account.builder().id(42L).name("alice").balance(new BigDecimal("1520.75")).revision(17).build();
+        transaction = TransactionView.of(Transaction.builder()
+                .id(UUID.fromString("1f0c3f5e-8a4b-4c7e-9d2a-5b6c7d8e9f01"))
+                .account(account)
+                .type(TransactionType.DEPOSIT)
+                .amount(new BigDecimal("100.00"))
+                .amountUSD(new BigDecimal("110.00"))
+                .currency("EUR")
+                .rateVersion(3L)
+                .timestamp(LocalDateTime.of(2025, 6, 1, 12, 30, 15, 123_456_000))
+                .idempotencyKey("order-7781")
+                .build());
+        balance = new BalanceResponse("alice", new BigDecimal("1520.75"));
+        balanceWithBreakdown = new BalanceResponse("alice", new BigDecimal("1382.50"), "EUR",
+                Map.of("EUR", new BigDecimal("900.00"), "USD", new BigDecimal("530.75")));
+    }
+
+    @Benchmark
+    public byte[] transaction() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public byte[] balanceResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(balance);
+    }
+
+    @Benchmark
+    public byte[] balanceResponseWithBreakdown() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(balanceWithBreakdown);
+    }
+}
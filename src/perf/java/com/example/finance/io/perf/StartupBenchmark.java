@@ -0,0 +1,126 @@
+package com.example.finance.io.perf;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Starts the application in a fresh JVM per run and measures the time until it answers HTTP, for each of the
+ * modes {@code jar} (plain {@code java -jar}), {@code aot} (the extracted jar with the AOT-generated context) and
+ * {@code cds} (AOT plus the class-data-sharing archive of {@code gradle cdsArchive}).
+ * <p>
+ * Arguments ({@code key=value}): {@code jar} and {@code cdsDir} (set by the Gradle task), {@code runs} (5),
+ * {@code modes} (jar,aot,cds), {@code timeout} (120s); {@code finance.*} and {@code spring.*} options are passed
+ * to the application.
+ */
+public final class StartupBenchmark {
+    private static final Pattern STARTED = Pattern.compile("Started \\S+ in ([0-9.]+) seconds");
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        Path jar = Path.of(options.string("jar", "build/libs/finance_io-0.0.1-SNAPSHOT.jar")).toAbsolutePath();
+        Path cdsDir = Path.of(options.string("cdsDir", "build/cds")).toAbsolutePath();
+        int runs = options.integer("runs", 5);
+        Duration timeout = options.duration("timeout", "120s");
+        List<String> appArgs = options.applicationArguments("finance.", "spring.");
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : options.string("modes", "jar,aot,cds").split(",")) {
+            long[] ready = new long[runs];
+            double[] reported = new double[runs];
+            for (int i = 0; i < runs; i++) {
+                Run run = start(mode, jar, cdsDir, appArgs, timeout);
+                ready[i] = run.readyMillis();
+                reported[i] = run.reportedSeconds();
+                System.out.printf("[%s] run %d: ready in %d ms, Spring reports %.3f s%n", mode, i + 1, ready[i], reported[i]);
+            }
+            Arrays.sort(ready);
+            Arrays.sort(reported);
+            results.add(new Result(mode, ready[runs / 2], ready[0], reported[runs / 2]));
+        }
+
+        System.out.printf("%nruns=%d cpus=%d%n", runs, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-5s %16s %14s %18s%n", "mode", "median ready ms", "best ready ms", "median started s");
+        for (Result r : results) {
+            System.out.printf("%-5s %16d %14d %18.3f%n", r.mode(), r.medianReady(), r.bestReady(), r.medianReported());
+        }
+    }
+
+    private static Run start(String mode, Path jar, Path cdsDir, List<String> appArgs, Duration timeout) throws Exception {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String extracted = "application/" + jar.getFileName();
+        List<String> command = new ArrayList<>(switch (mode) {
+            case "jar" -> List.of(java, "-jar", jar.toString());
+            case "aot" -> List.of(java, "-Dspring.aot.enabled=true", "-jar", extracted);
+            case "cds" -> List.of(java, "-XX:SharedArchiveFile=application.jsa", "-Dspring.aot.enabled=true", "-jar", extracted);
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        });
+        int port = freePort();
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+        Path log = Files.createTempFile("startup-" + mode, ".log");
+        // The archive only applies to the class path it was recorded with, which is relative to cdsDir
+        Process process = new ProcessBuilder(command)
+                .directory(cdsDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        long start = System.nanoTime();
+        try {
+            awaitReady(process, port, timeout);
+            long readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            Matcher started = STARTED.matcher(Files.readString(log));
+            return new Run(readyMillis, started.find() ? Double.parseDouble(started.group(1)) : Double.NaN);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            Files.deleteIfExists(log);
+        }
+    }
+
+    private static void awaitReady(Process process, int port, Duration timeout) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+        HttpRequest health = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health")).GET().build();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue() + " before it was ready");
+            }
+            try {
+                if (client.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(20);
+        }
+        throw new IllegalStateException("Application not ready within " + timeout);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private record Run(long readyMillis, double reportedSeconds) {
+    }
+
+    private record Result(String mode, long medianReady, long bestReady, double medianReported) {
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.finance.io.perf;
+
+import com.example.finance.io.util.LimitedDataSource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the same closed-loop HTTP load against the application served by platform threads and by
+ * virtual threads, one after the other in this JVM, and prints both results side by side.
+ * <p>
+ * Arguments ({@code key=value}): {@code concurrency} (1000), {@code duration} (20s), {@code warmup} (5s),
+ * {@code accounts} (100), {@code writeRatio} (0.5), {@code modes} (platform,virtual).
+ * Run with {@code -Djdk.tracePinnedThreads=short} to have carrier pinning reported on stdout.
+ */
+public final class ThreadModeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options(args);
+        int concurrency = options.integer("concurrency", 1000);
+        Duration duration = options.duration("duration", "20s");
+        Duration warmup = options.duration("warmup", "5s");
+        int accounts = options.integer("accounts", 100);
+        double writeRatio = options.decimal("writeRatio", 0.5);
+
+        List<Result> results = new ArrayList<>();
+        for (String mode : options.string("modes", "platform,virtual").split(",")) {
+            results.add(run(mode, concurrency, warmup, duration, accounts, writeRatio));
+        }
+
+        System.out.printf("%nconcurrency=%d duration=%s accounts=%d writeRatio=%.2f cpus=%d%n",
+                concurrency, duration, accounts, writeRatio, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-9s %10s %8s %9s %9s %9s %9s %10s %12s %11s%n",
+                "mode", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "db acq", "db wait avg", "db timeout");
+        for (Result r : results) {
+            LimitedDataSource.Stats db = r.db();
+            System.out.printf("%-9s %10.0f %8d %9.2f %9.2f %9.2f %9.2f %10s %12s %11s%n",
+                    r.mode(), r.throughput(), r.errors(), ms(r.percentile(0.50)), ms(r.percentile(0.99)),
+                    ms(r.percentile(0.999)), ms(r.percentile(1.0)),
+                    db == null ? "-" : db.acquired(),
+                    db == null || db.acquired() == 0 ? "-" : String.format("%.3f ms", ms(db.totalWaitNanos() / db.acquired())),
+                    db == null ? "-" : db.timeouts());
+        }
+    }
+
+    private static Result run(String mode, int concurrency, Duration warmup, Duration duration,
+                              int accounts, double writeRatio) throws Exception {
+        boolean virtual = switch (mode) {
+            case "platform" -> false;
+            case "virtual" -> true;
+            default -> throw new IllegalArgumentException("Unknown mode " + mode);
+        };
+        try (BenchmarkApplication app = BenchmarkApplication.start("bench-" + mode,
+                "--spring.threads.virtual.enabled=" + virtual)) {
+            String base = app.baseUrl();
+            HttpClient client = BenchmarkApplication.httpClient();
+            for (int i = 0; i < accounts; i++) {
+                send(client, post(base + "/balances", "{\"name\":\"bench-" + i + "\"}"));
+            }
+            System.out.printf("[%s] warming up for %s%n", mode, warmup);
+            drive(client, base, concurrency, warmup, accounts, writeRatio);
+            LimitedDataSource.Stats before = app.dbStats();
+            System.out.printf("[%s] measuring %d clients for %s%n", mode, concurrency, duration);
+            Load load = drive(client, base, concurrency, duration, accounts, writeRatio);
+            LimitedDataSource.Stats after = app.dbStats();
+            LimitedDataSource.Stats db = before == null ? null : new LimitedDataSource.Stats(after.limit(), after.inUse(),
+                    after.waiting(), after.acquired() - before.acquired(), after.timeouts() - before.timeouts(),
+                    after.totalWaitNanos() - before.totalWaitNanos(), after.maxWaitNanos());
+            return new Result(mode, load.latencies(), load.errors(), load.latencies().length / (duration.toNanos() / 1e9), db);
+        }
+    }
+
+    private static Load drive(HttpClient client, String base, int concurrency, Duration duration,
+                              int accounts, double writeRatio) throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        long[][] perClient = new long[concurrency][];
+        LongAdder errors = new LongAdder();
+        try (var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                int index = c;
+                clients.submit(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        String account = base + "/balances/bench-" + random.nextInt(accounts);
+                        HttpRequest request = random.nextDouble() < writeRatio
+                                ? post(account + "/transactions", "{\"type\":\"DEPOSIT\",\"amount\":1.25,\"currency\":\"EUR\"}")
+                                : HttpRequest.newBuilder(URI.create(account)).GET().build();
+                        long start = System.nanoTime();
+                        if (!send(client, request)) {
+                            errors.increment();
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - start;
+                    }
+                    perClient[index] = Arrays.copyOf(samples, count);
+                });
+            }
+        }
+        long[] all = Arrays.stream(perClient).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Load(all, errors.sum());
+    }
+
+    private static boolean send(HttpClient client, HttpRequest request) {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static HttpRequest post(String uri, String json) {
+        return HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static double ms(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private record Load(long[] latencies, long errors) {
+    }
+
+    private record Result(String mode, long[] latencies, long errors, double throughput, LimitedDataSource.Stats db) {
+        long percentile(double p) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            return latencies[(int) Math.min(latencies.length - 1, Math.ceil(p * latencies.length) - 1)];
+        }
+    }
+}
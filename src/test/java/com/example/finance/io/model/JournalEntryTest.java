@@ -0,0 +1,71 @@
+package com.example.finance.io.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalEntryTest {
+    private static final LocalDateTime AT = LocalDateTime.of(2025, 5, 1, 10, 0, 0, 123_456_000);
+
+    @Test
+    void roundTripsAmountsOfAnyLength() {
+        // The unscaled value takes more than 255 bytes, beyond what a length byte can describe
+        BigDecimal huge = new BigDecimal(BigInteger.TEN.pow(700).add(BigInteger.ONE), 2);
+        for (BigDecimal amount : new BigDecimal[]{new BigDecimal("0.01"), new BigDecimal("12.345"), huge}) {
+            JournalEntry entry = entry(amount, "key-1");
+
+            assertEquals(entry, JournalEntry.decode(entry.encode()));
+        }
+        assertNull(JournalEntry.decode(entry(BigDecimal.ONE, null).encode()).idempotencyKey());
+    }
+
+    @Test
+    void readsEntriesOfTheFirstFormat() throws Exception {
+        JournalEntry entry = entry(new BigDecimal("12.34"), "key-1");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(1);
+            out.writeLong(entry.id().getMostSignificantBits());
+            out.writeLong(entry.id().getLeastSignificantBits());
+            out.writeUTF(entry.account());
+            out.writeByte(entry.type().ordinal());
+            byte[] unscaled = entry.amount().unscaledValue().toByteArray();
+            out.writeInt(entry.amount().scale());
+            out.writeByte(unscaled.length);
+            out.write(unscaled);
+            out.writeUTF(entry.currency());
+            out.writeLong(Money.toMinor(entry.amountUSD()));
+            out.writeLong(entry.rateVersion());
+            out.writeLong(AT.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(AT.getNano());
+            out.writeBoolean(true);
+            out.writeUTF(entry.idempotencyKey());
+        }
+
+        assertEquals(entry, JournalEntry.decode(bytes.toByteArray()));
+    }
+
+    @Test
+    void rejectsTruncatedAndUnknownEntries() {
+        byte[] encoded = entry(new BigDecimal("12.34"), "key-1").encode();
+        byte[] unknown = encoded.clone();
+        unknown[0] = 9;
+
+        assertThrows(RuntimeException.class, () -> JournalEntry.decode(Arrays.copyOf(encoded, 40)));
+        assertThrows(IllegalStateException.class, () -> JournalEntry.decode(unknown));
+    }
+
+    private static JournalEntry entry(BigDecimal amount, String key) {
+        return new JournalEntry(UUID.randomUUID(), "alice", TransactionType.WITHDRAW, amount, "EUR",
+                new BigDecimal("13.58"), 3, AT, key);
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.finance.io.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+
+    @Test
+    void minorUnitsRoundTrip() {
+        assertEquals(1234, Money.toMinor(new BigDecimal("12.34")));
+        assertEquals(1200, Money.toMinor(new BigDecimal("12")));
+        assertEquals(new BigDecimal("-0.05"), Money.toBigDecimal(-5));
+    }
+
+    @Test
+    void overflowThrowsInsteadOfWrapping() {
+        assertThrows(ArithmeticException.class, () -> Money.add(Long.MAX_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.subtract(Long.MIN_VALUE, 1));
+        assertThrows(ArithmeticException.class, () -> Money.negate(Long.MIN_VALUE));
+        assertThrows(ArithmeticException.class, () -> Money.toMinor(new BigDecimal("0.001")));
+        assertThrows(ArithmeticException.class, () -> Money.toMinor(new BigDecimal("1E+17")));
+        assertThrows(ArithmeticException.class, () -> Money.convert(Long.MAX_VALUE, 110_000_000L));
+        assertThrows(ArithmeticException.class, () -> Money.toRateUnits(new BigDecimal("0.123456789")));
+    }
+
+    @Test
+    void fixedPointConversionMatchesBigDecimalPath() {
+        Random random = new Random(42);
+        String[] rates = {"1.1", "0.012", "0.31", "1", "3.14159265", "0.00000001", "98765.4321"};
+        for (String rate : rates) {
+            RateTable table = new RateTable(2, RateTable.BUILTIN.effectiveFrom(), Map.of("XXX", new BigDecimal(rate)));
+            long[] amounts = new long[1000];
+            for (int i = 0; i < amounts.length; i++) {
+                // Mostly small amounts, some up to where the 64-bit product overflows into the BigDecimal path
+                amounts[i] = i % 10 == 0 ? random.nextLong(Long.MAX_VALUE / 1_000_000) : random.nextLong(10_000_000);
+            }
+            for (long minor : amounts) {
+                BigDecimal amount = Money.toBigDecimal(minor);
+                BigDecimal expected = amount.multiply(new BigDecimal(rate)).setScale(2, RoundingMode.HALF_DOWN);
+                assertEquals(expected, Money.toBigDecimal(table.toUsdMinor(minor, "XXX")), amount + " at " + rate);
+            }
+        }
+    }
+
+    @Test
+    void fixedPointConversionRoundsHalfDown() {
+        // 5 minor units * 1.1 = 5.5, an exact half, stays at 5; 15 * 1.1 = 16.5 stays at 16; 7 * 0.31 = 2.17 is 2
+        assertEquals(5, Money.convert(5, 110_000_000L));
+        assertEquals(16, Money.convert(15, 110_000_000L));
+        assertEquals(2, Money.convert(7, 31_000_000L));
+        assertEquals(-5, Money.convert(-5, 110_000_000L));
+        assertEquals(-6, Money.convert(-5, 111_000_000L));
+    }
+
+    @Test
+    void rateTableConvertsHalfDownAtAnyRatePrecision() {
+        RateTable table = new RateTable(2, RateTable.BUILTIN.effectiveFrom(), Map.of(
+                "EUR", new BigDecimal("1.1"),
+                "XAU", new BigDecimal("2345.123456789")));
+        BigDecimal huge = new BigDecimal("123456789012345678.25");
+
+        assertEquals(new BigDecimal("11.00"), table.toUsd(BigDecimal.TEN, "EUR"));
+        // 0.05 * 1.1 = 0.055 is an exact half and rounds down
+        assertEquals(new BigDecimal("0.05"), table.toUsd(new BigDecimal("0.05"), "EUR"));
+        assertEquals(huge.multiply(new BigDecimal("1.1")).setScale(2, RoundingMode.HALF_DOWN), table.toUsd(huge, "EUR"));
+        assertEquals(new BigDecimal("2345.12"), table.toUsd(BigDecimal.ONE, "XAU"));
+        // Too precise for rate units, so the same value comes from the BigDecimal path
+        assertEquals(234512, table.toUsdMinor(100, "XAU"));
+        assertEquals(1100, table.toUsdMinor(1000, "EUR"));
+        assertEquals(new BigDecimal("10.00"), table.fromUsd(new BigDecimal("11.00"), "EUR"));
+        assertThrows(IllegalArgumentException.class, () -> table.toUsd(BigDecimal.ONE, "USD"));
+    }
+}
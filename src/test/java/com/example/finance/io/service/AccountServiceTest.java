@@ -2,17 +2,39 @@ package com.example.finance.io.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.example.finance.io.config.AccountDirectoryProperties;
+import com.example.finance.io.config.ArchiveProperties;
+import com.example.finance.io.config.BalanceCacheProperties;
+import com.example.finance.io.config.BalanceProperties;
+import com.example.finance.io.config.IdempotencyProperties;
+import com.example.finance.io.exception.ConflictException;
 import com.example.finance.io.model.Account;
+import com.example.finance.io.model.AccountCurrencyBalance;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.Money;
 import com.example.finance.io.model.Transaction;
 import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.BalanceResponse;
+import com.example.finance.io.model.dto.CurrencyAmount;
+import com.example.finance.io.model.dto.NamedBalance;
+import com.example.finance.io.model.dto.TransactionCursor;
+import com.example.finance.io.model.dto.TransactionPage;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.repository.AccountCurrencyBalanceRepository;
 import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.ArchivedSegmentRepository;
+import com.example.finance.io.repository.DailyRollupRepository;
 import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -24,6 +46,12 @@ class AccountServiceTest {
     private AccountRepository accountRepository;
     @Mock
     private TransactionRepository transactionRepository;
+    @Mock
+    private AccountCurrencyBalanceRepository currencyBalanceRepository;
+    @Mock
+    private DailyRollupRepository rollupRepository;
+    @Mock
+    private ArchivedSegmentRepository archivedSegmentRepository;
 
     private final CurrencyConverter currencyConverter = new CurrencyConverter();
 
@@ -35,12 +63,47 @@ class AccountServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
 
-        accountBalanceService = new AccountBalanceService(accountRepository, transactionRepository, currencyConverter);
+        accountBalanceService = service(true);
+    }
+
+    private AccountBalanceService service(boolean overdraftAllowed) {
+        LedgerWriter ledger = new LedgerWriter(accountRepository, transactionRepository, currencyBalanceRepository, rollupRepository,
+                currencyConverter, new BalanceProperties(overdraftAllowed), event -> {});
+        return new AccountBalanceService(accountRepository, transactionRepository, ledger, keyStore(), balanceCache(),
+                currencyBalanceRepository, currencyConverter,
+                new AccountDirectory(accountRepository, new AccountDirectoryProperties(100)), coldStore());
+    }
+
+    private ColdTransactionStore coldStore() {
+        return new ColdTransactionStore(archivedSegmentRepository, transactionRepository, accountRepository,
+                new ArchiveProperties(false, Path.of("build/archive"), Duration.ofDays(90), Duration.ofHours(1), 1000, 100),
+                new SimpleMeterRegistry());
+    }
+
+    // Newest first, one minute apart
+    private List<TransactionView> history(int count) {
+        LocalDateTime newest = LocalDateTime.of(2025, 6, 1, 12, 0);
+        List<TransactionView> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new TransactionView(UUID.randomUUID(), BALANCE_NAME, TransactionType.DEPOSIT, BigDecimal.ONE,
+                    new BigDecimal("1.00"), "USD", 1L, newest.minusMinutes(i), null, null));
+        }
+        return rows;
+    }
+
+    private IdempotencyKeyStore keyStore() {
+        return new IdempotencyKeyStore(transactionRepository,
+                new IdempotencyProperties(Duration.ofMinutes(1), 100, 1000, 0.01), new SimpleMeterRegistry());
+    }
+
+    private BalanceCache balanceCache() {
+        return new BalanceCache(accountRepository,
+                new BalanceCacheProperties(100, Duration.ofMinutes(1), Duration.ofMinutes(5)));
     }
 
     @Test
     void createBalance_success() {
-        when(accountRepository.findByName(BALANCE_NAME)).thenReturn(Optional.empty());
+        when(accountRepository.existsByName(BALANCE_NAME)).thenReturn(false);
         Account newAccount = Account.builder().id(1L).name(BALANCE_NAME).build();
         when(accountRepository.save(any())).thenReturn(newAccount);
 
@@ -52,12 +115,50 @@ class AccountServiceTest {
 
     @Test
     void createBalance_alreadyExists() {
-        when(accountRepository.findByName(BALANCE_NAME))
-                .thenReturn(Optional.of(Account.builder().name(BALANCE_NAME).build()));
+        when(accountRepository.existsByName(BALANCE_NAME)).thenReturn(true);
 
         assertThrows(IllegalArgumentException.class, () -> accountBalanceService.createBalance(BALANCE_NAME));
     }
 
+    @Test
+    void getBalances_loadsAllMissesInOneQuery() {
+        when(accountRepository.findSnapshotByName("a")).thenReturn(Optional.of(new BalanceSnapshot(BigDecimal.ONE, 1)));
+        accountBalanceService.getBalance("a");
+        when(accountRepository.findSnapshotsByNames(Set.of("b", "c", "missing"))).thenReturn(List.of(
+                new NamedBalance("c", BigDecimal.valueOf(3), 1),
+                new NamedBalance("b", BigDecimal.TEN, 1)));
+
+        List<BalanceResponse> balances = accountBalanceService.getBalances(List.of("c", "a", "missing", "b", "c"));
+
+        assertEquals(List.of(new BalanceResponse("c", BigDecimal.valueOf(3)), new BalanceResponse("a", BigDecimal.ONE),
+                new BalanceResponse("b", BigDecimal.TEN)), balances);
+        verify(accountRepository, times(1)).findSnapshotsByNames(any());
+        // Now cached
+        accountBalanceService.getBalances(List.of("a", "b", "c"));
+        verify(accountRepository, times(1)).findSnapshotsByNames(any());
+    }
+
+    @Test
+    void getVersion_followsRevisionAndRatesForConvertedBalance() {
+        when(accountRepository.findSnapshotByName(BALANCE_NAME)).thenReturn(Optional.of(new BalanceSnapshot(BigDecimal.ONE, 7)));
+
+        assertEquals("7", accountBalanceService.getVersion(BALANCE_NAME, null));
+        assertEquals("7-" + currencyConverter.currentRates().version(), accountBalanceService.getVersion(BALANCE_NAME, "EUR"));
+        assertThrows(NoSuchElementException.class, () -> accountBalanceService.getVersion("bad", null));
+    }
+
+    @Test
+    void getHistoryVersion_isEmptyForUnknownAccountWhoseHistoryIsEmpty() {
+        when(accountRepository.findSnapshotByName(BALANCE_NAME)).thenReturn(Optional.of(new BalanceSnapshot(BigDecimal.ONE, 7)));
+        when(accountRepository.findSnapshotByName("bad")).thenReturn(Optional.empty());
+        when(accountRepository.findIdByName("bad")).thenReturn(Optional.empty());
+
+        assertEquals(Optional.of("7"), accountBalanceService.getHistoryVersion(BALANCE_NAME));
+        assertEquals(Optional.empty(), accountBalanceService.getHistoryVersion("bad"));
+        assertEquals(List.of(), accountBalanceService.getTransactions("bad"));
+        assertEquals(List.of(), accountBalanceService.getTransactionPage("bad", 10, null).getItems());
+    }
+
     @Test
     void getBalance_throwsIfNotFound() {
         when(accountRepository.findByName("bad")).thenReturn(Optional.empty());
@@ -69,6 +170,7 @@ class AccountServiceTest {
         String idemKey = "idem-123";
         Transaction existing = Transaction.builder()
                 .id(UUID.randomUUID())
+                .account(Account.builder().id(1L).name(BALANCE_NAME).build())
                 .idempotencyKey(idemKey)
                 .amount(BigDecimal.TEN)
                 .type(TransactionType.DEPOSIT)
@@ -85,12 +187,36 @@ class AccountServiceTest {
         verify(transactionRepository, never()).save(any());
     }
 
+    @Test
+    void addTransaction_rejectsKeyOfTransferOrDifferentRequest() {
+        Account account = Account.builder().id(1L).name(BALANCE_NAME).build();
+        Transaction deposit = Transaction.builder().id(UUID.randomUUID()).account(account).type(TransactionType.DEPOSIT)
+                .amount(new BigDecimal("10.00")).currency("USD").idempotencyKey("k-1").build();
+        Transaction transferDebit = deposit.toBuilder().id(UUID.randomUUID()).type(TransactionType.WITHDRAW)
+                .idempotencyKey("k-2").transferId(UUID.randomUUID()).build();
+        when(transactionRepository.findByIdempotencyKey("k-1")).thenReturn(Optional.of(deposit));
+        when(transactionRepository.findByIdempotencyKey("k-2")).thenReturn(Optional.of(transferDebit));
+
+        assertEquals(deposit, accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.DEPOSIT, BigDecimal.TEN, "USD", "k-1"));
+        assertThrows(ConflictException.class,
+                () -> accountBalanceService.addTransaction("other", TransactionType.DEPOSIT, BigDecimal.TEN, "USD", "k-1"));
+        assertThrows(ConflictException.class,
+                () -> accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.WITHDRAW, BigDecimal.TEN, "USD", "k-1"));
+        assertThrows(ConflictException.class,
+                () -> accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.DEPOSIT, BigDecimal.ONE, "USD", "k-1"));
+        assertThrows(ConflictException.class,
+                () -> accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.WITHDRAW, BigDecimal.TEN, "USD", "k-2"));
+        assertThrows(ConflictException.class,
+                () -> accountBalanceService.transfer(BALANCE_NAME, "payee", BigDecimal.TEN, "USD", null, "k-1"));
+        verify(transactionRepository, never()).save(any());
+    }
+
     @Test
     void addTransaction_createsNewIfNoIdempotency() {
         String idemKey = "idem-456";
         Account account = Account.builder().id(1L).name(BALANCE_NAME).build();
         when(transactionRepository.findByIdempotencyKey(idemKey)).thenReturn(Optional.empty());
-        when(accountRepository.findByName(BALANCE_NAME)).thenReturn(Optional.of(account));
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(account.getId()));
 
         Transaction toSave = Transaction.builder()
                 .account(account)
@@ -110,6 +236,41 @@ class AccountServiceTest {
         assertEquals("EUR", created.getCurrency());
         assertEquals(BigDecimal.valueOf(5), created.getAmount());
         assertNotNull(created.getId());
+        // Stored with microsecond precision, so the returned timestamp must not carry more
+        assertEquals(0, created.getTimestamp().getNano() % 1000);
+    }
+
+    @Test
+    void addTransaction_rejectsAmountsBeyondMinorUnitRange() {
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(1L));
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        assertNotNull(accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.DEPOSIT, Money.MAX_AMOUNT, "USD", null));
+        for (String amount : new String[]{"92233720368547758.08", "1e30", "0.001"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.DEPOSIT, new BigDecimal(amount), "USD", null));
+            assertEquals(LedgerWriter.AMOUNT_OUT_OF_RANGE, e.getMessage());
+        }
+        verify(transactionRepository, times(1)).save(any());
+    }
+
+    @Test
+    void addTransaction_resolvesAccountIdOnceAndPostsById() {
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(6L));
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.DEPOSIT, BigDecimal.ONE, "USD", null);
+        Transaction second = accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.DEPOSIT, BigDecimal.ONE, "USD", null);
+
+        assertEquals(6L, second.getAccount().getId());
+        assertEquals(BALANCE_NAME, second.getAccount().getName());
+        verify(accountRepository, times(1)).findIdByName(BALANCE_NAME);
+        verify(accountRepository, never()).findByName(any());
+        verify(accountRepository, times(2)).applyDelta(eq(6L), any());
+        // The mocked update finds no rollup row, so each post falls back to inserting one
+        verify(rollupRepository, times(2)).applyDelta(eq(6L), eq(second.getTimestamp().toLocalDate()),
+                eq(new BigDecimal("1.00")), eq(new BigDecimal("0.00")), eq(1L));
+        verify(rollupRepository, times(2)).save(any());
     }
 
     @Test
@@ -117,7 +278,7 @@ class AccountServiceTest {
         String balanceName = "multi-currency";
         Account account = Account.builder().id(2L).name(balanceName).build();
 
-        when(accountRepository.findByName(balanceName)).thenReturn(Optional.of(account));
+        when(accountRepository.findIdByName(balanceName)).thenReturn(Optional.of(account.getId()));
         when(transactionRepository.findByIdempotencyKey(anyString())).thenReturn(Optional.empty());
         when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
 
@@ -142,16 +303,131 @@ class AccountServiceTest {
         assertEquals(BigDecimal.valueOf(20), withdrawEur.getAmount());
         assertEquals("EUR", withdrawEur.getCurrency());
 
-        // Mock transaction list for balance calculation
-        List<Transaction> txs = List.of(depositUsd, depositEur, withdrawEur);
-        when(transactionRepository.findByAccount_NameOrderByTimestampDesc(balanceName)).thenReturn(txs);
+        // Materialized balance receives one signed USD delta per transaction
+        ArgumentCaptor<BigDecimal> deltas = ArgumentCaptor.forClass(BigDecimal.class);
+        verify(accountRepository, times(3)).applyDelta(eq(2L), deltas.capture());
+        BigDecimal applied = deltas.getAllValues().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
 
         BigDecimal expected = depositUsd.getAmountUSD()
                 .add(depositEur.getAmountUSD())
                 .subtract(withdrawEur.getAmountUSD())
                 .setScale(2, RoundingMode.HALF_DOWN);
+        assertEquals(expected, applied.setScale(2, RoundingMode.HALF_DOWN));
+
+        when(accountRepository.findSnapshotByName(balanceName)).thenReturn(Optional.of(new BalanceSnapshot(applied, 3)));
+        assertEquals(expected, accountBalanceService.getBalance(balanceName).setScale(2, RoundingMode.HALF_DOWN));
+        verify(transactionRepository, never()).findHistory(any(), any());
+    }
+
+    @Test
+    void getTransactionPage_readsOneExtraRowToDecideOnNextCursor() {
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(1L));
+        List<TransactionView> rows = history(3);
+        when(transactionRepository.findFirstPage(1L, BALANCE_NAME, Limit.of(3))).thenReturn(rows);
+        TransactionView last = rows.get(1);
+        when(transactionRepository.findPageAfter(1L, BALANCE_NAME, last.timestamp(), last.id(), Limit.of(3)))
+                .thenReturn(rows.subList(2, 3));
+
+        TransactionPage first = accountBalanceService.getTransactionPage(BALANCE_NAME, 2, null);
+        TransactionPage second = accountBalanceService.getTransactionPage(BALANCE_NAME, 2, first.getNextCursor());
+
+        assertEquals(rows.subList(0, 2), first.getItems());
+        assertEquals(TransactionCursor.of(last), TransactionCursor.decode(first.getNextCursor()));
+        assertEquals(rows.subList(2, 3), second.getItems());
+        assertNull(second.getNextCursor());
+        assertThrows(IllegalArgumentException.class, () -> accountBalanceService.getTransactionPage(BALANCE_NAME, 2, "not-a-cursor"));
+        assertThrows(IllegalArgumentException.class,
+                () -> accountBalanceService.getTransactionPage(BALANCE_NAME, AccountBalanceService.MAX_PAGE_SIZE + 1, null));
+    }
+
+    @Test
+    void streamTransactions_pagesUntilShortPage() {
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(1L));
+        List<TransactionView> rows = history(501);
+        when(transactionRepository.findFirstPage(eq(1L), eq(BALANCE_NAME), any())).thenReturn(rows.subList(0, 500));
+        TransactionView last = rows.get(499);
+        when(transactionRepository.findPageAfter(eq(1L), eq(BALANCE_NAME), eq(last.timestamp()), eq(last.id()), any()))
+                .thenReturn(rows.subList(500, 501));
+
+        List<TransactionView> streamed = new ArrayList<>();
+        accountBalanceService.streamTransactions(BALANCE_NAME, streamed::add);
+
+        assertEquals(rows, streamed);
+        verify(transactionRepository, times(1)).findPageAfter(any(), any(), any(), any(), any());
+        verify(transactionRepository, never()).findHistory(any(), any());
+    }
+
+    @Test
+    void transfer_postsBothLegsInAccountIdOrderWithEqualUsdValue() {
+        when(accountRepository.findIdByName("payer")).thenReturn(Optional.of(8L));
+        when(accountRepository.findIdByName("payee")).thenReturn(Optional.of(7L));
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        List<Transaction> legs = accountBalanceService.transfer("payer", "payee", new BigDecimal("50"), "EUR", "USD", "t-1");
+
+        Transaction debit = legs.get(0);
+        Transaction credit = legs.get(1);
+        assertEquals(TransactionType.WITHDRAW, debit.getType());
+        assertEquals("t-1", debit.getIdempotencyKey());
+        assertNull(credit.getIdempotencyKey());
+        assertEquals(debit.getTransferId(), credit.getTransferId());
+        assertEquals(new BigDecimal("55.00"), credit.getAmount());
+        assertEquals(debit.getAmountUSD(), credit.getAmountUSD());
+        // The payee has the lower id, so its row is locked first
+        InOrder order = inOrder(accountRepository);
+        order.verify(accountRepository).applyDelta(7L, new BigDecimal("55.00"));
+        order.verify(accountRepository).applyDelta(8L, new BigDecimal("-55.00"));
+    }
 
-        BigDecimal result = accountBalanceService.getBalance(balanceName);
-        assertEquals(expected, result.setScale(2, RoundingMode.HALF_DOWN));
+    @Test
+    void transfer_rejectsSameAccount() {
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(1L));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> accountBalanceService.transfer(BALANCE_NAME, BALANCE_NAME, BigDecimal.ONE, "USD", null, null));
+        verify(accountRepository, never()).applyDelta(any(), any());
+    }
+
+    @Test
+    void addTransaction_withdrawRejectedWhenOverdraftDisallowed() {
+        Account account = Account.builder().id(3L).name(BALANCE_NAME).build();
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(account.getId()));
+        when(accountRepository.applyDeltaIfCovered(eq(3L), any())).thenReturn(0);
+
+        AccountBalanceService guarded = service(false);
+
+        assertThrows(IllegalArgumentException.class, () -> guarded.addTransaction(
+                BALANCE_NAME, TransactionType.WITHDRAW, BigDecimal.TEN, "USD", null));
+        verify(accountRepository).applyDeltaIfCovered(3L, BigDecimal.valueOf(-10).setScale(2));
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void addTransaction_updatesNativeCurrencySum() {
+        Account account = Account.builder().id(4L).name(BALANCE_NAME).build();
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(account.getId()));
+        when(currencyBalanceRepository.applyDelta(4L, "EUR", BigDecimal.valueOf(-5))).thenReturn(0);
+        when(transactionRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        accountBalanceService.addTransaction(BALANCE_NAME, TransactionType.WITHDRAW, BigDecimal.valueOf(5), "EUR", null);
+
+        verify(currencyBalanceRepository).save(new AccountCurrencyBalance(null, 4L, "EUR", BigDecimal.valueOf(-5)));
+    }
+
+    @Test
+    void getBalanceInCurrency_convertsNativeSumsAtCurrentRates() {
+        when(accountRepository.findSnapshotByName(BALANCE_NAME))
+                .thenReturn(Optional.of(new BalanceSnapshot(new BigDecimal("165.00"), 2)));
+        when(accountRepository.findIdByName(BALANCE_NAME)).thenReturn(Optional.of(5L));
+        when(currencyBalanceRepository.findAmountsByAccountId(5L)).thenReturn(List.of(
+                new CurrencyAmount("USD", new BigDecimal("110.00")),
+                new CurrencyAmount("EUR", new BigDecimal("50.00"))));
+
+        BalanceResponse response = accountBalanceService.getBalance(BALANCE_NAME, "EUR", true);
+
+        // 110 USD + 50 EUR * 1.1 = 165 USD = 150 EUR
+        assertEquals(new BigDecimal("150.00"), response.getBalance());
+        assertEquals("EUR", response.getCurrency());
+        assertEquals(Map.of("USD", new BigDecimal("110.00"), "EUR", new BigDecimal("50.00")), response.getBreakdown());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.BalanceCacheProperties;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BalanceCacheTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    private BalanceCache cache;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cache = new BalanceCache(accountRepository, new BalanceCacheProperties(100, Duration.ofMinutes(1), Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void committedChangeIsWrittenThroughInsteadOfEvicted() {
+        when(accountRepository.findSnapshotByName("alice")).thenReturn(Optional.of(snapshot("10.00", 1)));
+        assertEquals(snapshot("10.00", 1), cache.get("alice").orElseThrow());
+
+        cache.onBalanceChanged(new BalanceChangedEvent(1L, "alice", snapshot("15.00", 2), PeriodTotals.EMPTY, null));
+
+        assertEquals(snapshot("15.00", 2), cache.get("alice").orElseThrow());
+        verify(accountRepository, times(1)).findSnapshotByName("alice");
+    }
+
+    @Test
+    void olderRevisionNeverReplacesNewerOne() {
+        cache.put("alice", snapshot("20.00", 5));
+
+        // e.g. a load that read the row before the latest commit
+        cache.put("alice", snapshot("10.00", 4));
+
+        assertEquals(snapshot("20.00", 5), cache.get("alice").orElseThrow());
+        verifyNoInteractions(accountRepository);
+    }
+
+    @Test
+    void unknownAccountIsNotCached() {
+        assertTrue(cache.get("nobody").isEmpty());
+        assertTrue(cache.get("nobody").isEmpty());
+
+        verify(accountRepository, times(2)).findSnapshotByName("nobody");
+        assertEquals(0, cache.nativeCache().estimatedSize());
+    }
+
+    private static BalanceSnapshot snapshot(String balance, long revision) {
+        return new BalanceSnapshot(new BigDecimal(balance), revision);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.SubscriptionProperties;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.dto.BalanceUpdate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BalanceSubscriptionsTest {
+    private static final String NAME = "alice";
+
+    @Mock
+    private BalanceCache balanceCache;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+    private BalanceSubscriptions subscriptions;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        subscriptions = new BalanceSubscriptions(balanceCache,
+                new SubscriptionProperties(2, 10, Duration.ofMinutes(1), Duration.ofSeconds(30)), objectMapper, registry) {
+            @Override
+            SseEmitter newEmitter() {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        emitters.forEach(emitter -> emitter.permits.release(1000));
+        subscriptions.destroy();
+    }
+
+    @Test
+    void fullQueueCoalescesIntoNewestUpdate() throws Exception {
+        when(balanceCache.get(NAME)).thenReturn(Optional.of(new BalanceSnapshot(BigDecimal.ONE, 1)));
+        subscriptions.subscribe(NAME);
+        RecordingEmitter emitter = emitters.get(0);
+        // The sender is stuck on the first event, so the queue of two fills up behind it
+        assertTrue(emitter.entered.tryAcquire(5, TimeUnit.SECONDS));
+
+        for (long revision = 2; revision <= 6; revision++) {
+            subscriptions.onBalanceChanged(changed(revision));
+        }
+        emitter.permits.release(1000);
+
+        assertEquals(1, emitter.next().revision());
+        assertEquals(2, emitter.next().revision());
+        BalanceUpdate merged = emitter.next();
+        assertEquals(6, merged.revision());
+        assertEquals(BigDecimal.valueOf(6), merged.balance());
+        assertEquals(4, merged.transactions());
+        assertEquals(new BigDecimal("4.00"), merged.deposits());
+        assertNull(emitter.sent.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(3.0, registry.get("finance.subscriptions.coalesced").counter().count());
+    }
+
+    @Test
+    void olderRevisionIsDroppedOrMergedIntoNewerOne() throws Exception {
+        when(balanceCache.get(NAME)).thenReturn(Optional.of(new BalanceSnapshot(BigDecimal.ONE, 5)));
+        subscriptions.subscribe(NAME);
+        RecordingEmitter emitter = emitters.get(0);
+        emitter.permits.release();
+        assertEquals(5, emitter.next().revision());
+
+        // Older than the one already sent
+        subscriptions.onBalanceChanged(changed(4));
+        subscriptions.onBalanceChanged(changed(7));
+        emitter.permits.release();
+        assertEquals(7, emitter.next().revision());
+        subscriptions.onBalanceChanged(changed(6));
+        assertEquals(2.0, registry.get("finance.subscriptions.dropped").counter().count());
+
+        // Older than one still queued: its totals are kept, its balance is not
+        emitter.entered.drainPermits();
+        subscriptions.onBalanceChanged(changed(8));
+        assertTrue(emitter.entered.tryAcquire(5, TimeUnit.SECONDS));
+        subscriptions.onBalanceChanged(changed(10));
+        subscriptions.onBalanceChanged(changed(9));
+        emitter.permits.release(1000);
+
+        assertEquals(8, emitter.next().revision());
+        BalanceUpdate merged = emitter.next();
+        assertEquals(10, merged.revision());
+        assertEquals(BigDecimal.valueOf(10), merged.balance());
+        assertEquals(2, merged.transactions());
+        assertNull(emitter.sent.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void closedStreamIsRemovedAndCountedOnce() throws Exception {
+        when(balanceCache.get(NAME)).thenReturn(Optional.of(new BalanceSnapshot(BigDecimal.ONE, 1)));
+        subscriptions.subscribe(NAME);
+        subscriptions.subscribe(NAME);
+        RecordingEmitter first = emitters.get(0);
+        RecordingEmitter second = emitters.get(1);
+        first.permits.release(1000);
+        second.permits.release(1000);
+        first.next();
+        second.next();
+        assertEquals(2, subscriptions.subscriberCount());
+
+        first.completion.run();
+        first.completion.run();
+        subscriptions.onBalanceChanged(changed(2));
+
+        assertEquals(1, subscriptions.subscriberCount());
+        assertEquals(2, second.next().revision());
+        assertNull(first.sent.poll(100, TimeUnit.MILLISECONDS));
+
+        // A client that went away is noticed on the next send
+        second.broken = true;
+        subscriptions.onBalanceChanged(changed(3));
+        for (int i = 0; i < 100 && subscriptions.subscriberCount() > 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, subscriptions.subscriberCount());
+        assertEquals(0.0, registry.get("finance.subscriptions.active").gauge().value());
+    }
+
+    private static BalanceChangedEvent changed(long revision) {
+        return new BalanceChangedEvent(1L, NAME, new BalanceSnapshot(BigDecimal.valueOf(revision), revision),
+                new PeriodTotals(new BigDecimal("1.00"), new BigDecimal("0.00"), 1), null);
+    }
+
+    /**
+     * Sends only once the test hands out a permit, and keeps the balance events instead of writing them.
+     */
+    private final class RecordingEmitter extends SseEmitter {
+        final Semaphore permits = new Semaphore(0);
+        final Semaphore entered = new Semaphore(0);
+        final BlockingQueue<BalanceUpdate> sent = new LinkedBlockingQueue<>();
+        volatile boolean broken;
+        volatile Runnable completion;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            entered.release();
+            permits.acquireUninterruptibly();
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (MediaType.APPLICATION_JSON.equals(part.getMediaType())) {
+                    sent.add(objectMapper.readValue((String) part.getData(), BalanceUpdate.class));
+                }
+            }
+        }
+
+        @Override
+        public synchronized void onCompletion(Runnable callback) {
+            completion = callback;
+        }
+
+        BalanceUpdate next() throws InterruptedException {
+            BalanceUpdate update = sent.poll(5, TimeUnit.SECONDS);
+            assertNotNull(update, "no event sent");
+            return update;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.model.RateTable;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CurrencyConverterTest {
+
+    private final CurrencyConverter converter = new CurrencyConverter();
+
+    @Test
+    void builtinRatesMatchLegacyConversion() {
+        assertEquals(new BigDecimal("11.00"), converter.toUsd(BigDecimal.TEN, "EUR"));
+        assertEquals(new BigDecimal("0.12"), converter.toUsd(BigDecimal.TEN, "RUB"));
+        assertThrows(IllegalArgumentException.class, () -> converter.toUsd(BigDecimal.TEN, "XXX"));
+    }
+
+    @Test
+    void ratesAtPicksTableInForceAtTimestamp() {
+        LocalDateTime jan = LocalDateTime.of(2025, 1, 1, 0, 0);
+        LocalDateTime feb = LocalDateTime.of(2025, 2, 1, 0, 0);
+        RateTable v2 = new RateTable(2, jan, Map.of("EUR", new BigDecimal("1.05")));
+        RateTable v3 = new RateTable(3, feb, Map.of("EUR", new BigDecimal("1.20")));
+        converter.install(List.of(v3, RateTable.BUILTIN, v2));
+
+        assertEquals(1, converter.ratesAt(jan.minusSeconds(1)).version());
+        assertEquals(2, converter.ratesAt(jan).version());
+        assertEquals(2, converter.ratesAt(feb.minusNanos(1)).version());
+        assertEquals(3, converter.ratesAt(feb.plusDays(10)).version());
+        assertEquals(v2, converter.ratesByVersion(2));
+        assertThrows(NoSuchElementException.class, () -> converter.ratesByVersion(9));
+    }
+
+    @Test
+    void installRejectsDuplicateVersions() {
+        RateTable copy = new RateTable(1, LocalDateTime.now(), Map.of("USD", BigDecimal.ONE));
+        assertThrows(IllegalArgumentException.class, () -> converter.install(List.of(RateTable.BUILTIN, copy)));
+        assertEquals(RateTable.BUILTIN, converter.currentRates());
+    }
+
+    @Test
+    void currentRatesFollowsInstallsAndEffectiveTimes() throws InterruptedException {
+        assertEquals(1, converter.currentRates().version());
+        RateTable past = new RateTable(2, LocalDateTime.now().minusDays(1), Map.of("EUR", new BigDecimal("1.05")));
+        RateTable soon = new RateTable(3, LocalDateTime.now().plusNanos(50_000_000), Map.of("EUR", new BigDecimal("1.20")));
+        converter.install(List.of(RateTable.BUILTIN, past, soon));
+
+        assertEquals(2, converter.currentRates().version());
+        Thread.sleep(60);
+        assertEquals(3, converter.currentRates().version());
+        assertEquals(new BigDecimal("12.00"), converter.toUsd(BigDecimal.TEN, "EUR"));
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.IdempotencyProperties;
+import com.example.finance.io.config.WriteProperties;
+import com.example.finance.io.exception.ServiceUnavailableException;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.BatchItemStatus;
+import com.example.finance.io.model.dto.BatchTransactionItem;
+import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class GroupCommitTransactionWriterTest {
+
+    @Mock
+    private TransactionBatchService batchService;
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private IdempotencyKeyStore keyStore;
+    private GroupCommitTransactionWriter writer;
+    private final ExecutorService callers = Executors.newFixedThreadPool(5);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        keyStore = new IdempotencyKeyStore(transactionRepository,
+                new IdempotencyProperties(Duration.ofMinutes(1), 100, 1000, 0.01), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        if (writer != null) {
+            writer.destroy();
+        }
+    }
+
+    @Test
+    void lanePostsPendingWritesInOneBatch() throws Exception {
+        when(batchService.post(any())).thenAnswer(inv -> created(inv.getArgument(0)));
+        // A long delay, so the lane flushes only once the batch is full
+        writer = writer(5, Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+        List<Future<Transaction>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(callers.submit(() -> writer.write("alice", TransactionType.DEPOSIT, BigDecimal.ONE, "USD", null)));
+        }
+
+        for (Future<Transaction> result : results) {
+            assertEquals(TransactionType.DEPOSIT, result.get(10, TimeUnit.SECONDS).getType());
+        }
+        verify(batchService, times(1)).post(argThat(items -> items.size() == 5));
+    }
+
+    @Test
+    void failedBatchIsRetriedOneByOneSoOnlyTheBadItemFails() throws Exception {
+        when(batchService.post(any())).thenAnswer(inv -> {
+            List<BatchTransactionItem> items = inv.getArgument(0);
+            if (items.size() > 1 || "raced".equals(items.get(0).getIdempotencyKey())) {
+                throw new DataIntegrityViolationException("duplicate key");
+            }
+            return created(items);
+        });
+        writer = writer(3, Duration.ofSeconds(10), Duration.ofSeconds(30));
+
+        Future<Transaction> first = callers.submit(() -> writer.write("alice", TransactionType.DEPOSIT, BigDecimal.ONE, "USD", null));
+        Future<Transaction> raced = callers.submit(() -> writer.write("alice", TransactionType.DEPOSIT, BigDecimal.ONE, "USD", "raced"));
+        Future<Transaction> third = callers.submit(() -> writer.write("alice", TransactionType.DEPOSIT, BigDecimal.TEN, "USD", null));
+
+        assertNotNull(first.get(10, TimeUnit.SECONDS));
+        assertEquals(BigDecimal.TEN, third.get(10, TimeUnit.SECONDS).getAmount());
+        Exception failed = assertThrows(Exception.class, () -> raced.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(DataIntegrityViolationException.class, failed.getCause());
+        verify(batchService, times(1)).post(argThat(items -> items.size() == 3));
+        verify(batchService, times(3)).post(argThat(items -> items.size() == 1));
+    }
+
+    @Test
+    void stalledLaneReleasesCallerWithServiceUnavailable() throws Exception {
+        CountDownLatch stalled = new CountDownLatch(1);
+        when(batchService.post(any())).thenAnswer(inv -> {
+            stalled.await();
+            return created(inv.getArgument(0));
+        });
+        writer = writer(1, Duration.ZERO, Duration.ofMillis(200));
+
+        // The first write is taken by the lane and may still commit; the second never leaves the queue
+        Future<Transaction> taken = callers.submit(() -> writer.write("alice", TransactionType.DEPOSIT, BigDecimal.ONE, "USD", null));
+        Exception takenFailure = assertThrows(Exception.class, () -> taken.get(10, TimeUnit.SECONDS));
+        ServiceUnavailableException queued = assertThrows(ServiceUnavailableException.class,
+                () -> writer.write("alice", TransactionType.DEPOSIT, BigDecimal.TEN, "USD", null));
+
+        assertInstanceOf(ServiceUnavailableException.class, takenFailure.getCause());
+        assertTrue(takenFailure.getCause().getMessage().contains("may still commit"));
+        assertTrue(queued.getMessage().contains("not committed"));
+        stalled.countDown();
+        verify(batchService, timeout(5000).times(1)).post(any());
+    }
+
+    private GroupCommitTransactionWriter writer(int maxBatchSize, Duration maxDelay, Duration commitTimeout) {
+        return new GroupCommitTransactionWriter(batchService, keyStore,
+                new WriteProperties("group-commit", 1, maxBatchSize, maxDelay, 100, commitTimeout));
+    }
+
+    private static List<TransactionBatchService.Outcome> created(List<BatchTransactionItem> items) {
+        return items.stream()
+                .map(item -> new TransactionBatchService.Outcome(BatchItemStatus.CREATED, Transaction.builder()
+                        .id(UUID.randomUUID())
+                        .account(Account.builder().name(item.getAccount()).build())
+                        .type(item.getType())
+                        .amount(item.getAmount())
+                        .currency(item.getCurrency())
+                        .idempotencyKey(item.getIdempotencyKey())
+                        .build(), null))
+                .toList();
+    }
+}
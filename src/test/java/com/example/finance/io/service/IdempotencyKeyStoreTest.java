@@ -0,0 +1,134 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.IdempotencyProperties;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class IdempotencyKeyStoreTest {
+
+    @Mock
+    private TransactionRepository transactionRepository;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private IdempotencyKeyStore store;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        store = new IdempotencyKeyStore(transactionRepository,
+                new IdempotencyProperties(Duration.ofMinutes(1), 100, 1000, 0.01), registry);
+    }
+
+    @Test
+    void find_skipsDbForUnseenKeyOnceWarm() {
+        when(transactionRepository.findIdempotencyKeysAfter(any(), any())).thenReturn(List.of());
+        store.warmUp();
+
+        assertTrue(store.find("never-used").isEmpty());
+        verify(transactionRepository, never()).findByIdempotencyKey(any());
+        assertEquals(1, registry.counter("finance.idempotency.lookups.skipped").count());
+    }
+
+    @Test
+    void find_queriesDbForKeyLoadedDuringWarmUp() {
+        Transaction stored = tx("known");
+        when(transactionRepository.findIdempotencyKeysAfter(any(), any())).thenReturn(List.of("known"));
+        when(transactionRepository.findByIdempotencyKey("known")).thenReturn(Optional.of(stored));
+        store.warmUp();
+
+        assertEquals(Optional.of(stored), store.find("known"));
+    }
+
+    @Test
+    void execute_replaysRememberedKeyWithoutWriting() {
+        Transaction first = tx("k");
+        store.remember(first);
+
+        Transaction replay = store.execute("k", () -> fail("must not write twice"));
+
+        assertSame(first, replay);
+        assertEquals(1, registry.counter("finance.idempotency.replays", "source", "memory").count());
+    }
+
+    @Test
+    void execute_collapsesConcurrentRequestsWithSameKey() throws Exception {
+        Transaction created = tx("k");
+        AtomicInteger writes = new AtomicInteger();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<Transaction> first = pool.submit(() -> store.execute("k", () -> {
+                writes.incrementAndGet();
+                writing.countDown();
+                await(release);
+                return created;
+            }));
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            AtomicReference<Transaction> joined = new AtomicReference<>();
+            Thread second = new Thread(() -> joined.set(store.execute("k", () -> {
+                writes.incrementAndGet();
+                return tx("k");
+            })));
+            second.start();
+            while (second.getState() != Thread.State.WAITING) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+            second.join(5000);
+
+            assertSame(created, first.get(5, TimeUnit.SECONDS));
+            assertSame(created, joined.get());
+            assertEquals(1, writes.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void execute_replaysWinnerAfterUniqueKeyRace() {
+        Transaction winner = tx("k");
+        when(transactionRepository.findByIdempotencyKey("k")).thenReturn(Optional.of(winner));
+
+        Transaction result = store.execute("k", () -> {
+            throw new DataIntegrityViolationException("duplicate key");
+        });
+
+        assertSame(winner, result);
+        assertEquals(1, registry.counter("finance.idempotency.replays", "source", "conflict").count());
+    }
+
+    private static Transaction tx(String key) {
+        return Transaction.builder().id(UUID.randomUUID()).idempotencyKey(key).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
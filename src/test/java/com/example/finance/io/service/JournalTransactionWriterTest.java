@@ -0,0 +1,230 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.BalanceProperties;
+import com.example.finance.io.config.IdempotencyProperties;
+import com.example.finance.io.config.JournalProperties;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.JournalEntry;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.BatchItemStatus;
+import com.example.finance.io.model.dto.BatchTransactionItem;
+import com.example.finance.io.repository.AccountCurrencyBalanceRepository;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.DailyRollupRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import com.example.finance.io.util.SegmentedJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class JournalTransactionWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private JournalProjector projector;
+    @Mock
+    private LedgerWriter ledger;
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private BalanceCache balanceCache;
+    @Mock
+    private AccountDirectory directory;
+    @Mock
+    private AccountCurrencyBalanceRepository currencyBalanceRepository;
+    @Mock
+    private DailyRollupRepository rollupRepository;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private JournalTransactionWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(projector.projectedOffset()).thenReturn(0L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    void replayStoresRecordsThatCannotBeDecodedOrProjectedAsDeadLetters() {
+        JournalEntry first = entry("alice");
+        JournalEntry second = entry("alice");
+        JournalEntry poison = entry("poison");
+        SegmentedJournal journal = new SegmentedJournal(dir, 4096);
+        long firstEnd = journal.append(first.encode());
+        long garbageEnd = journal.append(new byte[]{9, 9, 9});
+        long secondEnd = journal.append(second.encode());
+        long end = journal.append(poison.encode());
+        journal.sync(end);
+        doThrow(new IllegalStateException("constraint violated"))
+                .when(projector).apply(argThat(entries -> entries.contains(poison)), anyLong());
+
+        writer = writer();
+        writer.start();
+
+        // An undecodable record rules out the batch, so the records are applied one by one straight away
+        verify(projector).apply(List.of(first), firstEnd);
+        verify(projector).setAside(eq(garbageEnd), eq(new byte[]{9, 9, 9}), anyString());
+        verify(projector).apply(List.of(second), secondEnd);
+        verify(projector).apply(List.of(poison), end);
+        verify(projector).setAside(eq(end), eq(poison.encode()), contains("constraint violated"));
+        verify(projector, never()).apply(eq(List.of()), anyLong());
+        assertEquals(2.0, registry.get("finance.journal.skipped").counter().count());
+        assertTrue(writer.isRunning());
+    }
+
+    @Test
+    void unprojectableEntryIsStillStoredAfterRestart() {
+        AtomicLong checkpoint = new AtomicLong();
+        Map<Long, byte[]> deadLetters = new ConcurrentHashMap<>();
+        when(projector.projectedOffset()).thenAnswer(inv -> checkpoint.get());
+        doAnswer(inv -> {
+            List<JournalEntry> entries = inv.getArgument(0);
+            if (entries.stream().anyMatch(e -> e.account().equals("poison"))) {
+                throw new IllegalStateException("constraint violated");
+            }
+            checkpoint.set(inv.getArgument(1));
+            return null;
+        }).when(projector).apply(any(), anyLong());
+        doAnswer(inv -> {
+            deadLetters.put(inv.getArgument(0), inv.getArgument(1));
+            checkpoint.set(inv.getArgument(0));
+            return null;
+        }).when(projector).setAside(anyLong(), any(), any());
+        JournalEntry good = entry("alice");
+        JournalEntry poison = entry("poison");
+        SegmentedJournal journal = new SegmentedJournal(dir, 4096);
+        journal.append(good.encode());
+        long end = journal.append(poison.encode());
+        journal.sync(end);
+
+        writer = writer();
+        writer.start();
+        writer.stop();
+        clearInvocations(projector);
+        writer = writer();
+        writer.start();
+
+        // The checkpoint only moved past the poison entry together with its dead letter
+        assertEquals(end, checkpoint.get());
+        assertArrayEquals(poison.encode(), deadLetters.get(end));
+        verify(projector, never()).apply(any(), anyLong());
+        verify(projector, never()).setAside(anyLong(), any(), any());
+    }
+
+    @Test
+    void unavailableDatabaseIsRetriedInsteadOfSettingEntriesAside() {
+        Transaction tx = entry("alice").toTransaction(Account.builder().id(1L).name("alice").build());
+        when(balanceCache.get("alice")).thenReturn(Optional.of(new BalanceSnapshot(BigDecimal.TEN, 1)));
+        when(directory.reference("alice")).thenReturn(Account.builder().id(1L).name("alice").build());
+        when(ledger.prepare(any(), any(), any(), any(), any())).thenReturn(tx);
+        doThrow(new CannotCreateTransactionException("connection refused"))
+                .doNothing()
+                .when(projector).apply(argThat(entries -> !entries.isEmpty()), anyLong());
+
+        writer = writer();
+        writer.start();
+        writer.write("alice", TransactionType.DEPOSIT, BigDecimal.ONE, "USD", null);
+
+        verify(projector, timeout(5000).times(2)).apply(eq(List.of(JournalEntry.of(tx))), anyLong());
+        verify(projector, never()).apply(eq(List.of()), anyLong());
+        assertEquals(0.0, registry.get("finance.journal.skipped").counter().count());
+    }
+
+    @Test
+    void directDebitsAndJournaledWithdrawalsShareOneBalanceWithOverdraftOff() {
+        LedgerWriter realLedger = new LedgerWriter(accountRepository, transactionRepository, currencyBalanceRepository,
+                rollupRepository, new CurrencyConverter(), new BalanceProperties(false), event -> {});
+        Account alice = Account.builder().id(1L).name("alice").balance(new BigDecimal("10.00")).build();
+        BalanceSnapshot stored = new BalanceSnapshot(new BigDecimal("10.00"), 1);
+        when(accountRepository.findSnapshotByName("alice")).thenReturn(Optional.of(stored));
+        when(accountRepository.findSnapshotById(1L)).thenReturn(Optional.of(stored));
+        when(accountRepository.findAllByNameForUpdate(any())).thenReturn(List.of(alice));
+        when(balanceCache.get("alice")).thenReturn(Optional.of(stored));
+        when(directory.reference("alice")).thenAnswer(inv -> Account.builder().id(1L).name("alice").build());
+        // The database is down for projection, so journaled withdrawals stay pending
+        doThrow(new CannotCreateTransactionException("connection refused")).when(projector).apply(any(), anyLong());
+        IdempotencyKeyStore keyStore = keyStore();
+        TransactionBatchService batches = new TransactionBatchService(accountRepository, realLedger, keyStore);
+        writer = new JournalTransactionWriter(projector, realLedger, accountRepository, balanceCache, keyStore,
+                directory, new JournalProperties(dir, DataSize.ofKilobytes(4), 10, Duration.ofMillis(10)), registry);
+        writer.start();
+        writer.write("alice", TransactionType.WITHDRAW, new BigDecimal("8"), "USD", null);
+
+        TransactionSynchronizationManager.initSynchronization();
+        // A transfer debit of 5 would be covered by the stored 10, but not after the journaled 8
+        Transaction debit = realLedger.prepare(alice, TransactionType.WITHDRAW, new BigDecimal("5"), "USD", null);
+        assertThrows(IllegalArgumentException.class, () -> realLedger.post(debit));
+        verify(accountRepository, never()).applyDeltaIfCovered(any(), any());
+        List<TransactionBatchService.Outcome> outcomes = batches.post(List.of(
+                new BatchTransactionItem("alice", TransactionType.WITHDRAW, new BigDecimal("3"), "USD", null),
+                new BatchTransactionItem("alice", TransactionType.WITHDRAW, new BigDecimal("2"), "USD", null)));
+        assertEquals(List.of(BatchItemStatus.REJECTED, BatchItemStatus.CREATED),
+                outcomes.stream().map(TransactionBatchService.Outcome::status).toList());
+        // The batch's 2 is claimed until its transaction completes, so the journal cannot spend it meanwhile
+        assertThrows(IllegalArgumentException.class,
+                () -> writer.write("alice", TransactionType.WITHDRAW, new BigDecimal("0.01"), "USD", null));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        writer.write("alice", TransactionType.WITHDRAW, new BigDecimal("2"), "USD", null);
+        assertThrows(IllegalArgumentException.class,
+                () -> writer.write("alice", TransactionType.WITHDRAW, new BigDecimal("0.01"), "USD", null));
+    }
+
+    private IdempotencyKeyStore keyStore() {
+        return new IdempotencyKeyStore(transactionRepository,
+                new IdempotencyProperties(Duration.ofMinutes(1), 100, 1000, 0.01), registry);
+    }
+
+    private JournalTransactionWriter writer() {
+        return new JournalTransactionWriter(projector, ledger, accountRepository, balanceCache, keyStore(), directory,
+                new JournalProperties(dir, DataSize.ofKilobytes(4), 10, Duration.ofMillis(10)), registry);
+    }
+
+    private static JournalEntry entry(String account) {
+        return new JournalEntry(UUID.randomUUID(), account, TransactionType.DEPOSIT, BigDecimal.ONE, "USD",
+                new BigDecimal("1.00"), 1, LocalDateTime.of(2025, 5, 1, 10, 0), null);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.AccountDirectoryProperties;
+import com.example.finance.io.config.ArchiveProperties;
+import com.example.finance.io.config.BalanceProperties;
+import com.example.finance.io.config.BulkProperties;
+import com.example.finance.io.config.IdempotencyProperties;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.ExportFormat;
+import com.example.finance.io.model.dto.ImportResult;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.repository.AccountCurrencyBalanceRepository;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.ArchivedSegmentRepository;
+import com.example.finance.io.repository.DailyRollupRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import com.example.finance.io.util.TransactionRecords;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * Imports against an in-memory stand-in for the account and transaction tables, which enforces the unique
+ * idempotency key the way the database does.
+ */
+class LedgerImporterTest {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 3, 1, 9, 30, 0, 123_456_000);
+
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private AccountCurrencyBalanceRepository currencyBalanceRepository;
+    @Mock
+    private DailyRollupRepository rollupRepository;
+    @Mock
+    private ArchivedSegmentRepository catalogRepository;
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final Map<UUID, Transaction> stored = new ConcurrentHashMap<>();
+    // Keys a concurrent, not yet committed transaction holds: the constraint sees them, reads do not
+    private final Set<String> uncommittedKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicLong ids = new AtomicLong();
+    private LedgerImportWriter writer;
+    private LedgerExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        stubTables();
+        AccountDirectory directory = new AccountDirectory(accountRepository, new AccountDirectoryProperties(100));
+        LedgerWriter ledger = new LedgerWriter(accountRepository, transactionRepository, currencyBalanceRepository,
+                rollupRepository, new CurrencyConverter(), new BalanceProperties(false), event -> {});
+        writer = new LedgerImportWriter(accountRepository, transactionRepository, ledger,
+                new IdempotencyKeyStore(transactionRepository,
+                        new IdempotencyProperties(Duration.ofMinutes(1), 100, 1000, 0.01), new SimpleMeterRegistry()),
+                directory);
+        exporter = new LedgerExporter(transactionRepository, accountRepository,
+                new ColdTransactionStore(catalogRepository, transactionRepository, accountRepository,
+                        new ArchiveProperties(false, Path.of("build/archive"), Duration.ofDays(90), Duration.ofHours(1), 1000, 100),
+                        new SimpleMeterRegistry()),
+                directory);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ExportFormat.class)
+    void exportedLedgerImportsIntoAnEmptyOneAndRerunSkipsEverything(ExportFormat format) throws Exception {
+        List<TransactionView> history = history(50);
+        when(transactionRepository.streamForExport(isNull(), isNull(), isNull())).thenReturn(history.stream());
+        ByteArrayOutputStream export = new ByteArrayOutputStream();
+        assertEquals(50, exporter.export(format, null, null, null, export));
+
+        ImportResult first = importer(2, 7).importFrom(format, new ByteArrayInputStream(export.toByteArray()));
+        ImportResult rerun = importer(2, 7).importFrom(format, new ByteArrayInputStream(export.toByteArray()));
+
+        assertEquals(List.of(50L, 50L, 0L, 0L), counts(first));
+        assertEquals(sorted(history), sorted(storedRows()));
+        assertEquals(List.of(50L, 0L, 50L, 0L), counts(rerun));
+        assertEquals(50, stored.size());
+    }
+
+    @Test
+    void invalidRowsAndReusedKeysAreRejectedOthersImported() throws Exception {
+        List<TransactionView> rows = new ArrayList<>(history(4));
+        TransactionView valid = rows.get(0);
+        // Same key as row 0, but another transaction
+        rows.add(new TransactionView(UUID.randomUUID(), "bob", TransactionType.DEPOSIT, BigDecimal.ONE,
+                new BigDecimal("1.00"), "USD", 1L, START, valid.idempotencyKey(), null));
+        String exported = new String(write(ExportFormat.CSV, rows), StandardCharsets.UTF_8);
+        // Inserted before the end line
+        String csv = exported.substring(0, exported.lastIndexOf("#end"))
+                + valid.id() + ",alice,DEPOSIT,-1.00,1.00,USD,1,2025-01-01T00:00,,\n"
+                + UUID.randomUUID() + ",alice,DEPOSIT,0.001,0.00,USD,1,2025-01-01T00:00,,\n"
+                + "#end\n";
+
+        ImportResult result = importer(1, 100).importFrom(ExportFormat.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of(7L, 4L, 0L, 3L), counts(result));
+        assertEquals(3, result.getErrors().size());
+        assertTrue(result.getErrors().contains("Record 6: Amount must be positive"), result.getErrors().toString());
+        assertTrue(result.getErrors().contains("Record 7: " + LedgerWriter.AMOUNT_OUT_OF_RANGE), result.getErrors().toString());
+        assertTrue(result.getErrors().contains("Transaction " + rows.get(4).id() + ": idempotency key is already used"),
+                result.getErrors().toString());
+        assertEquals(sorted(rows.subList(0, 4)), sorted(storedRows()));
+    }
+
+    @Test
+    void truncatedBinaryImportsRowsBeforeTheDamage() throws Exception {
+        List<TransactionView> rows = history(10);
+        byte[] binary = write(ExportFormat.BINARY, rows);
+
+        ImportResult result = importer(2, 3).importFrom(ExportFormat.BINARY,
+                new ByteArrayInputStream(Arrays.copyOf(binary, binary.length - 20)));
+
+        assertEquals(9, result.getImported());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.getErrors().get(0).endsWith("rest of the input skipped"), result.getErrors().get(0));
+        assertEquals(sorted(rows.subList(0, 9)), sorted(storedRows()));
+    }
+
+    @Test
+    void keyStoredConcurrentlyFailsOnlyItsRowNotTheChunk() {
+        List<TransactionView> rows = history(6);
+        String raced = rows.get(2).idempotencyKey();
+        uncommittedKeys.add(raced);
+        byte[] csv = write(ExportFormat.CSV, rows);
+
+        ImportResult result = importer(1, 6).importFrom(ExportFormat.CSV, new ByteArrayInputStream(csv));
+
+        assertEquals(List.of(6L, 5L, 0L, 1L), counts(result));
+        assertTrue(result.getErrors().get(0).startsWith("Transaction " + rows.get(2).id() + " failed"),
+                result.getErrors().toString());
+        assertFalse(stored.containsKey(rows.get(2).id()));
+        assertEquals(5, stored.size());
+    }
+
+    private LedgerImporter importer(int workers, int chunkSize) {
+        return new LedgerImporter(writer, new BulkProperties(workers, chunkSize, 100, Duration.ZERO));
+    }
+
+    private void stubTables() {
+        when(accountRepository.findAllByNameForUpdate(any())).thenAnswer(inv -> inv.<Collection<String>>getArgument(0)
+                .stream().map(accounts::get).filter(Objects::nonNull).toList());
+        when(accountRepository.save(any())).thenAnswer(inv -> {
+            Account account = inv.getArgument(0);
+            account.setId(ids.incrementAndGet());
+            accounts.put(account.getName(), account);
+            return account;
+        });
+        when(transactionRepository.findExistingIds(any())).thenAnswer(inv -> inv.<Collection<UUID>>getArgument(0)
+                .stream().filter(stored::containsKey).toList());
+        when(transactionRepository.findExistingKeys(any())).thenAnswer(inv -> {
+            Set<String> keys = storedKeys();
+            return inv.<Collection<String>>getArgument(0).stream().filter(keys::contains).toList();
+        });
+        when(transactionRepository.saveAll(any())).thenAnswer(inv -> {
+            List<Transaction> txs = inv.getArgument(0);
+            synchronized (stored) {
+                Set<String> keys = storedKeys();
+                keys.addAll(uncommittedKeys);
+                for (Transaction tx : txs) {
+                    if (tx.getIdempotencyKey() != null && !keys.add(tx.getIdempotencyKey())) {
+                        throw new DataIntegrityViolationException("Unique index violated: " + tx.getIdempotencyKey());
+                    }
+                }
+                txs.forEach(tx -> stored.put(tx.getId(), tx));
+            }
+            return txs;
+        });
+    }
+
+    private Set<String> storedKeys() {
+        Set<String> keys = ConcurrentHashMap.newKeySet();
+        stored.values().stream().map(Transaction::getIdempotencyKey).filter(Objects::nonNull).forEach(keys::add);
+        return keys;
+    }
+
+    private List<TransactionView> storedRows() {
+        return stored.values().stream()
+                .map(tx -> new TransactionView(tx.getId(), tx.getAccount().getName(), tx.getType(), tx.getAmount(),
+                        tx.getAmountUSD(), tx.getCurrency(), tx.getRateVersion(), tx.getTimestamp(),
+                        tx.getIdempotencyKey(), tx.getTransferId()))
+                .toList();
+    }
+
+    // read, imported, skipped, rejected
+    private static List<Long> counts(ImportResult result) {
+        return List.of(result.getRead(), result.getImported(), result.getSkipped(), result.getRejected());
+    }
+
+    private static List<TransactionView> sorted(List<TransactionView> rows) {
+        return rows.stream().sorted(Comparator.comparing(TransactionView::id)).toList();
+    }
+
+    private static byte[] write(ExportFormat format, List<TransactionView> rows) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TransactionRecords.RecordWriter writer = TransactionRecords.writer(format, out)) {
+            for (TransactionView row : rows) {
+                writer.write(row);
+            }
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<TransactionView> history(int count) {
+        String[] names = {"alice", "bob", "carol"};
+        List<TransactionView> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            boolean deposit = i % 3 != 2;
+            rows.add(new TransactionView(UUID.randomUUID(), names[i % names.length],
+                    deposit ? TransactionType.DEPOSIT : TransactionType.WITHDRAW,
+                    new BigDecimal("1.25").add(BigDecimal.valueOf(i)), new BigDecimal("1.40").add(BigDecimal.valueOf(i)),
+                    i % 2 == 0 ? "EUR" : "USD", 2L, START.plusMinutes(i), i % 2 == 0 ? "import-key-" + i : null,
+                    i % 5 == 0 ? UUID.randomUUID() : null));
+        }
+        return rows;
+    }
+}
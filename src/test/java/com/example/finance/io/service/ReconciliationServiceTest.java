@@ -0,0 +1,183 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.BalanceCacheProperties;
+import com.example.finance.io.config.ReconciliationProperties;
+import com.example.finance.io.exception.ConflictException;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.BalanceSnapshot;
+import com.example.finance.io.model.dto.AccountTotal;
+import com.example.finance.io.model.dto.Discrepancy;
+import com.example.finance.io.model.dto.ReconciliationReport;
+import com.example.finance.io.model.dto.ReconciliationRun;
+import com.example.finance.io.model.dto.StoredBalance;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.ArchivedSegmentRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReconciliationServiceTest {
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private ArchivedSegmentRepository archivedSegmentRepository;
+
+    private final List<Object> events = new ArrayList<>();
+    private BalanceCache balanceCache;
+    private ReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        balanceCache = new BalanceCache(accountRepository, new BalanceCacheProperties(100, Duration.ofMinutes(1), Duration.ofMinutes(5)));
+        AccountReconciler reconciler = new AccountReconciler(accountRepository, transactionRepository,
+                archivedSegmentRepository, events::add);
+        service = new ReconciliationService(accountRepository, transactionRepository, archivedSegmentRepository,
+                balanceCache, reconciler, new ReconciliationProperties(false, Duration.ofHours(1), false, 2, 2, 0, 10),
+                new SimpleMeterRegistry());
+        // Accounts 1..3 in partitions [1, 2] and [3]
+        when(accountRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(1L, 2L, 3L));
+        when(accountRepository.findBalancesBetween(1L, 2L)).thenReturn(List.of(
+                new StoredBalance(1L, "a", new BigDecimal("10.00"), 4),
+                new StoredBalance(2L, "b", new BigDecimal("5.00"), 2)));
+        when(accountRepository.findBalancesBetween(3L, 3L)).thenReturn(List.of(
+                new StoredBalance(3L, "c", BigDecimal.ZERO, 0)));
+        // a: 7 hot + 3 archived; b: 4 hot, off by one
+        when(transactionRepository.sumByAccountBetween(1L, 2L)).thenReturn(List.of(
+                new AccountTotal(1L, new BigDecimal("7.00")), new AccountTotal(2L, new BigDecimal("4.00"))));
+        when(archivedSegmentRepository.sumByAccountBetween(1L, 2L)).thenReturn(List.of(
+                new AccountTotal(1L, new BigDecimal("3.00"))));
+        when(transactionRepository.sumByAccountBetween(2L, 2L)).thenReturn(List.of(new AccountTotal(2L, new BigDecimal("4.00"))));
+        when(accountRepository.findByIdForUpdate(2L)).thenReturn(Optional.of(
+                Account.builder().id(2L).name("b").balance(new BigDecimal("5.00")).revision(2).build()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void reportsBalancesOffTheLedgerAfterRecheck() {
+        ReconciliationReport report = service.run(false);
+
+        assertEquals(3, report.getAccounts());
+        assertEquals(1, report.getLedgerDiscrepancies());
+        assertEquals(List.of(new Discrepancy("b", Discrepancy.Kind.LEDGER, new BigDecimal("4.00"), new BigDecimal("5.00"), false)),
+                report.getDiscrepancies());
+        verify(accountRepository, never()).applyDelta(anyLong(), any());
+        verify(accountRepository, never()).findByIdForUpdate(1L);
+    }
+
+    @Test
+    void repairsThroughApplyDeltaAndCache() {
+        // Same revision as stored, different amount
+        balanceCache.put("a", new BalanceSnapshot(new BigDecimal("9.00"), 4));
+        when(accountRepository.findSnapshotById(2L)).thenReturn(Optional.of(new BalanceSnapshot(new BigDecimal("4.00"), 3)));
+
+        ReconciliationReport report = service.run(true);
+
+        assertEquals(1, report.getLedgerDiscrepancies());
+        assertEquals(1, report.getCacheDiscrepancies());
+        assertEquals(2, report.getRepaired());
+        verify(accountRepository).applyDelta(2L, new BigDecimal("-1.00"));
+        assertEquals(1, events.size());
+        assertNull(balanceCache.nativeCache().getIfPresent("a"));
+    }
+
+    @Test
+    void staleCacheRevisionIsNotADiscrepancy() {
+        balanceCache.put("a", new BalanceSnapshot(new BigDecimal("9.00"), 3));
+
+        assertEquals(0, service.run(false).getCacheDiscrepancies());
+    }
+
+    @Test
+    void concurrentRunIsAConflict() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountRepository.findIdsAfter(eq(0L), any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await();
+            return List.of(1L, 2L, 3L);
+        });
+        CompletableFuture<ReconciliationReport> first = CompletableFuture.supplyAsync(() -> service.run(false));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(ConflictException.class, () -> service.run(false));
+
+        release.countDown();
+        assertEquals(3, first.get(5, TimeUnit.SECONDS).getAccounts());
+    }
+
+    @Test
+    void startedRunGoesOnInTheBackgroundAndIsLookedUpById() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(accountRepository.findIdsAfter(eq(0L), any())).thenAnswer(inv -> {
+            release.await();
+            return List.of(1L, 2L, 3L);
+        });
+
+        ReconciliationRun started = service.start(false);
+
+        assertEquals(ReconciliationRun.Status.RUNNING, started.status());
+        assertEquals(started, service.findRun(started.id()));
+        assertThrows(ConflictException.class, () -> service.start(false));
+        assertThrows(ConflictException.class, () -> service.run(false));
+        release.countDown();
+        ReconciliationRun finished = awaitFinished(started.id());
+        assertEquals(ReconciliationRun.Status.DONE, finished.status());
+        assertEquals(1, finished.report().getLedgerDiscrepancies());
+        // The next run may start once this one is done
+        assertEquals(3, service.run(false).getAccounts());
+    }
+
+    @Test
+    void failedRunIsReportedAndReleasesTheNextOne() throws Exception {
+        when(accountRepository.findIdsAfter(eq(0L), any())).thenThrow(new IllegalStateException("database down"));
+
+        ReconciliationRun finished = awaitFinished(service.start(false).id());
+
+        assertEquals(ReconciliationRun.Status.FAILED, finished.status());
+        assertTrue(finished.error().contains("database down"));
+        assertNull(finished.report());
+        assertEquals(ReconciliationRun.Status.FAILED, awaitFinished(service.start(false).id()).status());
+    }
+
+    @Test
+    void unknownRunIsNotFound() {
+        assertThrows(NoSuchElementException.class, () -> service.findRun("missing"));
+    }
+
+    private ReconciliationRun awaitFinished(String id) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        ReconciliationRun run = service.findRun(id);
+        while (run.status() == ReconciliationRun.Status.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            run = service.findRun(id);
+        }
+        return run;
+    }
+}
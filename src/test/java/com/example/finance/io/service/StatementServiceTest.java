@@ -0,0 +1,116 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.AccountDirectoryProperties;
+import com.example.finance.io.config.ArchiveProperties;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.dto.StatementResponse;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.ArchivedSegmentRepository;
+import com.example.finance.io.repository.DailyRollupRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class StatementServiceTest {
+    private static final long ID = 9L;
+
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private DailyRollupRepository rollupRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private ArchivedSegmentRepository archivedSegmentRepository;
+
+    private StatementService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(accountRepository.findIdByName("alice")).thenReturn(Optional.of(ID));
+        service = new StatementService(new AccountDirectory(accountRepository, new AccountDirectoryProperties(10)),
+                rollupRepository, transactionRepository,
+                new ColdTransactionStore(archivedSegmentRepository, transactionRepository, accountRepository,
+                        new ArchiveProperties(false, Path.of("build/archive"), Duration.ofDays(90), Duration.ofHours(1), 1000, 100),
+                        new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void wholeDaysComeFromRollupsOnly() {
+        when(rollupRepository.sumDaysBefore(ID, day(1))).thenReturn(totals("100.00", "0.00", 1));
+        when(rollupRepository.sumDays(ID, day(1), day(4))).thenReturn(totals("30.00", "12.50", 5));
+
+        StatementResponse statement = service.getStatement("alice", day(1).atStartOfDay(), day(4).atStartOfDay());
+
+        assertEquals(new BigDecimal("100.00"), statement.getOpeningBalance());
+        assertEquals(new BigDecimal("30.00"), statement.getDeposits());
+        assertEquals(new BigDecimal("12.50"), statement.getWithdrawals());
+        assertEquals(new BigDecimal("117.50"), statement.getClosingBalance());
+        assertEquals(5, statement.getTransactionCount());
+        verify(transactionRepository, never()).sumBetween(any(), any(), any());
+    }
+
+    @Test
+    void partialEdgeDaysAreScannedRaw() {
+        LocalDateTime from = day(1).atTime(15, 0);
+        LocalDateTime to = day(4).atTime(9, 30);
+        when(rollupRepository.sumDaysBefore(ID, day(1))).thenReturn(totals("100.00", "0.00", 1));
+        when(transactionRepository.sumBetween(ID, day(1).atStartOfDay(), from)).thenReturn(totals("0.00", "40.00", 1));
+        when(transactionRepository.sumBetween(ID, from, day(2).atStartOfDay())).thenReturn(totals("5.00", "0.00", 1));
+        when(rollupRepository.sumDays(ID, day(2), day(4))).thenReturn(totals("20.00", "10.00", 3));
+        when(transactionRepository.sumBetween(ID, day(4).atStartOfDay(), to)).thenReturn(totals("1.00", "0.00", 1));
+
+        StatementResponse statement = service.getStatement("alice", from, to);
+
+        assertEquals(new BigDecimal("60.00"), statement.getOpeningBalance());
+        assertEquals(new BigDecimal("26.00"), statement.getDeposits());
+        assertEquals(new BigDecimal("10.00"), statement.getWithdrawals());
+        assertEquals(new BigDecimal("76.00"), statement.getClosingBalance());
+        assertEquals(5, statement.getTransactionCount());
+    }
+
+    @Test
+    void rangeWithinOneDayScansOnlyThatRange() {
+        LocalDateTime from = day(2).atTime(8, 0);
+        LocalDateTime to = day(2).atTime(12, 0);
+        when(rollupRepository.sumDaysBefore(ID, day(2))).thenReturn(PeriodTotals.EMPTY);
+        when(transactionRepository.sumBetween(ID, day(2).atStartOfDay(), from)).thenReturn(PeriodTotals.EMPTY);
+        when(transactionRepository.sumBetween(ID, from, to)).thenReturn(totals("7.00", "2.00", 2));
+
+        StatementResponse statement = service.getStatement("alice", from, to);
+
+        assertEquals(new BigDecimal("5.00"), statement.getClosingBalance());
+        verify(rollupRepository, never()).sumDays(any(), any(), any());
+    }
+
+    @Test
+    void rejectsEmptyPeriodAndUnknownAccount() {
+        LocalDateTime at = day(1).atStartOfDay();
+        assertThrows(IllegalArgumentException.class, () -> service.getStatement("alice", at, at));
+        assertThrows(NoSuchElementException.class, () -> service.getStatement("bob", at, at.plusDays(1)));
+    }
+
+    private static LocalDate day(int dayOfMonth) {
+        return LocalDate.of(2025, 6, dayOfMonth);
+    }
+
+    private static PeriodTotals totals(String deposits, String withdrawals, long count) {
+        return new PeriodTotals(new BigDecimal(deposits), new BigDecimal(withdrawals), count);
+    }
+}
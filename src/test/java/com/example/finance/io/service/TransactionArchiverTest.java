@@ -0,0 +1,299 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.AccountDirectoryProperties;
+import com.example.finance.io.config.ArchiveProperties;
+import com.example.finance.io.config.BalanceCacheProperties;
+import com.example.finance.io.config.BalanceProperties;
+import com.example.finance.io.config.IdempotencyProperties;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.ArchivedSegment;
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.TransactionCursor;
+import com.example.finance.io.model.dto.TransactionPage;
+import com.example.finance.io.model.dto.TransactionView;
+import com.example.finance.io.repository.AccountCurrencyBalanceRepository;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.ArchivedSegmentRepository;
+import com.example.finance.io.repository.DailyRollupRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Archives part of a history against an in-memory stand-in for the transaction and catalog tables, then reads
+ * it back across the hot/cold boundary.
+ */
+class TransactionArchiverTest {
+    private static final long ID = 1L;
+    private static final String NAME = "alice";
+    private static final LocalDateTime OLD = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final int OLD_ROWS = 700;
+    private static final int SEGMENT_ROWS = 250;
+
+    @TempDir
+    Path dir;
+
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private ArchivedSegmentRepository catalogRepository;
+    @Mock
+    private AccountCurrencyBalanceRepository currencyBalanceRepository;
+    @Mock
+    private DailyRollupRepository rollupRepository;
+
+    // Oldest first, like an index on (timestamp, id)
+    private final List<TransactionView> hot = new ArrayList<>();
+    private final List<ArchivedSegment> catalog = new ArrayList<>();
+    private List<TransactionView> history;
+    private ColdTransactionStore cold;
+    private AccountBalanceService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        LocalDateTime recent = LocalDateTime.now().minusDays(1);
+        for (int i = 0; i < OLD_ROWS; i++) {
+            // Two rows share the timestamp where the first segment ends, so the split falls between equal timestamps
+            hot.add(row(i, OLD.plusMinutes(i == SEGMENT_ROWS ? i - 1 : i)));
+        }
+        for (int i = 0; i < 300; i++) {
+            hot.add(row(i, recent.plusSeconds(i)));
+        }
+        hot.sort(TransactionView.NEWEST_FIRST.reversed());
+        history = hot.reversed().stream().toList();
+        stubTables();
+
+        ArchiveProperties properties = new ArchiveProperties(true, dir, Duration.ofDays(90), Duration.ofHours(1), SEGMENT_ROWS, 100);
+        cold = new ColdTransactionStore(catalogRepository, transactionRepository, accountRepository, properties,
+                new SimpleMeterRegistry());
+        LedgerWriter ledger = new LedgerWriter(accountRepository, transactionRepository, currencyBalanceRepository,
+                rollupRepository, new CurrencyConverter(), new BalanceProperties(false), event -> {});
+        service = new AccountBalanceService(accountRepository, transactionRepository, ledger,
+                new IdempotencyKeyStore(transactionRepository,
+                        new IdempotencyProperties(Duration.ofMinutes(1), 100, 1000, 0.01), new SimpleMeterRegistry()),
+                new BalanceCache(accountRepository, new BalanceCacheProperties(100, Duration.ofMinutes(1), Duration.ofMinutes(5))),
+                currencyBalanceRepository, new CurrencyConverter(),
+                new AccountDirectory(accountRepository, new AccountDirectoryProperties(100)), cold);
+
+        archive(new TransactionArchiver(cold, accountRepository, transactionRepository, properties));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void movesRowsOlderThanMinAgeIntoSegments() {
+        assertEquals(300, hot.size());
+        assertEquals(3, catalog.size());
+        assertEquals(OLD_ROWS, catalog.stream().mapToLong(ArchivedSegment::getTransactionCount).sum());
+        // The segments continue one another: each starts at or after the previous one's last row
+        for (int i = 1; i < catalog.size(); i++) {
+            assertFalse(catalog.get(i).getFirstTimestamp().isBefore(catalog.get(i - 1).getLastTimestamp()));
+        }
+    }
+
+    @Test
+    void historyReadsContinueAcrossTiers() {
+        assertEquals(history, service.getTransactions(NAME));
+
+        List<TransactionView> streamed = new ArrayList<>();
+        service.streamTransactions(NAME, streamed::add);
+        assertEquals(history, streamed);
+    }
+
+    @Test
+    void pagesContinueAcrossTiers() {
+        List<TransactionView> paged = new ArrayList<>();
+        String after = null;
+        do {
+            // 7 does not divide the 300 hot rows or the segment sizes, so pages straddle both boundaries
+            TransactionPage page = service.getTransactionPage(NAME, 7, after);
+            paged.addAll(page.getItems());
+            after = page.getNextCursor();
+        } while (after != null);
+
+        assertEquals(history, paged);
+    }
+
+    @Test
+    void sumsAddColdAndHotRowsInRange() {
+        // From inside the first segment to the middle of the hot rows
+        LocalDateTime from = OLD.plusMinutes(100);
+        LocalDateTime to = history.get(150).timestamp();
+
+        PeriodTotals totals = cold.sum(ID, from, to, () -> totals(hot, from, to));
+
+        assertEquals(totals(history, from, to), totals);
+        assertEquals(totals(history, OLD, OLD.plusMinutes(OLD_ROWS)),
+                cold.sum(ID, OLD, OLD.plusMinutes(OLD_ROWS), () -> totals(hot, OLD, OLD.plusMinutes(OLD_ROWS))));
+    }
+
+    @Test
+    void archivalCommitsWhileAReadIsInItsHotQueryAndTheReadCountsEachRowOnce() throws Exception {
+        List<TransactionView> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // After the archived range and still older than min-age
+            added.add(row(i, OLD.plusMinutes(OLD_ROWS + i)));
+        }
+        hot.addAll(0, added);
+        hot.sort(TransactionView.NEWEST_FIRST.reversed());
+        List<TransactionView> all = new ArrayList<>(history);
+        all.addAll(added);
+        LocalDateTime to = LocalDateTime.now();
+        CountDownLatch queried = new CountDownLatch(1);
+        CountDownLatch committed = new CountDownLatch(1);
+        AtomicBoolean waited = new AtomicBoolean();
+        AtomicInteger queries = new AtomicInteger();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        try {
+            // The first hot query reads the rows about to be archived, then stalls like one waiting for a connection
+            Future<PeriodTotals> read = reader.submit(() -> cold.sum(ID, OLD, to, () -> {
+                PeriodTotals totals = totals(hot, OLD, to);
+                if (queries.incrementAndGet() == 1) {
+                    queried.countDown();
+                    try {
+                        waited.set(committed.await(5, TimeUnit.SECONDS));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return totals;
+            }));
+            assertTrue(queried.await(5, TimeUnit.SECONDS));
+
+            archive(new TransactionArchiver(cold, accountRepository, transactionRepository,
+                    new ArchiveProperties(true, dir, Duration.ofDays(90), Duration.ofHours(1), SEGMENT_ROWS, 100)));
+            committed.countDown();
+
+            // The archival did not wait for the read, and the read saw the new segment's rows in one tier only
+            assertEquals(totals(all, OLD, to), read.get(5, TimeUnit.SECONDS));
+            assertTrue(waited.get());
+            assertEquals(2, queries.get());
+            assertEquals(4, catalog.size());
+        } finally {
+            reader.shutdownNow();
+        }
+    }
+
+    // Commits each archival the way the surrounding DB transaction would, publishing its segment to readers
+    private void archive(TransactionArchiver archiver) {
+        TransactionSynchronizationManager.initSynchronization();
+        archiver.run();
+        List<TransactionSynchronization> publications = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization publication : publications) {
+            publication.beforeCommit(false);
+            publication.afterCommit();
+            publication.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private void stubTables() {
+        when(accountRepository.findIdByName(NAME)).thenReturn(Optional.of(ID));
+        when(accountRepository.findIdsAfter(eq(0L), any())).thenReturn(List.of(ID));
+        when(accountRepository.findByIdForUpdate(ID)).thenReturn(Optional.of(Account.builder().id(ID).name(NAME).build()));
+
+        when(transactionRepository.existsByAccountIdAndTimestampBefore(eq(ID), any()))
+                .thenAnswer(inv -> hot.stream().anyMatch(before(inv.getArgument(1))));
+        when(transactionRepository.findArchivable(eq(ID), eq(NAME), any(), any())).thenAnswer(inv -> hot.stream()
+                .filter(before(inv.getArgument(2)))
+                .limit(inv.<Limit>getArgument(3).max())
+                .toList());
+        when(transactionRepository.deleteArchived(eq(ID), any(), any())).thenAnswer(inv -> {
+            TransactionCursor last = new TransactionCursor(inv.getArgument(1), inv.getArgument(2));
+            int size = hot.size();
+            hot.removeIf(row -> row.id().equals(last.id()) || last.precedes(row));
+            return size - hot.size();
+        });
+        when(transactionRepository.findHistory(ID, NAME)).thenAnswer(inv -> hot.reversed().stream().toList());
+        when(transactionRepository.findFirstPage(eq(ID), eq(NAME), any())).thenAnswer(inv -> hot.reversed().stream()
+                .limit(inv.<Limit>getArgument(2).max())
+                .toList());
+        when(transactionRepository.findPageAfter(eq(ID), eq(NAME), any(), any(), any())).thenAnswer(inv -> {
+            TransactionCursor cursor = new TransactionCursor(inv.getArgument(2), inv.getArgument(3));
+            return hot.reversed().stream()
+                    .filter(cursor::precedes)
+                    .limit(inv.<Limit>getArgument(4).max())
+                    .toList();
+        });
+
+        when(catalogRepository.save(any())).thenAnswer(inv -> {
+            catalog.add(inv.getArgument(0));
+            return inv.getArgument(0);
+        });
+        when(catalogRepository.findByAccountIdOrderByFirstTimestamp(anyLong())).thenAnswer(inv -> catalog.stream()
+                .filter(segment -> segment.getAccountId().equals(inv.getArgument(0)))
+                .sorted(Comparator.comparing(ArchivedSegment::getFirstTimestamp))
+                .toList());
+        when(catalogRepository.findFileNamesByAccountId(anyLong()))
+                .thenAnswer(inv -> catalog.stream().map(ArchivedSegment::getFileName).toList());
+    }
+
+    private static Predicate<TransactionView> before(LocalDateTime timestamp) {
+        return row -> row.timestamp().isBefore(timestamp);
+    }
+
+    private static PeriodTotals totals(List<TransactionView> rows, LocalDateTime from, LocalDateTime to) {
+        BigDecimal deposits = new BigDecimal("0.00");
+        BigDecimal withdrawals = new BigDecimal("0.00");
+        long count = 0;
+        for (TransactionView row : rows) {
+            if (!row.timestamp().isBefore(from) && row.timestamp().isBefore(to)) {
+                if (row.type() == TransactionType.DEPOSIT) {
+                    deposits = deposits.add(row.amountUSD());
+                } else {
+                    withdrawals = withdrawals.add(row.amountUSD());
+                }
+                count++;
+            }
+        }
+        return new PeriodTotals(deposits, withdrawals, count);
+    }
+
+    private static TransactionView row(int i, LocalDateTime timestamp) {
+        boolean deposit = i % 2 == 0;
+        BigDecimal amount = deposit ? new BigDecimal("10.00") : new BigDecimal("3.00");
+        return new TransactionView(UUID.randomUUID(), NAME, deposit ? TransactionType.DEPOSIT : TransactionType.WITHDRAW,
+                amount, amount, "USD", 1L, timestamp, deposit ? "key-" + timestamp + "-" + i : null, null);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.finance.io.service;
+
+import com.example.finance.io.config.BalanceProperties;
+import com.example.finance.io.config.IdempotencyProperties;
+import com.example.finance.io.model.Account;
+import com.example.finance.io.model.Transaction;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.BatchItemResult;
+import com.example.finance.io.model.dto.BatchItemStatus;
+import com.example.finance.io.model.dto.BatchTransactionItem;
+import com.example.finance.io.repository.AccountCurrencyBalanceRepository;
+import com.example.finance.io.repository.AccountRepository;
+import com.example.finance.io.repository.DailyRollupRepository;
+import com.example.finance.io.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TransactionBatchServiceTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private TransactionRepository transactionRepository;
+    @Mock
+    private AccountCurrencyBalanceRepository currencyBalanceRepository;
+    @Mock
+    private DailyRollupRepository rollupRepository;
+
+    private TransactionBatchService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        LedgerWriter ledger = new LedgerWriter(accountRepository, transactionRepository, currencyBalanceRepository,
+                rollupRepository, new CurrencyConverter(), new BalanceProperties(false), event -> {});
+        IdempotencyKeyStore keyStore = new IdempotencyKeyStore(transactionRepository,
+                new IdempotencyProperties(Duration.ofMinutes(1), 100, 1000, 0.01), new SimpleMeterRegistry());
+        service = new TransactionBatchService(accountRepository, ledger, keyStore);
+        when(accountRepository.findAllByNameForUpdate(any())).thenReturn(List.of(
+                Account.builder().id(1L).name("alice").balance(new BigDecimal("10.00")).build(),
+                Account.builder().id(2L).name("bob").build()));
+    }
+
+    @Test
+    void reportsEveryItemAndPostsAcceptedOnesInOneBatch() {
+        Account alice = Account.builder().id(1L).name("alice").build();
+        Transaction stored = Transaction.builder().id(UUID.randomUUID()).account(alice).type(TransactionType.DEPOSIT)
+                .amount(BigDecimal.ONE).amountUSD(new BigDecimal("1.00")).currency("USD")
+                .timestamp(LocalDateTime.now()).idempotencyKey("old").build();
+        when(transactionRepository.findByIdempotencyKeyIn(any())).thenReturn(List.of(stored));
+
+        List<BatchItemResult> results = service.addTransactions(List.of(
+                item("alice", TransactionType.WITHDRAW, "6", "new"),
+                item("alice", TransactionType.WITHDRAW, "6", null),
+                item("alice", TransactionType.DEPOSIT, "1", "old"),
+                item("carol", TransactionType.DEPOSIT, "1", null),
+                item("bob", TransactionType.DEPOSIT, "-1", null),
+                item("bob", TransactionType.DEPOSIT, "2", "new")));
+
+        assertEquals(List.of(BatchItemStatus.CREATED, BatchItemStatus.REJECTED, BatchItemStatus.DUPLICATE,
+                        BatchItemStatus.REJECTED, BatchItemStatus.REJECTED, BatchItemStatus.REJECTED),
+                results.stream().map(BatchItemResult::getStatus).toList());
+        // The second withdrawal is checked against the running balance left by the first
+        assertEquals("Insufficient funds", results.get(1).getError());
+        assertEquals(stored.getId(), results.get(2).getTransaction().id());
+        // A key reused within the batch for another account is a conflict, not a duplicate
+        assertEquals("Idempotency key was already used for a different request", results.get(5).getError());
+        verify(transactionRepository, times(1)).findByIdempotencyKeyIn(any());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Transaction>> saved = ArgumentCaptor.forClass(List.class);
+        verify(transactionRepository, times(1)).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+        verify(accountRepository).applyDelta(1L, new BigDecimal("-6.00"));
+        verify(accountRepository, never()).applyDelta(eq(2L), any());
+        verify(transactionRepository, never()).save(any());
+    }
+
+    @Test
+    void rejectsEmptyAndOversizedBatches() {
+        assertThrows(IllegalArgumentException.class, () -> service.addTransactions(List.of()));
+        List<BatchTransactionItem> tooMany = Collections.nCopies(TransactionBatchService.MAX_BATCH_SIZE + 1,
+                item("alice", TransactionType.DEPOSIT, "1", null));
+        assertThrows(IllegalArgumentException.class, () -> service.addTransactions(tooMany));
+    }
+
+    private static BatchTransactionItem item(String account, TransactionType type, String amount, String key) {
+        return new BatchTransactionItem(account, type, new BigDecimal(amount), "USD", key);
+    }
+}
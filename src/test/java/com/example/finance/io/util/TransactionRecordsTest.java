@@ -0,0 +1,107 @@
+package com.example.finance.io.util;
+
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.ExportFormat;
+import com.example.finance.io.model.dto.TransactionView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionRecordsTest {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @ParameterizedTest
+    @EnumSource(ExportFormat.class)
+    void roundTripsEveryField(ExportFormat format) throws Exception {
+        List<TransactionView> rows = List.of(
+                new TransactionView(UUID.randomUUID(), "alice", TransactionType.DEPOSIT, new BigDecimal("10.00"),
+                        new BigDecimal("11.00"), "EUR", 3L, START, "key-1", null),
+                new TransactionView(UUID.randomUUID(), "bob, \"the\"\nbuilder", TransactionType.WITHDRAW,
+                        new BigDecimal("0.5"), new BigDecimal("0.50"), "USD", null, START.withNano(123_000_000),
+                        "", UUID.randomUUID()));
+
+        assertEquals(rows, read(format, write(format, rows)));
+    }
+
+    @Test
+    void rejectsBadCsvRowAndContinues() throws Exception {
+        UUID id = UUID.randomUUID();
+        String csv = TransactionRecords.HEADER + "\n"
+                + "not-a-uuid,alice,DEPOSIT,1.00,1.00,USD,1,2025-01-01T00:00,,\n"
+                + "\n"
+                + id + ",alice,DEPOSIT,1.00,1.00,USD,1,2025-01-01T00:00,,\n"
+                + TransactionRecords.TRAILER + "\n";
+        TransactionRecords.RecordReader reader = TransactionRecords.reader(ExportFormat.CSV,
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertThrows(IllegalArgumentException.class, reader::next);
+        assertEquals(1, reader.recordNumber());
+        assertEquals(id, reader.next().id());
+        assertEquals(2, reader.recordNumber());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void rejectsWrongCsvHeader() {
+        assertThrows(IOException.class, () -> TransactionRecords.reader(ExportFormat.CSV,
+                new ByteArrayInputStream("id,account\n".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void detectsCsvWithoutTrailerOrDataAfterIt() throws Exception {
+        String row = UUID.randomUUID() + ",alice,DEPOSIT,1.00,1.00,USD,1,2025-01-01T00:00,,\n";
+        // Cut off at a line break, so every line that arrived is complete
+        TransactionRecords.RecordReader truncated = TransactionRecords.reader(ExportFormat.CSV,
+                new ByteArrayInputStream((TransactionRecords.HEADER + "\n" + row).getBytes(StandardCharsets.UTF_8)));
+        TransactionRecords.RecordReader continued = TransactionRecords.reader(ExportFormat.CSV, new ByteArrayInputStream(
+                (TransactionRecords.HEADER + "\n" + TransactionRecords.TRAILER + "\n" + row).getBytes(StandardCharsets.UTF_8)));
+
+        assertNotNull(truncated.next());
+        assertThrows(IOException.class, truncated::next);
+        assertThrows(IOException.class, continued::next);
+    }
+
+    @Test
+    void detectsTruncatedBinary() throws Exception {
+        byte[] full = write(ExportFormat.BINARY, List.of(
+                new TransactionView(UUID.randomUUID(), "alice", TransactionType.DEPOSIT, new BigDecimal("10.00"),
+                        new BigDecimal("10.00"), "USD", 1L, START, null, null)));
+        TransactionRecords.RecordReader reader = TransactionRecords.reader(ExportFormat.BINARY,
+                new ByteArrayInputStream(Arrays.copyOf(full, full.length - 1)));
+
+        assertNotNull(reader.next());
+        assertThrows(IOException.class, reader::next);
+    }
+
+    private static byte[] write(ExportFormat format, List<TransactionView> rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TransactionRecords.RecordWriter writer = TransactionRecords.writer(format, out)) {
+            for (TransactionView row : rows) {
+                writer.write(row);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<TransactionView> read(ExportFormat format, byte[] data) throws IOException {
+        TransactionRecords.RecordReader reader = TransactionRecords.reader(format, new ByteArrayInputStream(data));
+        List<TransactionView> rows = new ArrayList<>();
+        for (TransactionView row = reader.next(); row != null; row = reader.next()) {
+            rows.add(row);
+        }
+        return rows;
+    }
+}
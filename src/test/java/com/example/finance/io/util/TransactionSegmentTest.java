@@ -0,0 +1,150 @@
+package com.example.finance.io.util;
+
+import com.example.finance.io.model.PeriodTotals;
+import com.example.finance.io.model.TransactionType;
+import com.example.finance.io.model.dto.TransactionCursor;
+import com.example.finance.io.model.dto.TransactionView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionSegmentTest {
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsEveryColumnNewestFirst() throws Exception {
+        List<TransactionView> rows = rows(10);
+        rows.set(3, new TransactionView(UUID.randomUUID(), "alice", TransactionType.WITHDRAW, new BigDecimal("0.50"),
+                new BigDecimal("0.55"), "EUR", null, START.plusMinutes(3).withNano(123_456_000), null, UUID.randomUUID()));
+        TransactionSegment.write(dir.resolve("1/a.tseg"), rows, 4);
+
+        List<TransactionView> read = TransactionSegment.open(dir.resolve("1/a.tseg")).readDescending("alice", null, 100);
+
+        assertEquals(rows.reversed(), read);
+        try (Stream<Path> files = Files.list(dir.resolve("1"))) {
+            assertEquals(1, files.count(), "the temporary file is moved into place");
+        }
+    }
+
+    @Test
+    void pagesAcrossBlocksFromCursor() {
+        List<TransactionView> rows = rows(25);
+        TransactionSegment segment = open(rows, 4);
+
+        List<TransactionView> first = segment.readDescending("alice", null, 10);
+        List<TransactionView> second = segment.readDescending("alice", TransactionCursor.of(first.get(9)), 10);
+        List<TransactionView> last = segment.readDescending("alice", TransactionCursor.of(second.get(9)), 10);
+
+        assertEquals(rows.get(24), first.get(0));
+        assertEquals(rows.get(14), second.get(0));
+        assertEquals(5, last.size());
+        assertEquals(rows.get(0), last.get(4));
+    }
+
+    @Test
+    void pagesThroughEqualTimestampsByIdAcrossBlocks() {
+        // All rows at one instant: only the id orders them, and every block has the same first and last timestamp
+        List<TransactionView> rows = new ArrayList<>();
+        for (TransactionView row : rows(11)) {
+            rows.add(new TransactionView(row.id(), row.account(), row.type(), row.amount(), row.amountUSD(),
+                    row.currency(), row.rateVersion(), START, row.idempotencyKey(), row.transferId()));
+        }
+        rows.sort(TransactionView.NEWEST_FIRST.reversed());
+        TransactionSegment segment = open(rows, 3);
+
+        List<TransactionView> paged = new ArrayList<>();
+        TransactionCursor cursor = null;
+        List<TransactionView> page;
+        do {
+            page = segment.readDescending("alice", cursor, 4);
+            paged.addAll(page);
+            cursor = page.isEmpty() ? cursor : TransactionCursor.of(page.get(page.size() - 1));
+        } while (page.size() == 4);
+
+        assertEquals(rows.reversed(), paged);
+    }
+
+    @Test
+    void cursorOutsideOrOnBlockBoundaryOfSegment() {
+        List<TransactionView> rows = rows(12);
+        TransactionSegment segment = open(rows, 4);
+
+        assertEquals(rows.reversed(), segment.readDescending("alice",
+                new TransactionCursor(START.plusDays(1), UUID.randomUUID()), 100));
+        assertEquals(List.of(), segment.readDescending("alice", new TransactionCursor(START, rows.get(0).id()), 100));
+        assertEquals(List.of(), segment.readDescending("alice", new TransactionCursor(START.minusDays(1), UUID.randomUUID()), 100));
+        // Row 8 is the first of the last block: the next page starts with the last row of the block before
+        assertEquals(rows.subList(5, 8).reversed(), segment.readDescending("alice", TransactionCursor.of(rows.get(8)), 3));
+        assertEquals(List.of(), segment.readDescending("alice", null, 0));
+    }
+
+    @Test
+    void sumsWholeBlocksFromIndexAndPartialBlocksRowByRow() {
+        TransactionSegment segment = open(rows(25), 4);
+
+        // Minutes 2..21: deposits of 10 on even minutes, withdrawals of 3 on odd ones
+        PeriodTotals totals = segment.sum(START.plusMinutes(2), START.plusMinutes(22));
+
+        assertEquals(new BigDecimal("100.00"), totals.deposits());
+        assertEquals(new BigDecimal("30.00"), totals.withdrawals());
+        assertEquals(20, totals.count());
+        assertEquals(25, segment.sum(START, START.plusDays(1)).count());
+        assertEquals(PeriodTotals.EMPTY.count(), segment.sum(START.minusDays(1), START).count());
+    }
+
+    @Test
+    void summaryCoversAllRows() {
+        TransactionSegment.Summary summary = TransactionSegment.write(dir.resolve("1/a.tseg"), rows(25));
+
+        assertEquals(START, summary.firstTimestamp());
+        assertEquals(START.plusMinutes(24), summary.lastTimestamp());
+        assertEquals(new BigDecimal("130.00"), summary.totals().deposits());
+        assertEquals(new BigDecimal("36.00"), summary.totals().withdrawals());
+        assertEquals(25, summary.totals().count());
+    }
+
+    @Test
+    void rejectsCorruptIndex() throws Exception {
+        Path file = dir.resolve("1/a.tseg");
+        TransactionSegment.write(file, rows(5));
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() - 24);
+            raf.write(raf.read() ^ 0xFF);
+        }
+
+        assertThrows(IllegalStateException.class, () -> TransactionSegment.open(file));
+    }
+
+    private TransactionSegment open(List<TransactionView> rows, int blockRows) {
+        Path file = dir.resolve("1/" + UUID.randomUUID() + TransactionSegment.SUFFIX);
+        TransactionSegment.write(file, rows, blockRows);
+        return TransactionSegment.open(file);
+    }
+
+    private static List<TransactionView> rows(int count) {
+        List<TransactionView> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            boolean deposit = i % 2 == 0;
+            rows.add(new TransactionView(UUID.randomUUID(), "alice",
+                    deposit ? TransactionType.DEPOSIT : TransactionType.WITHDRAW,
+                    deposit ? new BigDecimal("10.00") : new BigDecimal("3.00"),
+                    deposit ? new BigDecimal("10.00") : new BigDecimal("3.00"),
+                    "USD", 1L, START.plusMinutes(i), deposit ? "key-" + i : null, null));
+        }
+        return rows;
+    }
+}